@@ -3,13 +3,16 @@
 
 package frc.team1711.swerve.commands;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 
 import frc.team1711.swerve.subsystems.AutoSwerveDrive;
 import frc.team1711.swerve.util.Angles;
 import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
 import frc.team1711.swerve.util.odometry.MovementManner;
 import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.ProfileFollower;
 import frc.team1711.swerve.util.odometry.RobotMovement;
 import frc.team1711.swerve.util.odometry.RobotTurn;
 import frc.team1711.swerve.util.odometry.TurnManner;
@@ -17,7 +20,13 @@ import frc.team1711.swerve.util.odometry.TurnManner;
 /**
  * A command to drive the robot to a given {@link Position} on the field, or to drive
  * using robot-relative or field-relative {@link RobotTurn} and {@link RobotMovement}
- * descriptor objects.
+ * descriptor objects. If the {@link MovementManner} or {@link TurnManner} has
+ * {@link MotionProfile.Constraints}, a {@link MotionProfile} is generated when the command
+ * starts and the robot follows it by the time elapsed since then, using a {@link ProfileFollower}.
+ * If both have constraints, the faster profile is slowed down so that the movement and turn finish
+ * together, and both are slowed down so that the swerve drive can follow them at the same time with
+ * some of its output left over for correcting the robot's position. Whether or not either is profiled,
+ * the movement and turn speeds are scaled down together if the swerve drive can't reach both.
  * @author Gabriel Seaver
  */
 public class AutonDrive extends CommandBase {
@@ -27,6 +36,15 @@ public class AutonDrive extends CommandBase {
     private boolean finished = false;
     private Position initialPosition;
     
+    // Follows the motion profiles, and the speeds it gives for the current frame: the field relative x and y
+    // movement speeds and the turn speed
+    private ProfileFollower profileFollower;
+    private final double[] profileSpeeds = new double[3];
+    
+    // The robot relative x and y movement speeds and the turn speed sent to the swerve drive
+    private final double[] driveSpeeds = new double[3];
+    private double startTime;
+    
     // The constructor provides one of the two following options.
     // Later on we convert them to fill in the gaps
     
@@ -91,6 +109,17 @@ public class AutonDrive extends CommandBase {
         swerveDrive.stop();
         initialPosition = swerveDrive.getPosition(); // used in convertConstructorInputs
         convertConstructorInputs(); // converts constructor inputs from option 1 to option 2 and vice versa
+        generateProfiles();
+        startTime = Timer.getFPGATimestamp();
+    }
+    
+    // Generates the motion profiles for the movement and turn, if their manners have profile constraints
+    private void generateProfiles () {
+        profileFollower = new ProfileFollower(
+            initialPosition,
+            finalPosition,
+            movementManner.getProfileConstraints(),
+            turnManner.getProfileConstraints());
     }
     
     // finalPosition, movementManner, and turnManner can be used in the constructor method
@@ -120,11 +149,27 @@ public class AutonDrive extends CommandBase {
     @Override
     public void execute () {
         final Position currentPosition = swerveDrive.getPosition();
+        final double time = Timer.getFPGATimestamp() - startTime;
         
         // Drive the robot
-        final Vector movementVector = getMovementVector(currentPosition);
-        final double turnSpeed = getTurnSpeed(currentPosition);
-        swerveDrive.autoDrive(movementVector.getX(), movementVector.getY(), turnSpeed);
+        final boolean
+            movementProfiled = profileFollower.getMovementProfile() != null,
+            turnProfiled = profileFollower.getTurnProfile() != null;
+        if (movementProfiled || turnProfiled) profileFollower.getSpeeds(currentPosition, time, profileSpeeds);
+        final Vector movementVector = movementProfiled
+            ? getProfiledMovementVector(currentPosition)
+            : getMovementVector(currentPosition);
+        final double turnSpeed = turnProfiled
+            ? getProfiledTurnSpeed(currentPosition)
+            : getTurnSpeed(currentPosition);
+        
+        // The profile follower limits its own speeds, but a speed from a manner without profile constraints still
+        // has to be scaled down together with them
+        driveSpeeds[0] = movementVector.getX();
+        driveSpeeds[1] = movementVector.getY();
+        driveSpeeds[2] = turnSpeed;
+        ProfileFollower.limitToFullOutput(driveSpeeds);
+        swerveDrive.autoDrive(driveSpeeds[0], driveSpeeds[1], driveSpeeds[2]);
         
         // Update whether the command is finished
         finished = isMovementFinished(currentPosition) && isTurnFinished(currentPosition);
@@ -148,14 +193,22 @@ public class AutonDrive extends CommandBase {
             // "speed / getMagnitude" scales fieldRelMove to make its magnitude equal to speed
             Vector fieldRelMove = remainingMovement.scale(speed / remainingMovement.getMagnitude());
             
-            // Get the direction relative to the robot to move in
-            double robotRelMoveDir = fieldRelMove.getRotationDegrees() - currentPosition.getDirection();
-            
             // Convert field relative move to robot relative, preserving magnitude
-            return fieldRelMove.toRotationDegrees(robotRelMoveDir);
+            return currentPosition.getRotation().unrotate(fieldRelMove);
         }
     }
     
+    /**
+     * Gets the movement vector from the speeds the profile follower gave for this frame. These are already scaled
+     * down together with the turn speed so that the swerve drive can reach both.
+     */
+    private Vector getProfiledMovementVector (Position currentPosition) {
+        if (isMovementFinished(currentPosition)) return Vector.ZERO;
+        
+        // Convert field relative move to robot relative, preserving magnitude
+        return currentPosition.getRotation().unrotate(new Vector(profileSpeeds[0], profileSpeeds[1]));
+    }
+    
     /**
      * Gets the turn speed at a given point in time (every time execute() is called)
      */
@@ -171,6 +224,14 @@ public class AutonDrive extends CommandBase {
         else return -speed;                             // The turn is not complete, so if we must turn left turn at -speed
     }
     
+    /**
+     * Gets the turn speed from the speeds the profile follower gave for this frame, in the same way as
+     * getProfiledMovementVector()
+     */
+    private double getProfiledTurnSpeed (Position currentPosition) {
+        return isTurnFinished(currentPosition) ? 0 : profileSpeeds[2];
+    }
+    
     /**
      * Returns true if the movement is finished based on movementManner.getMarginOfError(), false otherwise
      */
@@ -0,0 +1,248 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.commands;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+import frc.team1711.swerve.subsystems.AutoSwerveDrive;
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Rotation;
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
+import frc.team1711.swerve.util.odometry.MovementManner;
+import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.SplinePath;
+import frc.team1711.swerve.util.odometry.Trajectory;
+import frc.team1711.swerve.util.odometry.TurnManner;
+
+/**
+ * A command to drive the robot along a curved {@link SplinePath} or a precomputed {@link Trajectory}, without
+ * stopping at its waypoints. When following a {@code SplinePath}, the robot's distance along the path follows a
+ * {@link MotionProfile} generated from the {@link MovementManner}'s profile constraints, and the robot's direction
+ * changes in proportion to that distance, so it finishes turning as it reaches the end. A {@code Trajectory}
+ * already holds the robot's position, heading, and velocity at every point in time, so its samples are used
+ * directly. Each tick, the robot moves at the velocity it should have at that time (the feedforward), plus a
+ * correction towards where it should be (the feedback). Once the path or trajectory has ended, the correction is
+ * no slower than the profile constraints' settle speed, so the robot doesn't stall just outside its margin of error.
+ * @author Gabriel Seaver
+ */
+public class PathDrive extends CommandBase {
+    
+    // How quickly the robot corrects for being away from its setpoint on the path, per second. For example, being
+    // one inch from the setpoint adds four inches per second towards it. This is the same as the gain in
+    // ProfileFollower, which AutonDrive uses, but is kept separate so that following a path can be tuned on its own
+    private static final double SETPOINT_CORRECTION_GAIN = 4;
+    
+    private final AutoSwerveDrive swerveDrive;
+    private final MovementManner movementManner;
+    private final TurnManner turnManner;
+    
+    // Exactly one of these is followed: a path with a profile, or a trajectory
+    private final SplinePath path;
+    private final MotionProfile profile;
+    private final Trajectory trajectory;
+    
+    private final double duration, finalX, finalY, finalDirection;
+    
+    private boolean finished = false;
+    private double startTime, initialDirection, turn;
+    
+    // Where the robot should be and how fast it should be moving at the current time, all field relative
+    private double setpointX, setpointY, setpointHeading, setpointVelocityX, setpointVelocityY, setpointTurnVelocity;
+    
+    /**
+     * Constructs a {@link PathDrive} command given an {@link AutoSwerveDrive} subsystem instance, a
+     * {@link SplinePath} to follow, and the direction the robot should finish in.
+     * @param swerveDrive       A {@code AutoSwerveDrive} swerve drive subsystem.
+     * @param path              The field-relative {@code SplinePath} to follow. The robot should be close to the
+     * start of the path when the command starts. Exactly where this will practically be will depend on how the
+     * robot's odometry was last reset with {@link AutoSwerveDrive#resetPosition(Position)}.
+     * @param finalDirection    The field-relative direction the robot should be facing at the end of the path,
+     * in degrees.
+     * @param movementManner    A {@code MovementManner} with {@link MotionProfile.Constraints}, describing how the
+     * robot should move along the path.
+     * @param turnManner        A {@code TurnManner} describing how the robot should turn. If it has
+     * {@code MotionProfile.Constraints}, they are used to convert turning velocities into turn speeds;
+     * otherwise its speed supplier is used to follow the direction the robot should be facing.
+     */
+    public PathDrive (
+            AutoSwerveDrive swerveDrive,
+            SplinePath path,
+            double finalDirection,
+            MovementManner movementManner,
+            TurnManner turnManner) {
+        if (movementManner.getProfileConstraints() == null)
+            throw new IllegalArgumentException("following a path requires a movement manner with profile constraints");
+        
+        this.swerveDrive = swerveDrive;
+        this.movementManner = movementManner;
+        this.turnManner = turnManner;
+        this.path = path;
+        this.finalDirection = finalDirection;
+        trajectory = null;
+        
+        // The profile only depends on the path, so it can be generated before the command is scheduled
+        profile = new MotionProfile(path.getLength(), movementManner.getProfileConstraints());
+        duration = profile.getDuration();
+        finalX = path.getX(path.getLength());
+        finalY = path.getY(path.getLength());
+        
+        addRequirements(swerveDrive);
+    }
+    
+    /**
+     * Constructs a {@link PathDrive} command given an {@link AutoSwerveDrive} subsystem instance and a
+     * precomputed {@link Trajectory} to follow.
+     * @param swerveDrive       A {@code AutoSwerveDrive} swerve drive subsystem.
+     * @param trajectory        The field-relative {@code Trajectory} to follow. The robot should be close to the
+     * start of the trajectory when the command starts.
+     * @param movementManner    A {@code MovementManner} with {@link MotionProfile.Constraints}, whose full speed
+     * velocity converts the trajectory's velocities into speeds and whose margin of error decides when the robot
+     * has reached the end. The other constraints are not used, since the trajectory was already generated.
+     * @param turnManner        A {@code TurnManner} describing how the robot should turn, in the same way as
+     * for a {@code SplinePath}.
+     */
+    public PathDrive (
+            AutoSwerveDrive swerveDrive,
+            Trajectory trajectory,
+            MovementManner movementManner,
+            TurnManner turnManner) {
+        if (movementManner.getProfileConstraints() == null)
+            throw new IllegalArgumentException("following a trajectory requires a movement manner with profile constraints");
+        
+        this.swerveDrive = swerveDrive;
+        this.movementManner = movementManner;
+        this.turnManner = turnManner;
+        this.trajectory = trajectory;
+        path = null;
+        profile = null;
+        
+        duration = trajectory.getDuration();
+        finalX = trajectory.getX(duration);
+        finalY = trajectory.getY(duration);
+        finalDirection = trajectory.getHeading(duration);
+        
+        addRequirements(swerveDrive);
+    }
+    
+    @Override
+    public void initialize () {
+        swerveDrive.stop();
+        finished = false;
+        initialDirection = swerveDrive.getPosition().getDirection();
+        turn = Angles.wrapDegreesZeroCenter(finalDirection - initialDirection);
+        startTime = Timer.getFPGATimestamp();
+    }
+    
+    // Finds the setpoint at a given time since the command started
+    private void updateSetpoint (double time) {
+        if (trajectory != null) {
+            setpointX = trajectory.getX(time);
+            setpointY = trajectory.getY(time);
+            setpointHeading = trajectory.getHeading(time);
+            setpointVelocityX = trajectory.getVelocityX(time);
+            setpointVelocityY = trajectory.getVelocityY(time);
+            setpointTurnVelocity = trajectory.getTurnVelocity(time);
+        } else {
+            final double
+                distance = profile.getPosition(time),
+                velocity = profile.getVelocity(time),
+                turnPerInch = path.getLength() > 0 ? turn / path.getLength() : 0;
+            setpointX = path.getX(distance);
+            setpointY = path.getY(distance);
+            setpointHeading = initialDirection + turnPerInch * distance;
+            setpointVelocityX = path.getTangentX(distance) * velocity;
+            setpointVelocityY = path.getTangentY(distance) * velocity;
+            setpointTurnVelocity = turnPerInch * velocity;
+        }
+    }
+    
+    @Override
+    public void execute () {
+        final Position currentPosition = swerveDrive.getPosition();
+        final double time = Timer.getFPGATimestamp() - startTime;
+        updateSetpoint(time);
+        
+        // The field relative movement, converted from inches per second to a speed for the swerve drive
+        final Vector location = currentPosition.getLocation();
+        final MotionProfile.Constraints movementConstraints = movementManner.getProfileConstraints();
+        final boolean ended = time >= duration, movementFinished = ended && isMovementFinished(location);
+        final double errorX = setpointX - location.getX(), errorY = setpointY - location.getY();
+        
+        // Once the path has ended, only the correction moves the robot, so it is kept fast enough not to stall
+        double correctionScale = SETPOINT_CORRECTION_GAIN;
+        if (ended) {
+            final double error = Vector.getMagnitude(errorX, errorY);
+            if (error > 0) correctionScale = movementConstraints.getSettleVelocity(error * SETPOINT_CORRECTION_GAIN) / error;
+        }
+        
+        final double
+            speedScale = 1 / movementConstraints.getFullSpeedVelocity(),
+            moveX = movementFinished ? 0 : (setpointVelocityX + errorX * correctionScale) * speedScale,
+            moveY = movementFinished ? 0 : (setpointVelocityY + errorY * correctionScale) * speedScale;
+        
+        // The turn speed, from the direction the robot should be facing at this time
+        final double headingError = Angles.wrapDegreesZeroCenter(setpointHeading - currentPosition.getDirection());
+        final double turnSpeed = getTurnSpeed(headingError, setpointTurnVelocity, ended);
+        
+        // Convert the field relative movement to robot relative, preserving magnitude
+        final Rotation rotation = currentPosition.getRotation();
+        swerveDrive.autoDrive(rotation.unrotateX(moveX, moveY), rotation.unrotateY(moveX, moveY), turnSpeed);
+        
+        // Update whether the command is finished
+        finished = movementFinished && isTurnFinished(currentPosition);
+    }
+    
+    /**
+     * Gets the turn speed given how far the robot is from the direction it should be facing, how quickly
+     * that direction is changing in degrees per second, and whether the path has ended. Once it has, the
+     * correction is no slower than the turn constraints' settle speed until the turn is finished.
+     */
+    private double getTurnSpeed (double headingError, double turnVelocity, boolean ended) {
+        final MotionProfile.Constraints turnConstraints = turnManner.getProfileConstraints();
+        if (turnConstraints != null) {
+            // Once the path has ended, only the correction turns the robot, so it is kept fast enough not to stall
+            double correction = headingError * SETPOINT_CORRECTION_GAIN;
+            if (ended) {
+                final boolean turnFinished = Math.abs(headingError) < turnManner.getMarginOfError();
+                correction = turnFinished ? 0 : turnConstraints.getSettleVelocity(correction);
+            }
+            
+            final double speed = (turnVelocity + correction) / turnConstraints.getFullSpeedVelocity();
+            return Math.max(-1, Math.min(speed, 1));
+        }
+        
+        // Without profile constraints, turn reactively towards the direction the robot should be facing
+        if (Math.abs(headingError) < turnManner.getMarginOfError()) return 0;
+        final double speed = turnManner.getSpeedSupplier().getSpeed(Math.abs(headingError));
+        return headingError > 0 ? speed : -speed;
+    }
+    
+    /**
+     * Returns true if the robot is within movementManner.getMarginOfError() of the end of the path or trajectory
+     */
+    private boolean isMovementFinished (Vector location) {
+        return Vector.getMagnitude(finalX - location.getX(), finalY - location.getY()) < movementManner.getMarginOfError();
+    }
+    
+    /**
+     * Returns true if the turn is finished based on turnManner.getMarginOfError(), false otherwise
+     */
+    private boolean isTurnFinished (Position currentPosition) {
+        final double err = Math.abs(Angles.wrapDegreesZeroCenter(currentPosition.getDirection() - finalDirection));
+        return err < turnManner.getMarginOfError();
+    }
+    
+    @Override
+    public void end (boolean interrupted) {
+        swerveDrive.stop();
+    }
+    
+    @Override
+    public boolean isFinished () {
+        return finished;
+    }
+    
+}
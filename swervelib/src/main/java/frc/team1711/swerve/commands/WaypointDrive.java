@@ -0,0 +1,188 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.commands;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+import frc.team1711.swerve.subsystems.AutoSwerveDrive;
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Rotation;
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
+import frc.team1711.swerve.util.odometry.MovementManner;
+import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.TurnManner;
+import frc.team1711.swerve.util.odometry.WaypointPath;
+
+/**
+ * A command to drive the robot through a series of {@link Position}s on the field without stopping at each
+ * one, unlike a sequence of {@link AutonDrive} commands. The robot only has to pass within a corner tolerance
+ * of each intermediate waypoint, so it rounds the corner instead of stopping on it, and it carries its
+ * velocity through to the next waypoint. When the command starts, a {@link WaypointPath} is made from the
+ * robot's location through the waypoints, which gives the speed and direction the robot should drive in.
+ * Velocity is only carried between the waypoints of one command: the robot starts from rest and stops at the
+ * final waypoint, so waypoints which should be driven through without stopping belong in the same command.
+ * 
+ * <p>While driving towards each waypoint, the robot turns towards that waypoint's direction. If the
+ * {@link TurnManner} has {@link MotionProfile.Constraints}, a {@link MotionProfile} for the turn is generated
+ * each time the robot starts towards a new waypoint, and the robot follows it by the time elapsed since then,
+ * in the same way as {@code AutonDrive}.</p>
+ * @author Gabriel Seaver
+ */
+public class WaypointDrive extends CommandBase {
+    
+    // How quickly the robot corrects for falling behind or getting ahead of a turn profile, per second. For
+    // example, falling one degree behind adds four degrees per second to the robot's turn
+    private static final double TURN_CORRECTION_GAIN = 4;
+    
+    private final AutoSwerveDrive swerveDrive;
+    private final Position[] waypoints;
+    private final double cornerTolerance;
+    private final MovementManner movementManner;
+    private final TurnManner turnManner;
+    
+    private WaypointPath path;
+    private boolean finished = false;
+    private int target;
+    private double lastTime, lastSpeed;
+    
+    // The profile of the turn towards the target waypoint's direction, which is null if the turn manner has no
+    // profile constraints, along with when and where the turn started and its direction (1 for clockwise)
+    private MotionProfile turnProfile;
+    private double turnStartTime, turnStartDirection, turnSign;
+    
+    /**
+     * Constructs a {@link WaypointDrive} command given an {@link AutoSwerveDrive} subsystem instance and the
+     * waypoints to drive through.
+     * @param swerveDrive       A {@code AutoSwerveDrive} swerve drive subsystem.
+     * @param cornerTolerance   How close the robot must pass to each intermediate waypoint, in inches. A larger
+     * tolerance lets the robot take corners faster.
+     * @param movementManner    A {@code MovementManner} with {@link MotionProfile.Constraints}. Its maximum
+     * velocity and acceleration limit the robot's speed and how sharply it can round corners, and its margin of
+     * error is used for the final waypoint.
+     * @param turnManner        A {@code TurnManner} describing how the robot should turn. While driving towards
+     * each waypoint, the robot turns towards that waypoint's direction.
+     * @param waypoints         The field-relative {@code Position}s to drive through, in order.
+     */
+    public WaypointDrive (
+            AutoSwerveDrive swerveDrive,
+            double cornerTolerance,
+            MovementManner movementManner,
+            TurnManner turnManner,
+            Position... waypoints) {
+        if (waypoints.length == 0) throw new IllegalArgumentException("at least one waypoint is required");
+        if (!(cornerTolerance >= 0)) throw new IllegalArgumentException("corner tolerance cannot be negative");
+        if (movementManner.getProfileConstraints() == null)
+            throw new IllegalArgumentException("driving through waypoints requires a movement manner with profile constraints");
+        
+        this.swerveDrive = swerveDrive;
+        this.waypoints = waypoints.clone();
+        this.cornerTolerance = cornerTolerance;
+        this.movementManner = movementManner;
+        this.turnManner = turnManner;
+        
+        addRequirements(swerveDrive);
+    }
+    
+    @Override
+    public void initialize () {
+        swerveDrive.stop();
+        final Position currentPosition = swerveDrive.getPosition();
+        final Vector[] locations = new Vector[waypoints.length];
+        for (int i = 0; i < waypoints.length; i ++) locations[i] = waypoints[i].getLocation();
+        path = new WaypointPath(
+            currentPosition.getLocation(),
+            cornerTolerance,
+            movementManner.getMarginOfError(),
+            movementManner.getProfileConstraints(),
+            locations);
+        
+        finished = false;
+        target = 0;
+        lastSpeed = 0;
+        lastTime = Timer.getFPGATimestamp();
+        generateTurnProfile(currentPosition, lastTime);
+    }
+    
+    // Generates the profile of the turn from the robot's current direction to the target waypoint's direction,
+    // if the turn manner has profile constraints
+    private void generateTurnProfile (Position currentPosition, double time) {
+        final MotionProfile.Constraints constraints = turnManner.getProfileConstraints();
+        if (constraints == null) return;
+        
+        final double turn = Angles.wrapDegreesZeroCenter(waypoints[target].getDirection() - currentPosition.getDirection());
+        turnProfile = new MotionProfile(Math.abs(turn), constraints);
+        turnStartTime = time;
+        turnStartDirection = currentPosition.getDirection();
+        turnSign = turn < 0 ? -1 : 1;
+    }
+    
+    @Override
+    public void execute () {
+        final Position currentPosition = swerveDrive.getPosition();
+        final Vector location = currentPosition.getLocation();
+        final double x = location.getX(), y = location.getY();
+        final double time = Timer.getFPGATimestamp(), dt = Math.max(time - lastTime, 0);
+        lastTime = time;
+        
+        // Move on from intermediate waypoints once the robot has rounded them
+        final int previousTarget = target;
+        while (target < waypoints.length - 1 && path.hasRoundedCorner(target, x, y)) target ++;
+        if (target != previousTarget) generateTurnProfile(currentPosition, time);
+        
+        final double speed = path.getSpeed(target, x, y, lastSpeed, dt);
+        lastSpeed = speed;
+        
+        final boolean movementFinished = target == waypoints.length - 1 && path.isFinished(x, y);
+        final MotionProfile.Constraints constraints = movementManner.getProfileConstraints();
+        final Vector direction = path.getDirection(target, x, y);
+        final double speedScale = movementFinished ? 0 : speed / constraints.getFullSpeedVelocity();
+        final double moveX = direction.getX() * speedScale, moveY = direction.getY() * speedScale;
+        
+        // Turn towards the waypoint's direction
+        final double turnError = Angles.wrapDegreesZeroCenter(waypoints[target].getDirection() - currentPosition.getDirection());
+        final boolean turnFinished = Math.abs(turnError) < turnManner.getMarginOfError();
+        final double turnSpeed = turnFinished ? 0 : getTurnSpeed(currentPosition, turnError, time);
+        
+        // Convert the field relative movement to robot relative, preserving magnitude
+        final Rotation rotation = currentPosition.getRotation();
+        swerveDrive.autoDrive(rotation.unrotateX(moveX, moveY), rotation.unrotateY(moveX, moveY), turnSpeed);
+        
+        // Update whether the command is finished
+        finished = movementFinished && turnFinished;
+    }
+    
+    /**
+     * Gets the turn speed towards the target waypoint's direction. With a turn profile, the robot turns at the
+     * profile's velocity, correcting for any difference between the profile's direction and the robot's, and
+     * no slower than the settle speed once the profile has ended. Otherwise, the turn manner's speed supplier
+     * is used with the remaining turn.
+     */
+    private double getTurnSpeed (Position currentPosition, double turnError, double time) {
+        final MotionProfile.Constraints constraints = turnManner.getProfileConstraints();
+        if (constraints == null) return Math.copySign(turnManner.getSpeedSupplier().getSpeed(Math.abs(turnError)), turnError);
+        
+        final double
+            profileTime = time - turnStartTime,
+            profileDirection = turnStartDirection + turnSign * turnProfile.getPosition(profileTime),
+            error = Angles.wrapDegreesZeroCenter(profileDirection - currentPosition.getDirection());
+        final double correction = profileTime >= turnProfile.getDuration()
+            ? constraints.getSettleVelocity(error * TURN_CORRECTION_GAIN)
+            : error * TURN_CORRECTION_GAIN;
+        final double velocity = turnSign * turnProfile.getVelocity(profileTime) + correction;
+        return Math.max(-1, Math.min(velocity / constraints.getFullSpeedVelocity(), 1));
+    }
+    
+    @Override
+    public void end (boolean interrupted) {
+        swerveDrive.stop();
+    }
+    
+    @Override
+    public boolean isFinished () {
+        return finished;
+    }
+    
+}
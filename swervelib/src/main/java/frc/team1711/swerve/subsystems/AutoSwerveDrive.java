@@ -3,9 +3,22 @@
 
 package frc.team1711.swerve.subsystems;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.interfaces.Gyro;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+import frc.team1711.swerve.util.odometry.IntegrationMode;
 import frc.team1711.swerve.util.odometry.Odometry;
+import frc.team1711.swerve.util.odometry.ParticleFilter;
+import frc.team1711.swerve.util.odometry.PoseEstimator;
 import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.SensorLogWriter;
+import frc.team1711.swerve.util.odometry.SensorSampleBuffer;
+import frc.team1711.swerve.util.odometry.SensorSampler;
+import frc.team1711.swerve.util.odometry.TimestampedPosition;
+import frc.team1711.swerve.util.odometry.WheelSlipFilter;
 
 /**
  * Expands on the {@link GyroSwerveDrive} for autonomous control, requiring
@@ -15,7 +28,16 @@ import frc.team1711.swerve.util.odometry.Position;
  */
 public abstract class AutoSwerveDrive extends GyroSwerveDrive {
     
+    // The number of samples the sensor sampler's buffer can hold
+    private static final int SAMPLE_BUFFER_CAPACITY = 64;
+    
+    private final AutoSwerveWheel[] wheels;
     private final Odometry odometry;
+    private SensorSampler sensorSampler;
+    private volatile PoseEstimator poseEstimator;
+    private ParticleFilter particleFilter;
+    private SensorLogWriter sensorLog;
+    private boolean wasDisabled = false;
     
     /**
      * Creates a new {@code AutoSwerveDrive} given {@link AutoSwerveWheel} wheels.
@@ -37,7 +59,40 @@ public abstract class AutoSwerveDrive extends GyroSwerveDrive {
         
         super(gyro, flWheel, frWheel, rlWheel, rrWheel, wheelbaseToTrackRatio);
         
-        odometry = new Odometry(this, flWheel, frWheel, rlWheel, rrWheel);
+        wheels = new AutoSwerveWheel[] {flWheel, frWheel, rlWheel, rrWheel};
+        odometry = new Odometry(this, getKinematics(), flWheel, frWheel, rlWheel, rrWheel);
+    }
+    
+    /**
+     * Creates a new {@code AutoSwerveDrive} with any number of modules.
+     * @param gyro          The {@link Gyro} to be used for field-relative control
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param wheels        The {@code AutoSwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}
+     */
+    public AutoSwerveDrive (Gyro gyro, SwerveKinematics kinematics, AutoSwerveWheel... wheels) {
+        super(gyro, kinematics, wheels);
+        
+        this.wheels = wheels.clone();
+        odometry = new Odometry(this, kinematics, wheels);
+    }
+    
+    /**
+     * Creates a new {@code AutoSwerveDrive} with any number of modules, which writes set-points to all
+     * modules at once through a {@link ModuleBank}.
+     * @param gyro          The {@link Gyro} to be used for field-relative control
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param moduleBank    The {@code ModuleBank} which sets the steering directions and drive speeds of
+     * the modules
+     * @param wheels        The {@code AutoSwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}. These are only used to read the modules' steering directions
+     * and encoder distances.
+     */
+    public AutoSwerveDrive (Gyro gyro, SwerveKinematics kinematics, ModuleBank moduleBank, AutoSwerveWheel... wheels) {
+        super(gyro, kinematics, moduleBank, wheels);
+        
+        this.wheels = wheels.clone();
+        odometry = new Odometry(this, kinematics, wheels);
     }
     
     /**
@@ -49,16 +104,373 @@ public abstract class AutoSwerveDrive extends GyroSwerveDrive {
     }
     
     /**
-     * Gets the current {@link Position} of the robot on the field.
+     * Gets the current {@link Position} of the robot on the field. Odometry is updated once per loop in
+     * {@link #periodic()} (or continuously by the odometry thread, see {@link #startOdometryThread(double)}),
+     * so reading the position does not read any sensors and can be done from any thread.
      * @return The robot's {@code Position}
      */
     public Position getPosition () {
         return odometry.getPosition();
     }
     
+    /**
+     * Gets the current {@link Position} of the robot on the field, along with the FPGA time of the
+     * sensor readings it was calculated from. This can be called from any thread.
+     * @return The robot's {@link TimestampedPosition}
+     */
+    public TimestampedPosition getTimestampedPosition () {
+        return odometry.getTimestampedPosition();
+    }
+    
+    /**
+     * Gets the version of the latest position, which increases every time odometry is updated or reset.
+     * See {@link Odometry#getPositionVersion()}.
+     * @return The version number
+     */
+    public long getPositionVersion () {
+        return odometry.getPositionVersion();
+    }
+    
+    /**
+     * Gets the {@link Position} the robot was at a given time in the past, for example the time at which
+     * a camera frame was captured. The position is interpolated between the recorded positions
+     * immediately before and after {@code timestamp}. See {@link Odometry#getPositionAt(double)}.
+     * @param timestamp The FPGA time, in seconds
+     * @return The robot's {@code Position} at {@code timestamp}
+     */
+    public Position getPositionAt (double timestamp) {
+        return odometry.getPositionAt(timestamp);
+    }
+    
+    /**
+     * Starts fusing external measurements of the robot's position, such as vision measurements, with
+     * odometry using a {@link PoseEstimator}. The estimate starts at the robot's current position. Standard
+     * deviations are given in inches and degrees.
+     * @param translationStdDev             The standard deviation of the error in the odometry's x and y
+     * coordinates which builds up over one second
+     * @param directionStdDev               The standard deviation of the error in the odometry's direction
+     * which builds up over one second
+     * @param measurementTranslationStdDev  The default standard deviation of the x and y coordinates of
+     * external measurements
+     * @param measurementDirectionStdDev    The default standard deviation of the direction of external
+     * measurements
+     * @see #addVisionMeasurement(Position, double)
+     * @see #getEstimatedPosition()
+     */
+    public void enablePoseEstimator (
+            double translationStdDev,
+            double directionStdDev,
+            double measurementTranslationStdDev,
+            double measurementDirectionStdDev) {
+        poseEstimator = new PoseEstimator(translationStdDev, directionStdDev, measurementTranslationStdDev, measurementDirectionStdDev);
+        odometry.setPoseEstimator(poseEstimator);
+    }
+    
+    /**
+     * Stops fusing external measurements with odometry.
+     * @see #enablePoseEstimator(double, double, double, double)
+     */
+    public void disablePoseEstimator () {
+        odometry.setPoseEstimator(null);
+        poseEstimator = null;
+    }
+    
+    /**
+     * Adds an external measurement of the robot's position, such as a vision measurement, taken at some time
+     * in the past. The estimate is corrected at the time the measurement was taken, without losing any odometry
+     * measured since then.
+     * @param measurement   The measured {@link Position}
+     * @param timestamp     The FPGA time at which the measurement was taken, in seconds
+     * @return              Whether or not the measurement was used. See {@link PoseEstimator#addMeasurement(Position, double)}.
+     * @throws IllegalStateException If the pose estimator has not been enabled
+     */
+    public boolean addVisionMeasurement (Position measurement, double timestamp) {
+        return getPoseEstimator().addMeasurement(measurement, timestamp);
+    }
+    
+    /**
+     * Adds an external measurement of the robot's position with its own standard deviations.
+     * See {@link #addVisionMeasurement(Position, double)}.
+     * @param measurement       The measured {@link Position}
+     * @param timestamp         The FPGA time at which the measurement was taken, in seconds
+     * @param xStdDev           The standard deviation of the measurement's x coordinate, in inches
+     * @param yStdDev           The standard deviation of the measurement's y coordinate, in inches
+     * @param directionStdDev   The standard deviation of the measurement's direction, in degrees
+     * @return                  Whether or not the measurement was used
+     * @throws IllegalStateException If the pose estimator has not been enabled
+     */
+    public boolean addVisionMeasurement (
+            Position measurement,
+            double timestamp,
+            double xStdDev,
+            double yStdDev,
+            double directionStdDev) {
+        return getPoseEstimator().addMeasurement(measurement, timestamp, xStdDev, yStdDev, directionStdDev);
+    }
+    
+    /**
+     * Gets the robot's {@link Position} estimated from both odometry and external measurements. This can be
+     * called from any thread.
+     * @return The estimated {@code Position}
+     * @throws IllegalStateException If the pose estimator has not been enabled
+     */
+    public Position getEstimatedPosition () {
+        return getPoseEstimator().getEstimatedPosition();
+    }
+    
+    /**
+     * Gets the {@link PoseEstimator} started by {@link #enablePoseEstimator(double, double, double, double)}.
+     * @return The {@code PoseEstimator}
+     * @throws IllegalStateException If the pose estimator has not been enabled
+     */
+    public PoseEstimator getPoseEstimator () {
+        final PoseEstimator estimator = poseEstimator;
+        if (estimator == null) throw new IllegalStateException("the pose estimator has not been enabled");
+        return estimator;
+    }
+    
+    /**
+     * Starts tracking the robot with a {@link ParticleFilter} moved by odometry, which can recover from the
+     * robot being bumped or its wheels slipping once it is given observations. The particles start at the
+     * robot's current position, and are processed on one thread per available processor core.
+     * @param particleCount     The number of particles, usually a few thousand
+     * @param translationNoise  The standard deviation of the noise added to each particle's movement, as a
+     * fraction of the distance moved
+     * @param directionNoise    The standard deviation of the noise added to each particle's turning, as a
+     * fraction of the angle turned
+     * @return                  The {@code ParticleFilter}, which observations should be given to
+     * @see #disableParticleFilter()
+     */
+    public ParticleFilter enableParticleFilter (int particleCount, double translationNoise, double directionNoise) {
+        disableParticleFilter();
+        particleFilter = new ParticleFilter(
+            particleCount,
+            Runtime.getRuntime().availableProcessors(),
+            translationNoise,
+            directionNoise);
+        odometry.setParticleFilter(particleFilter);
+        return particleFilter;
+    }
+    
+    /**
+     * Stops tracking the robot with a particle filter, and shuts down its threads.
+     * @see #enableParticleFilter(int, double, double)
+     */
+    public void disableParticleFilter () {
+        if (particleFilter == null) return;
+        odometry.setParticleFilter(null);
+        particleFilter.close();
+        particleFilter = null;
+    }
+    
+    /**
+     * Gets the {@link ParticleFilter} started by {@link #enableParticleFilter(int, double, double)}.
+     * @return The {@code ParticleFilter}, or {@code null} if it is not enabled
+     */
+    public ParticleFilter getParticleFilter () {
+        return particleFilter;
+    }
+    
+    /**
+     * Sets the way {@link Odometry} integrates the wheel movement measured between updates into the
+     * robot's position. {@link IntegrationMode#ARC} stays accurate at lower update rates while the robot
+     * strafes and turns at the same time. The default is {@link IntegrationMode#CHORD}.
+     * @param integrationMode The {@link IntegrationMode} to use
+     */
+    public void setOdometryIntegrationMode (IntegrationMode integrationMode) {
+        odometry.setIntegrationMode(integrationMode);
+    }
+    
+    /**
+     * Sets whether or not odometry takes the robot's direction from the gyro. Turn the gyro off if it
+     * disconnects or stops reporting sensible angles, and the robot's direction will be estimated from
+     * the rotation measured by the wheels instead. See {@link Odometry#setGyroEnabled(boolean)}.
+     * 
+     * <p><b>IMPLEMENTATION NOTE: the wheel-based direction is only meaningful if this drive was constructed
+     * with a {@link SwerveKinematics} whose module positions are measured in inches. The gyro cannot be turned
+     * off on a drive constructed with a {@code wheelbaseToTrackRatio}, which only gives the robot's proportions.</b></p>
+     * 
+     * @param gyroEnabled Whether or not odometry should use the gyro
+     * @throws IllegalStateException If the gyro is turned off and the module positions are not measured
+     */
+    public void setOdometryGyroEnabled (boolean gyroEnabled) {
+        odometry.setGyroEnabled(gyroEnabled);
+    }
+    
+    /**
+     * Starts rejecting modules whose movement is inconsistent with the rigid-body movement implied by the
+     * other modules before odometry integrates the movement, so that a wheel which spins out or is lifted
+     * off the ground does not corrupt the robot's position. See {@link WheelSlipFilter}.
+     * @param absoluteTolerance The fixed part of the tolerance, in inches, which should be larger than the
+     * encoder noise in a single sample
+     * @param relativeTolerance The part of the tolerance which grows with the distance moved, as a fraction
+     * of the average distance moved by the modules
+     * @return                  The {@code WheelSlipFilter}, which counts rejected modules
+     * @see #disableWheelSlipRejection()
+     */
+    public WheelSlipFilter enableWheelSlipRejection (double absoluteTolerance, double relativeTolerance) {
+        final WheelSlipFilter slipFilter = new WheelSlipFilter(getKinematics(), absoluteTolerance, relativeTolerance);
+        odometry.setWheelSlipFilter(slipFilter);
+        return slipFilter;
+    }
+    
+    /**
+     * Stops rejecting inconsistent modules, so odometry uses every module again.
+     * @see #enableWheelSlipRejection(double, double)
+     */
+    public void disableWheelSlipRejection () {
+        odometry.setWheelSlipFilter(null);
+    }
+    
+    /**
+     * Gets the {@link WheelSlipFilter} started by {@link #enableWheelSlipRejection(double, double)}.
+     * @return The {@code WheelSlipFilter}, or {@code null} if it is not enabled
+     */
+    public WheelSlipFilter getWheelSlipFilter () {
+        return odometry.getWheelSlipFilter();
+    }
+    
+    /**
+     * Gets the robot's direction estimated only from the rotation measured by the wheels, which can be
+     * used to cross-check the gyro. See {@link Odometry#getWheelDirection()}.
+     * @return The robot's direction according to the wheels, in degrees
+     * @throws IllegalStateException If the module positions are not measured, as on a drive constructed
+     * with a {@code wheelbaseToTrackRatio}
+     */
+    public double getWheelDirection () {
+        return odometry.getWheelDirection();
+    }
+    
+    /**
+     * Starts sampling the wheels' encoders and steering directions, along with the gyro, on a separate
+     * thread at a fixed rate. While the sampler is running, {@link Odometry} integrates every sample
+     * taken by the sampler instead of reading the sensors itself, so odometry can be updated at a
+     * higher rate than the command scheduler's loop.
+     * 
+     * <p><b>IMPLEMENTATION NOTE: {@link AutoSwerveWheel#getEncoderDistance()},
+     * {@link AutoSwerveWheel#getDirection()}, and the gyro will be read from the sampler's thread, so
+     * they must be safe to read from a thread other than the main robot thread.</b></p>
+     * 
+     * @param frequency The number of samples to take per second
+     * @see #stopSensorSampler()
+     * @see #getSensorSampler()
+     */
+    public void startSensorSampler (double frequency) {
+        if (sensorSampler == null) {
+            sensorSampler = new SensorSampler(SAMPLE_BUFFER_CAPACITY, getGyro()::getAngle, wheels);
+        }
+        
+        final SensorSampleBuffer.Reader reader = sensorSampler.getBuffer().newReader();
+        sensorSampler.start(frequency);
+        odometry.setSampleSource(reader);
+    }
+    
+    /**
+     * Starts updating odometry on its own thread at a fixed rate, fed by a {@link SensorSampler} running
+     * at the same rate. Every sample is integrated with the FPGA timestamp at which it was taken, so
+     * the robot's position no longer depends on the timing of the command scheduler's loop. While the
+     * odometry thread is running, the main robot thread never updates odometry, and
+     * {@link #getPosition()} returns the latest position published by the odometry thread.
+     * Otherwise, odometry is updated by the main robot thread in {@link #periodic()}.
+     * 
+     * <p><b>IMPLEMENTATION NOTE: the same restrictions on reading sensors apply as for
+     * {@link #startSensorSampler(double)}.</b></p>
+     * 
+     * @param frequency The number of odometry updates per second
+     * @see #stopOdometryThread()
+     */
+    public void startOdometryThread (double frequency) {
+        startSensorSampler(frequency);
+        odometry.startThread(frequency);
+    }
+    
+    /**
+     * Stops updating odometry on its own thread, after which it will be updated by the main robot
+     * thread again. The sensor sampler is left running.
+     * @see #startOdometryThread(double)
+     */
+    public void stopOdometryThread () {
+        odometry.stopThread();
+    }
+    
+    /**
+     * Stops the sensor sampler, after which {@link Odometry} will read the sensors directly again.
+     * This also stops the odometry thread, if it is running.
+     * @see #startSensorSampler(double)
+     */
+    public void stopSensorSampler () {
+        if (sensorSampler == null) return;
+        odometry.stopThread();
+        sensorSampler.stop();
+        odometry.setSampleSource(null);
+    }
+    
+    /**
+     * Gets the {@link SensorSampler} started by {@link #startSensorSampler(double)}. Other consumers
+     * of sensor samples can read them with {@code getSensorSampler().getBuffer().newReader()}.
+     * @return The {@code SensorSampler}, or {@code null} if it has never been started
+     */
+    public SensorSampler getSensorSampler () {
+        return sensorSampler;
+    }
+    
+    /**
+     * Starts recording every sensor sample integrated by {@link Odometry} to a binary log file, so that the
+     * odometry can later be rerun offline on exactly the same inputs with a
+     * {@link frc.team1711.swerve.util.odometry.SensorLogReplay}. Any log which is already being recorded
+     * is stopped first. Buffered samples are written to the file at least twice a second, and whenever the
+     * robot is disabled.
+     * @param file          The log file, which is replaced if it already exists
+     * @throws IOException  If the file cannot be opened
+     * @see #stopSensorLog()
+     */
+    public void startSensorLog (Path file) throws IOException {
+        stopSensorLog();
+        sensorLog = new SensorLogWriter(file, getKinematics());
+        odometry.setSensorLog(sensorLog);
+    }
+    
+    /**
+     * Stops recording the sensor log, and closes its file.
+     * @see #startSensorLog(Path)
+     */
+    public void stopSensorLog () {
+        if (sensorLog == null) return;
+        odometry.setSensorLog(null);
+        sensorLog.close();
+        sensorLog = null;
+    }
+    
+    /**
+     * Gets the {@link SensorLogWriter} started by {@link #startSensorLog(Path)}.
+     * @return The {@code SensorLogWriter}, or {@code null} if no log is being recorded
+     */
+    public SensorLogWriter getSensorLog () {
+        return sensorLog;
+    }
+    
+    /**
+     * Updates odometry once per loop, unless the odometry thread is running. This is called by the
+     * command scheduler.
+     * 
+     * <p><b>IMPLEMENTATION NOTE: Subclasses which override {@code periodic()} should call
+     * {@code super.periodic()}, otherwise the robot's position will only be updated while it is driven
+     * with {@link #autoDrive(double, double, double)}.</b></p>
+     */
+    @Override
+    public void periodic () {
+        super.periodic();
+        updateOdometry();
+        
+        // Write the sensor log to its file as soon as the robot is disabled, which is usually the end of a match
+        final boolean disabled = DriverStation.isDisabled();
+        if (disabled && !wasDisabled && sensorLog != null) sensorLog.flush();
+        wasDisabled = disabled;
+    }
+    
     @Override
     protected void updateOdometry () {
-        odometry.update();
+        if (!odometry.isThreadRunning()) odometry.update();
     }
     
 }
\ No newline at end of file
@@ -11,6 +11,10 @@ package frc.team1711.swerve.subsystems;
  */
 abstract public class AutoSwerveWheel extends SwerveWheel {
     
+    // Sensor snapshot, see SwerveDrive#enableSensorSnapshots
+    private boolean distanceSampled = false;
+    private double distanceSnapshot;
+    
     /**
      * Gets the number of inches traveled along the ground, according to the drive encoder.
      * Driving the wheel in reverse should decrease this value, and driving forwards should
@@ -20,4 +24,27 @@ abstract public class AutoSwerveWheel extends SwerveWheel {
      */
     abstract public double getEncoderDistance ();
     
+    /**
+     * Gets the encoder distance from the current sensor snapshot. If sensor snapshots are enabled
+     * (see {@link SwerveDrive#enableSensorSnapshots()}), {@link #getEncoderDistance()} is only read
+     * once per control cycle, and every other call in the same cycle returns the same value. Otherwise,
+     * this is the same as calling {@code getEncoderDistance()}.
+     * @return The inches this wheel has driven since the robot was enabled
+     * @see #getEncoderDistance()
+     */
+    public final double getEncoderDistanceSnapshot () {
+        if (!isSensorSnapshotsEnabled()) return getEncoderDistance();
+        if (!distanceSampled) {
+            distanceSnapshot = getEncoderDistance();
+            distanceSampled = true;
+        }
+        return distanceSnapshot;
+    }
+    
+    @Override
+    void invalidateSensorSnapshot () {
+        super.invalidateSensorSnapshot();
+        distanceSampled = false;
+    }
+    
 }
\ No newline at end of file
@@ -6,7 +6,9 @@ package frc.team1711.swerve.subsystems;
 import edu.wpi.first.wpilibj.interfaces.Gyro;
 
 import frc.team1711.swerve.util.Angles;
-import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.InputPipeline;
+import frc.team1711.swerve.util.Rotation;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
 import frc.team1711.swerve.util.odometry.Position;
 
 /**
@@ -18,6 +20,14 @@ public abstract class GyroSwerveDrive extends SwerveDrive {
     private final Gyro gyro;
     private double gyroResetAngle;
     
+    // The last gyro angle used for field relative driving, and its cosine and sine, which are only found again
+    // when the angle changes. These are kept as primitives so that driving never creates any objects
+    private double gyroDegrees = 0, gyroCos = 1, gyroSin = 0;
+    
+    // Sensor snapshot, see SwerveDrive#enableSensorSnapshots
+    private boolean gyroSampled = false;
+    private double gyroSnapshot;
+    
     /**
      * Creates a new {@code GyroSwerveDrive} given {@link SwerveWheel} wheels.
      * @param gyro                  The {@link Gyro} to be used for field-relative control
@@ -41,6 +51,35 @@ public abstract class GyroSwerveDrive extends SwerveDrive {
         gyroResetAngle = gyro.getAngle();
     }
     
+    /**
+     * Creates a new {@code GyroSwerveDrive} with any number of modules.
+     * @param gyro          The {@link Gyro} to be used for field-relative control
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param wheels        The {@code SwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}
+     */
+    public GyroSwerveDrive (Gyro gyro, SwerveKinematics kinematics, SwerveWheel... wheels) {
+        super(kinematics, wheels);
+        this.gyro = gyro;
+        gyroResetAngle = gyro.getAngle();
+    }
+    
+    /**
+     * Creates a new {@code GyroSwerveDrive} with any number of modules, which writes set-points to all
+     * modules at once through a {@link ModuleBank}.
+     * @param gyro          The {@link Gyro} to be used for field-relative control
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param moduleBank    The {@code ModuleBank} which sets the steering directions and drive speeds of
+     * the modules
+     * @param wheels        The {@code SwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}. These are only used to read the modules' steering directions.
+     */
+    public GyroSwerveDrive (Gyro gyro, SwerveKinematics kinematics, ModuleBank moduleBank, SwerveWheel... wheels) {
+        super(kinematics, moduleBank, wheels);
+        this.gyro = gyro;
+        gyroResetAngle = gyro.getAngle();
+    }
+    
     /**
      * Drives the {@code SwerveDrive} given strafing and steering inputs, all on the interval [-1, 1],
      * where +{@code strafeY} is forwards and +{@code strafeX} is to the right. Inputs are assumed to be from a user-controlled
@@ -53,19 +92,27 @@ public abstract class GyroSwerveDrive extends SwerveDrive {
      * @see #steerAndDriveAll(double, double)
      */
     public void fieldRelativeUserInputDrive (double strafeX, double strafeY, double steering, ControlsConfig controlsConfig) {
-        Vector strafeInput = new Vector(strafeX, strafeY);
+        // strafe and steering inputs processing, which happens in the field's frame so that turning the
+        // robot doesn't count as a change in the strafe input
+        final InputPipeline inputPipeline = controlsConfig.inputPipeline;
+        inputPipeline.process(strafeX, strafeY, steering);
+        strafeX = inputPipeline.getStrafeX();
+        strafeY = inputPipeline.getStrafeY();
         
-        // strafe and steering inputs processing
-        strafeInput = controlsConfig.inputHandler.apply(strafeInput);
-        steering = controlsConfig.inputHandler.apply(steering);
-        
-        // Turns the strafeInput vector into a new vector with same magnitude but rotation adjusted for field relative
-        final Vector fieldStrafeInput = strafeInput.toRotationDegrees(fieldRelToRobotRel(strafeInput.getRotationDegrees()));
+        // Turns the strafe input into a robot relative vector by rotating it counterclockwise by the gyro angle,
+        // in the same way as Rotation#unrotateX and Rotation#unrotateY
+        final double gyroAngle = getGyroAngle();
+        if (gyroAngle != gyroDegrees) {
+            final double radians = Math.toRadians(gyroAngle);
+            gyroDegrees = gyroAngle;
+            gyroCos = Angles.cos(radians);
+            gyroSin = Angles.sin(radians);
+        }
         
         autoDrive(
-            fieldStrafeInput.getX() * controlsConfig.strafeSpeed,
-            fieldStrafeInput.getY() * controlsConfig.strafeSpeed,
-            steering * controlsConfig.steerSpeed);
+            strafeX * gyroCos - strafeY * gyroSin,
+            strafeY * gyroCos + strafeX * gyroSin,
+            inputPipeline.getSteering());
     }
     
     /**
@@ -88,16 +135,37 @@ public abstract class GyroSwerveDrive extends SwerveDrive {
         return Angles.wrapDegrees(getAbsoluteGyroAngle() - gyroResetAngle);
     }
     
+    /**
+     * Gets the gyro yaw angle from {@link #getGyroAngle()} as a {@link Rotation}. This creates a new
+     * {@code Rotation} on every call, so it is not used for driving.
+     * @return The gyro yaw angle, as a {@code Rotation}
+     */
+    public Rotation getGyroRotation () {
+        return Rotation.fromDegrees(getGyroAngle());
+    }
+    
     /**
      * Gets the absolute gyro angle, unaffected by {@link #resetGyro()}. The angle is not
      * constricted to being between 0 and 360 degrees, and will continuously increase or
-     * decrease as the robot turns past full rotations.
+     * decrease as the robot turns past full rotations. If sensor snapshots are enabled (see
+     * {@link #enableSensorSnapshots()}), the gyro is only read once per control cycle.
      * @return The gyro yaw angle.
      * 
      * @see #getGyroAngle()
      */
     public double getAbsoluteGyroAngle () {
-        return gyro.getAngle();
+        if (!isSensorSnapshotsEnabled()) return gyro.getAngle();
+        if (!gyroSampled) {
+            gyroSnapshot = gyro.getAngle();
+            gyroSampled = true;
+        }
+        return gyroSnapshot;
+    }
+    
+    @Override
+    public void invalidateSensorSnapshot () {
+        super.invalidateSensorSnapshot();
+        gyroSampled = false;
     }
     
     /**
@@ -137,8 +205,9 @@ public abstract class GyroSwerveDrive extends SwerveDrive {
         resetGyro(0);
     }
     
-    private double fieldRelToRobotRel (double rotation) {
-        return Angles.wrapDegrees(rotation - getGyroAngle());
+    // Gets the gyro, used by AutoSwerveDrive to read the gyro from other threads
+    Gyro getGyro () {
+        return gyro;
     }
     
 }
\ No newline at end of file
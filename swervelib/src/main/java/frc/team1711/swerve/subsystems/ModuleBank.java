@@ -0,0 +1,39 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.subsystems;
+
+/**
+ * Writes set-points to every module of a {@link SwerveDrive} in a single call, so that implementations
+ * can send all modules' frames as one batched write and latch them together (for example, with a motor
+ * controller's synchronous group update). The {@code SwerveDrive} calculates each module's steering
+ * direction and drive speed, including reversing modules which are closer to facing backwards,
+ * before passing them to the {@code ModuleBank}.
+ * 
+ * <p>The {@link SwerveWheel} instances given to the {@code SwerveDrive} are still used to read each
+ * module's steering direction (and encoder distance, for an {@link AutoSwerveDrive}), but their
+ * {@code setDirection}, {@code setDriveSpeed}, and {@code stopSteering} methods are not called.
+ * {@link SwerveWheelBank} is the default {@code ModuleBank}, which sends set-points to each
+ * {@code SwerveWheel} separately.</p>
+ * @author Gabriel Seaver
+ * 
+ * @see SwerveDrive#SwerveDrive(frc.team1711.swerve.util.kinematics.SwerveKinematics, ModuleBank, SwerveWheel...)
+ */
+public interface ModuleBank {
+    
+    /**
+     * Sets the target steering direction and drive speed of every module at once. Index {@code i} of each
+     * array corresponds with the module at index {@code i} of the {@code SwerveDrive}. The arrays are reused
+     * by the {@code SwerveDrive}, so they should not be stored or modified.
+     * @param directions    The target steering directions, in degrees, on the interval [0, 360). Zero degrees
+     * is directly forwards and an increase in direction indicates a further clockwise target direction.
+     * @param driveSpeeds   The drive speeds on the interval [-1, 1]
+     */
+    public void setModuleOutputs (double[] directions, double[] driveSpeeds);
+    
+    /**
+     * Immediately stops all drive and steering movement of every module.
+     */
+    public void stopModules ();
+    
+}
@@ -7,7 +7,8 @@ import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 import frc.team1711.swerve.util.InputHandler;
-import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.InputPipeline;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
 
 /**
  * Utilizes {@link SwerveWheel} subsystems to create a singular, easy-to-use swerve drive.
@@ -15,13 +16,29 @@ import frc.team1711.swerve.util.Vector;
  */
 public class SwerveDrive extends SubsystemBase {
     
-    private final SwerveWheel
-        flWheel,
-        frWheel,
-        rlWheel,
-        rrWheel;
+    // Dashboard names for the modules of a SwerveDrive made with a wheelbaseToTrackRatio
+    private static final String[] RECTANGULAR_MODULE_NAMES = {
+        "Front Left Module",
+        "Front Right Module",
+        "Rear Left Module",
+        "Rear Right Module",
+    };
     
-    private final double wheelbaseToTrackRatio;
+    private final SwerveWheel[] wheels;
+    private final String[] moduleNames;
+    
+    private final SwerveKinematics kinematics;
+    
+    // The module bank set-points are written to, and whether or not it is the default SwerveWheelBank
+    // which applies command deduplication to each set-point itself
+    private final ModuleBank moduleBank;
+    private final boolean defaultModuleBank;
+    
+    // Module speeds and directions calculated by autoDrive, and the set-points sent to the modules,
+    // preallocated so that driving the robot does not create garbage on every control cycle
+    private final double[] moduleSpeeds, moduleDirections, outputSpeeds, outputDirections;
+    
+    private boolean sensorSnapshotsEnabled = false;
     
     /**
      * Creates a new {@code SwerveDrive}.
@@ -39,22 +56,69 @@ public class SwerveDrive extends SubsystemBase {
         SwerveWheel rrWheel,
         double wheelbaseToTrackRatio) {
         
-        this.flWheel = flWheel;
-        this.frWheel = frWheel;
-        this.rlWheel = rlWheel;
-        this.rrWheel = rrWheel;
-        this.wheelbaseToTrackRatio = wheelbaseToTrackRatio;
+        this(
+            SwerveKinematics.rectangular(wheelbaseToTrackRatio),
+            null,
+            RECTANGULAR_MODULE_NAMES,
+            new SwerveWheel[] {flWheel, frWheel, rlWheel, rrWheel});
+    }
+    
+    /**
+     * Creates a new {@code SwerveDrive} with any number of modules.
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param wheels        The {@code SwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}
+     */
+    public SwerveDrive (SwerveKinematics kinematics, SwerveWheel... wheels) {
+        this(kinematics, null, null, wheels);
+    }
+    
+    /**
+     * Creates a new {@code SwerveDrive} with any number of modules, which writes set-points to all modules
+     * at once through a {@link ModuleBank}.
+     * @param kinematics    The {@link SwerveKinematics} describing the positions of the modules
+     * @param moduleBank    The {@code ModuleBank} which sets the steering directions and drive speeds of
+     * the modules
+     * @param wheels        The {@code SwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}. These are only used to read the modules' steering directions.
+     */
+    public SwerveDrive (SwerveKinematics kinematics, ModuleBank moduleBank, SwerveWheel... wheels) {
+        this(kinematics, moduleBank, null, wheels);
+    }
+    
+    private SwerveDrive (SwerveKinematics kinematics, ModuleBank moduleBank, String[] moduleNames, SwerveWheel[] wheels) {
+        if (wheels.length != kinematics.getModuleCount())
+            throw new IllegalArgumentException("number of wheels should match the number of modules in kinematics");
+        
+        this.kinematics = kinematics;
+        this.wheels = wheels.clone();
+        
+        defaultModuleBank = moduleBank == null;
+        this.moduleBank = defaultModuleBank ? new SwerveWheelBank(wheels) : moduleBank;
+        
+        if (moduleNames == null) {
+            moduleNames = new String[wheels.length];
+            for (int i = 0; i < wheels.length; i ++) moduleNames[i] = "Module " + i;
+        }
+        this.moduleNames = moduleNames;
+        
+        moduleSpeeds = new double[wheels.length];
+        moduleDirections = new double[wheels.length];
+        outputSpeeds = new double[wheels.length];
+        outputDirections = new double[wheels.length];
     }
     
     /**
      * A class representing the configuration of relative speeds for {@link SwerveDrive} in
      * {@link SwerveDrive#userInputDrive(double, double, double, ControlsConfig)}, along with
-     * an {@link InputHandler} which handles user-generated input.
+     * an {@link InputHandler} which handles user-generated input. User inputs are processed by an
+     * {@link InputPipeline}, which can also limit and smooth them.
      */
     public static class ControlsConfig {
         
         public final double strafeSpeed, steerSpeed;
         public final InputHandler inputHandler;
+        public final InputPipeline inputPipeline;
         
         /**
          * Creates a new {@code ControlsConfig}. Note: If {@code strafeSpeed} and {@code steerSpeed} sum to greater
@@ -70,9 +134,20 @@ public class SwerveDrive extends SubsystemBase {
          * @param inputHandler  The {@link InputHandler} associated with this {@code ControlsConfig}
          */
         public ControlsConfig (double strafeSpeed, double steerSpeed, InputHandler inputHandler) {
-            this.strafeSpeed = strafeSpeed;
-            this.steerSpeed = steerSpeed;
-            this.inputHandler = inputHandler;
+            this(new InputPipeline(inputHandler, strafeSpeed, steerSpeed));
+        }
+        
+        /**
+         * Creates a new {@code ControlsConfig} from an {@link InputPipeline}, which can limit the slew rate of
+         * the inputs, filter them, and give steering priority over strafing. The pipeline keeps state between
+         * calls, so the {@code ControlsConfig} should only be used with one {@link SwerveDrive}.
+         * @param inputPipeline The {@code InputPipeline} which processes user inputs
+         */
+        public ControlsConfig (InputPipeline inputPipeline) {
+            this.strafeSpeed = inputPipeline.getStrafeSpeed();
+            this.steerSpeed = inputPipeline.getSteerSpeed();
+            this.inputHandler = inputPipeline.getInputHandler();
+            this.inputPipeline = inputPipeline;
         }
         
     }
@@ -80,15 +155,15 @@ public class SwerveDrive extends SubsystemBase {
     @Override
     public void initSendable (SendableBuilder builder) {
         builder.setSmartDashboardType("Swerve Drive");
-        builder.addDoubleProperty("Front Left Module", () -> getSendableDir(flWheel), (x) -> {});
-        builder.addDoubleProperty("Front Right Module", () -> getSendableDir(frWheel), (x) -> {});
-        builder.addDoubleProperty("Rear Left Module", () -> getSendableDir(rlWheel), (x) -> {});
-        builder.addDoubleProperty("Rear Right Module", () -> getSendableDir(rrWheel), (x) -> {});
+        for (int i = 0; i < wheels.length; i ++) {
+            final SwerveWheel wheel = wheels[i];
+            builder.addDoubleProperty(moduleNames[i], () -> getSendableDir(wheel), (x) -> {});
+        }
     }
     
     // Gets the direction to send to the dashboard for a given SwerveWheel
     private double getSendableDir (SwerveWheel wheel) {
-        return (wheel.getDirection() + 90) % 180 - 90;
+        return (wheel.getDirectionSnapshot() + 90) % 180 - 90;
     }
     
     /**
@@ -103,16 +178,12 @@ public class SwerveDrive extends SubsystemBase {
      */
     public void userInputDrive (double strafeX, double strafeY, double steering, ControlsConfig controlsConfig) {
         
-        // Applies inputHandler to all inputs
-        Vector strafeVector = new Vector(strafeX, strafeY);
-        strafeVector = controlsConfig.inputHandler.apply(strafeVector);
-        steering = controlsConfig.inputHandler.apply(steering);
+        // Applies the input pipeline to all inputs
+        final InputPipeline inputPipeline = controlsConfig.inputPipeline;
+        inputPipeline.process(strafeX, strafeY, steering);
         
         // Passes new inputs to autoDrive
-        autoDrive(
-            strafeVector.getX() * controlsConfig.strafeSpeed,
-            strafeVector.getY() * controlsConfig.strafeSpeed,
-            steering * controlsConfig.steerSpeed);
+        autoDrive(inputPipeline.getStrafeX(), inputPipeline.getStrafeY(), inputPipeline.getSteering());
     }
     
     /**
@@ -127,71 +198,45 @@ public class SwerveDrive extends SubsystemBase {
     public void autoDrive (double strafeX, double strafeY, double steering) {
         updateOdometry();
         
-        // Calculating strafe vector, the vector all the wheels would move at if swerve were to only strafe
-        Vector strafeVector = new Vector(strafeX, strafeY);
-        
-        // Steering vector FR is the steering vector that will be added to the front right wheel, and is used
-        // to calculate the steering vectors for all the other wheels
-        Vector steeringVectorFR = new Vector(wheelbaseToTrackRatio, -1); // Puts steeringVectorFR in the correct DIRECTION for rotation (wrong magnitude)
-        steeringVectorFR = steeringVectorFR.scale(steering/steeringVectorFR.getMagnitude()); // Scales steeringVectorFR to the magnitude of the steering variable
-        
-        /*
-        Clockwise steering vector additions:
-        (top-down view of robot with --+ representing vector arrows for clockwise turning)
-        See https://www.desmos.com/calculator/3rogeuv7u2
-        |
-        |        +
-        |       /     \
-        |   FL   |---| +   FR
-        |        |   |
-        |  RL  + |---|   RR
-        |       \     /
-        |            +
-        */
-        
-        // Calculates movement vectors for each wheel, taking into account strafeVector
-        // which is how wheels would move if they were to only strafe, and steeringVectorFR
-        // which is how the front right wheel were to move if it were to only use the
-        // steering input
-        // Movement Vector = Strafe Vector + Module's Steering Vector
-        // Module's steering vector can be put in terms of a transformation
-        // on the front right module's steering vector
-        final Vector frVector = strafeVector.add(steeringVectorFR);
-        final Vector rrVector = strafeVector.add(steeringVectorFR.reflectAcrossY());
-        final Vector rlVector = strafeVector.add(steeringVectorFR.scale(-1));
-        final Vector flVector = strafeVector.add(steeringVectorFR.reflectAcrossX());
-        
-        // Get wheel speeds
-        double
-            flSpeed = flVector.getMagnitude(),
-            frSpeed = frVector.getMagnitude(),
-            rlSpeed = rlVector.getMagnitude(),
-            rrSpeed = rrVector.getMagnitude();
-        
-        
-        // Because wheel speeds must be in correct proportions in order for swerve
-        // to function correctly, we check if the maximum speed is within
-        // the proper bounds and if it isn't then divide all by the maximum speed
-        final double maxSpeed = Math.max(Math.max(flSpeed, frSpeed), Math.max(rlSpeed, rrSpeed));
-        
-        if (maxSpeed > 1) {
-            flSpeed /= maxSpeed;
-            frSpeed /= maxSpeed;
-            rlSpeed /= maxSpeed;
-            rrSpeed /= maxSpeed;
-        }
+        kinematics.toModuleStates(strafeX, strafeY, steering, moduleSpeeds, moduleDirections);
         
-        // Vectors default to 90 degrees; they should not steer in a new direction if they don't need to drive
-        double flDirection = flSpeed > 0 ? flVector.getRotationDegrees() : flWheel.getDirection();
-        double frDirection = frSpeed > 0 ? frVector.getRotationDegrees() : frWheel.getDirection();
-        double rlDirection = rlSpeed > 0 ? rlVector.getRotationDegrees() : rlWheel.getDirection();
-        double rrDirection = rrSpeed > 0 ? rrVector.getRotationDegrees() : rrWheel.getDirection();
+        // Modules should not steer in a new direction if they don't need to drive
+        for (int i = 0; i < wheels.length; i ++) {
+            if (!(moduleSpeeds[i] > 0)) moduleDirections[i] = wheels[i].getDirectionSnapshot();
+        }
         
         // Sets the final wheel speeds and rotations
-        flWheel.steerAndDrive(flDirection, flSpeed);
-        frWheel.steerAndDrive(frDirection, frSpeed);
-        rlWheel.steerAndDrive(rlDirection, rlSpeed);
-        rrWheel.steerAndDrive(rrDirection, rrSpeed);
+        setModuleStates(moduleDirections, moduleSpeeds);
+    }
+    
+    // Steers and drives every module given target directions and speeds on the interval [0, 1]
+    private void setModuleStates (double[] directions, double[] speeds) {
+        for (int i = 0; i < wheels.length; i ++) {
+            wheels[i].computeOutputs(directions[i], speeds[i]);
+            outputDirections[i] = wheels[i].getOutputDirection();
+            outputSpeeds[i] = wheels[i].getOutputSpeed();
+        }
+        
+        // The default module bank applies command deduplication to each set-point
+        if (defaultModuleBank) {
+            moduleBank.setModuleOutputs(outputDirections, outputSpeeds);
+            return;
+        }
+        
+        // Other module banks write every module at once, so the write is only
+        // skipped if every module's set-points are redundant
+        boolean redundant = true;
+        for (int i = 0; i < wheels.length; i ++) {
+            final double now = wheels[i].getDeduplicationTime();
+            redundant = redundant && wheels[i].isRedundant(outputDirections[i], outputSpeeds[i], now);
+        }
+        
+        if (!redundant) moduleBank.setModuleOutputs(outputDirections, outputSpeeds);
+        
+        for (int i = 0; i < wheels.length; i ++) {
+            final double now = wheels[i].getDeduplicationTime();
+            wheels[i].recordBankOutputs(outputDirections[i], outputSpeeds[i], !redundant, now);
+        }
     }
     
     /**
@@ -206,10 +251,11 @@ public class SwerveDrive extends SubsystemBase {
      */
     public void steerAndDriveAll (double direction, double speed) {
         updateOdometry();
-        flWheel.steerAndDrive(direction, speed);
-        frWheel.steerAndDrive(direction, speed);
-        rlWheel.steerAndDrive(direction, speed);
-        rrWheel.steerAndDrive(direction, speed);
+        for (int i = 0; i < wheels.length; i ++) {
+            moduleDirections[i] = direction;
+            moduleSpeeds[i] = speed;
+        }
+        setModuleStates(moduleDirections, moduleSpeeds);
     }
     
     /**
@@ -225,10 +271,9 @@ public class SwerveDrive extends SubsystemBase {
     public boolean steerAllWithinRange (double direction, double marginOfError) {
         steerAndDriveAll(direction, 0);
         
-        return  flWheel.checkWithin180Range(direction, marginOfError) &&
-                frWheel.checkWithin180Range(direction, marginOfError) &&
-                rlWheel.checkWithin180Range(direction, marginOfError) &&
-                rrWheel.checkWithin180Range(direction, marginOfError);
+        boolean withinRange = true;
+        for (SwerveWheel wheel : wheels) withinRange = withinRange && wheel.checkWithin180Range(direction, marginOfError);
+        return withinRange;
     }
     
     /**
@@ -236,10 +281,113 @@ public class SwerveDrive extends SubsystemBase {
      */
     public void stop () {
         updateOdometry();
-        flWheel.stop();
-        frWheel.stop();
-        rlWheel.stop();
-        rrWheel.stop();
+        moduleBank.stopModules();
+        if (!defaultModuleBank) {
+            for (SwerveWheel wheel : wheels) wheel.recordStop();
+        }
+    }
+    
+    /**
+     * Enables command deduplication on every wheel, so that unchanged set-points are not resent to
+     * the motor controllers on every control cycle. Tolerances can be configured for individual modules
+     * with {@link SwerveWheel#enableCommandDeduplication(double, double, double)}.
+     * @param directionTolerance    The largest change in target steering direction, in degrees, which
+     * will not be sent
+     * @param speedTolerance        The largest change in drive speed which will not be sent
+     * @param refreshInterval       The time in seconds after which an unchanged set-point is sent again
+     * @see #disableCommandDeduplication()
+     */
+    public void enableCommandDeduplication (double directionTolerance, double speedTolerance, double refreshInterval) {
+        for (SwerveWheel wheel : wheels) wheel.enableCommandDeduplication(directionTolerance, speedTolerance, refreshInterval);
+    }
+    
+    /**
+     * Disables command deduplication on every wheel.
+     * @see #enableCommandDeduplication(double, double, double)
+     */
+    public void disableCommandDeduplication () {
+        for (SwerveWheel wheel : wheels) wheel.disableCommandDeduplication();
+    }
+    
+    /**
+     * Gets the total number of commands sent to all wheels.
+     * @return The number of commands sent
+     * @see SwerveWheel#getSentCommandCount()
+     */
+    public long getSentCommandCount () {
+        long count = 0;
+        for (SwerveWheel wheel : wheels) count += wheel.getSentCommandCount();
+        return count;
+    }
+    
+    /**
+     * Gets the total number of commands which were not sent to any wheel because of command deduplication.
+     * @return The number of commands suppressed
+     * @see SwerveWheel#getSuppressedCommandCount()
+     */
+    public long getSuppressedCommandCount () {
+        long count = 0;
+        for (SwerveWheel wheel : wheels) count += wheel.getSuppressedCommandCount();
+        return count;
+    }
+    
+    /**
+     * Enables sensor snapshots, so that every sensor is read at most once per control cycle. While
+     * enabled, the library reads wheel directions, encoder distances, and the gyro angle from a snapshot
+     * which is sampled the first time each sensor is needed in a cycle, and reused until the snapshot is
+     * invalidated. The snapshot is invalidated in {@link #periodic()}, which the command scheduler calls
+     * once per loop, or explicitly with {@link #invalidateSensorSnapshot()}.
+     * 
+     * <p><b>IMPLEMENTATION NOTE: Subclasses which override {@code periodic()} should call
+     * {@code super.periodic()}, or call {@code invalidateSensorSnapshot()} themselves once per
+     * control cycle, otherwise sensor values will never be updated while snapshots are enabled.</b></p>
+     * 
+     * @see #disableSensorSnapshots()
+     * @see SwerveWheel#getDirectionSnapshot()
+     */
+    public void enableSensorSnapshots () {
+        setSensorSnapshotsEnabled(true);
+    }
+    
+    /**
+     * Disables sensor snapshots, so that the library reads sensors directly every time their values are needed.
+     * @see #enableSensorSnapshots()
+     */
+    public void disableSensorSnapshots () {
+        setSensorSnapshotsEnabled(false);
+    }
+    
+    private void setSensorSnapshotsEnabled (boolean enabled) {
+        sensorSnapshotsEnabled = enabled;
+        for (SwerveWheel wheel : wheels) wheel.setSensorSnapshotsEnabled(enabled);
+        invalidateSensorSnapshot();
+    }
+    
+    // Whether or not sensor snapshots are enabled, used by GyroSwerveDrive
+    boolean isSensorSnapshotsEnabled () {
+        return sensorSnapshotsEnabled;
+    }
+    
+    /**
+     * Invalidates the current sensor snapshot, so that each sensor will be read again the next time
+     * its value is needed. This has no effect if sensor snapshots are disabled.
+     * @see #enableSensorSnapshots()
+     */
+    public void invalidateSensorSnapshot () {
+        for (SwerveWheel wheel : wheels) wheel.invalidateSensorSnapshot();
+    }
+    
+    @Override
+    public void periodic () {
+        if (sensorSnapshotsEnabled) invalidateSensorSnapshot();
+    }
+    
+    /**
+     * Gets the {@link SwerveKinematics} describing the positions of this drive's modules.
+     * @return The {@code SwerveKinematics}
+     */
+    public SwerveKinematics getKinematics () {
+        return kinematics;
     }
     
     /**
@@ -3,6 +3,8 @@
 
 package frc.team1711.swerve.subsystems;
 
+import edu.wpi.first.wpilibj.Timer;
+
 import frc.team1711.swerve.util.Angles;
 
 /**
@@ -13,6 +15,27 @@ import frc.team1711.swerve.util.Angles;
  */
 abstract public class SwerveWheel {
     
+    // Command deduplication settings, see enableCommandDeduplication
+    private boolean deduplicationEnabled = false;
+    private double directionTolerance, speedTolerance, refreshInterval;
+    
+    // The last set-points sent to the motor controllers, and the times at which they were sent.
+    // A last sent value of NaN means the next set-point must be sent regardless of deduplication
+    private double
+        lastSentDirection = Double.NaN,
+        lastSentSpeed = Double.NaN,
+        lastDirectionSendTime,
+        lastSpeedSendTime;
+    
+    private long sentCommands, suppressedCommands;
+    
+    // The set-points calculated by computeOutputs
+    private double outputDirection, outputSpeed;
+    
+    // Sensor snapshot, see SwerveDrive#enableSensorSnapshots
+    private boolean snapshotsEnabled = false, directionSampled = false;
+    private double directionSnapshot;
+    
     /**
      * Sets the drive speed of the wheel on the interval [-1, 1].
      * @param speed The drive speed
@@ -37,10 +60,19 @@ abstract public class SwerveWheel {
      * @see #setDirection(double)
      */
     protected final void steerAndDrive (double targetDirection, double speed) {
+        computeOutputs(targetDirection, speed);
+        sendOutputs(outputDirection, outputSpeed);
+    }
+    
+    // Calculates the steering direction and drive speed to send to the motor controllers in order to
+    // reach a target direction and speed, storing them in outputDirection and outputSpeed
+    void computeOutputs (double targetDirection, double speed) {
         if (speed < 0 || speed > 1) throw new IllegalArgumentException("speed should be within range [0, 1]");
 
+        final double currentDirection = getDirectionSnapshot();
+        
         // Finds the number of degrees we need to turn and places on interval [-180, 180)
-        double moveDirection = Angles.wrapDegreesZeroCenter(targetDirection - getDirection());
+        double moveDirection = Angles.wrapDegreesZeroCenter(targetDirection - currentDirection);
         
         // If the number of degrees we need to turn is closer
         // to 180 than 0, we turn the opposite way and go in reverse
@@ -49,11 +81,151 @@ abstract public class SwerveWheel {
             reverse = -1;
             moveDirection += 180;
         }
-        final double setDir = Angles.wrapDegrees(moveDirection + getDirection());
-
-        // Sets drive speed and direction
-        setDirection(setDir);
-        setDriveSpeed(speed * reverse);
+        
+        outputDirection = Angles.wrapDegrees(moveDirection + currentDirection);
+        outputSpeed = speed * reverse;
+    }
+    
+    // The steering direction calculated by the last call to computeOutputs, on the interval [0, 360)
+    double getOutputDirection () {
+        return outputDirection;
+    }
+    
+    // The drive speed calculated by the last call to computeOutputs, on the interval [-1, 1]
+    double getOutputSpeed () {
+        return outputSpeed;
+    }
+    
+    // Sets the steering direction and drive speed, skipping either one if command deduplication
+    // is enabled and it is within the tolerance of the last value sent
+    void sendOutputs (double direction, double driveSpeed) {
+        final double now = getDeduplicationTime();
+        
+        if (isDirectionRedundant(direction, now)) {
+            suppressedCommands ++;
+        } else {
+            recordDirectionSent(direction, now);
+            setDirection(direction);
+        }
+        
+        if (isSpeedRedundant(driveSpeed, now)) {
+            suppressedCommands ++;
+        } else {
+            recordSpeedSent(driveSpeed, now);
+            setDriveSpeed(driveSpeed);
+        }
+    }
+    
+    // Whether or not both the steering direction and drive speed would be skipped by command
+    // deduplication, used by SwerveDrive when a ModuleBank writes the set-points
+    boolean isRedundant (double direction, double driveSpeed, double now) {
+        return isDirectionRedundant(direction, now) && isSpeedRedundant(driveSpeed, now);
+    }
+    
+    // Records whether or not set-points were written by a ModuleBank, used by SwerveDrive
+    void recordBankOutputs (double direction, double driveSpeed, boolean sent, double now) {
+        if (sent) {
+            recordDirectionSent(direction, now);
+            recordSpeedSent(driveSpeed, now);
+        } else {
+            suppressedCommands += 2;
+        }
+    }
+    
+    // The current time for command deduplication, which is only read if deduplication is enabled
+    double getDeduplicationTime () {
+        return deduplicationEnabled ? getCommandTimestamp() : 0;
+    }
+    
+    /**
+     * Gets the current time used by command deduplication to decide when an unchanged set-point should be
+     * sent again. This is the FPGA timestamp unless it is overridden.
+     * @return The current time, in seconds
+     * @see #enableCommandDeduplication(double, double, double)
+     */
+    protected double getCommandTimestamp () {
+        return Timer.getFPGATimestamp();
+    }
+    
+    private boolean isDirectionRedundant (double direction, double now) {
+        return deduplicationEnabled
+            && Math.abs(Angles.wrapDegreesZeroCenter(direction - lastSentDirection)) <= directionTolerance
+            && now - lastDirectionSendTime < refreshInterval;
+    }
+    
+    private boolean isSpeedRedundant (double driveSpeed, double now) {
+        return deduplicationEnabled
+            && Math.abs(driveSpeed - lastSentSpeed) <= speedTolerance
+            && now - lastSpeedSendTime < refreshInterval;
+    }
+    
+    private void recordDirectionSent (double direction, double now) {
+        lastSentDirection = direction;
+        lastDirectionSendTime = now;
+        sentCommands ++;
+    }
+    
+    private void recordSpeedSent (double driveSpeed, double now) {
+        lastSentSpeed = driveSpeed;
+        lastSpeedSendTime = now;
+        sentCommands ++;
+    }
+    
+    /**
+     * Enables command deduplication for this wheel. While enabled, {@link #steerAndDrive(double, double)}
+     * will not call {@link #setDirection(double)} or {@link #setDriveSpeed(double)} if the new set-point
+     * is within a tolerance of the last set-point sent, unless {@code refreshInterval} seconds have passed
+     * since it was last sent. This prevents identical frames from filling the CAN bus when the commanded
+     * values do not change. {@link #stop()} always sends its commands.
+     * @param directionTolerance    The largest change in target steering direction, in degrees, which
+     * will not be sent
+     * @param speedTolerance        The largest change in drive speed which will not be sent
+     * @param refreshInterval       The time in seconds after which an unchanged set-point is sent again
+     * @see #disableCommandDeduplication()
+     * @see #getSuppressedCommandCount()
+     */
+    public void enableCommandDeduplication (double directionTolerance, double speedTolerance, double refreshInterval) {
+        this.directionTolerance = directionTolerance;
+        this.speedTolerance = speedTolerance;
+        this.refreshInterval = refreshInterval;
+        deduplicationEnabled = true;
+    }
+    
+    /**
+     * Disables command deduplication, so that every set-point from {@link #steerAndDrive(double, double)}
+     * is sent.
+     * @see #enableCommandDeduplication(double, double, double)
+     */
+    public void disableCommandDeduplication () {
+        deduplicationEnabled = false;
+    }
+    
+    /**
+     * Gets the number of commands (calls to {@link #setDirection(double)}, {@link #setDriveSpeed(double)},
+     * and {@link #stopSteering()}) which have been sent to this wheel.
+     * @return The number of commands sent
+     * @see #getSuppressedCommandCount()
+     */
+    public long getSentCommandCount () {
+        return sentCommands;
+    }
+    
+    /**
+     * Gets the number of commands which were not sent to this wheel because of command deduplication.
+     * @return The number of commands suppressed
+     * @see #enableCommandDeduplication(double, double, double)
+     * @see #getSentCommandCount()
+     */
+    public long getSuppressedCommandCount () {
+        return suppressedCommands;
+    }
+    
+    /**
+     * Resets the counts of sent and suppressed commands to zero.
+     */
+    public void resetCommandCounts () {
+        sentCommands = 0;
+        suppressedCommands = 0;
     }
     
     /**
@@ -66,6 +238,39 @@ abstract public class SwerveWheel {
      */
     abstract public double getDirection ();
     
+    /**
+     * Gets the steering direction from the current sensor snapshot. If sensor snapshots are enabled
+     * (see {@link SwerveDrive#enableSensorSnapshots()}), {@link #getDirection()} is only read once
+     * per control cycle, and every other call in the same cycle returns the same value. Otherwise,
+     * this is the same as calling {@code getDirection()}.
+     * @return The steering direction of the wheel, in degrees, on the interval [0, 360)
+     * @see #getDirection()
+     */
+    public final double getDirectionSnapshot () {
+        if (!snapshotsEnabled) return getDirection();
+        if (!directionSampled) {
+            directionSnapshot = getDirection();
+            directionSampled = true;
+        }
+        return directionSnapshot;
+    }
+    
+    // Enables or disables sensor snapshots, called by SwerveDrive
+    void setSensorSnapshotsEnabled (boolean enabled) {
+        snapshotsEnabled = enabled;
+        invalidateSensorSnapshot();
+    }
+    
+    // Whether or not sensor snapshots are enabled, used by AutoSwerveWheel
+    boolean isSensorSnapshotsEnabled () {
+        return snapshotsEnabled;
+    }
+    
+    // Causes the next snapshot read to sample the sensors again, called by SwerveDrive
+    void invalidateSensorSnapshot () {
+        directionSampled = false;
+    }
+    
     /**
      * Sets the target steering direction of the wheel on the interval [0, 360), where zero degrees
      * is directly forwards and an increase in direction indicates a further clockwise target direction.
@@ -90,7 +295,7 @@ abstract public class SwerveWheel {
      */
     protected boolean checkWithinRange (double direction, double marginOfError) {
         // Gets absolute difference in directions
-        double directionalDifference = Math.abs(Angles.wrapDegreesZeroCenter(direction - getDirection()));
+        double directionalDifference = Math.abs(Angles.wrapDegreesZeroCenter(direction - getDirectionSnapshot()));
         return directionalDifference <= marginOfError;
     }
     
@@ -114,6 +319,18 @@ abstract public class SwerveWheel {
     public void stop () {
         setDriveSpeed(0);
         stopSteering();
+        recordStop();
+    }
+    
+    // Records that the wheel was stopped, used by SwerveDrive when a ModuleBank stops the modules
+    void recordStop () {
+        sentCommands += 2;
+        
+        // The wheel is no longer steering towards the last direction sent, so the next
+        // direction must be sent even if it has not changed
+        lastSentSpeed = 0;
+        lastSentDirection = Double.NaN;
+        lastSpeedSendTime = getDeduplicationTime();
     }
     
 }
\ No newline at end of file
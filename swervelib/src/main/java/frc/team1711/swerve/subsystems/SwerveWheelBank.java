@@ -0,0 +1,35 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.subsystems;
+
+/**
+ * The default {@link ModuleBank}, which sends set-points to each {@link SwerveWheel} separately
+ * through {@link SwerveWheel#setDirection(double)} and {@link SwerveWheel#setDriveSpeed(double)}.
+ * Command deduplication (see {@link SwerveWheel#enableCommandDeduplication(double, double, double)})
+ * is applied to each set-point individually.
+ * @author Gabriel Seaver
+ */
+public class SwerveWheelBank implements ModuleBank {
+    
+    private final SwerveWheel[] wheels;
+    
+    /**
+     * Creates a new {@code SwerveWheelBank}.
+     * @param wheels The {@code SwerveWheel} for each module
+     */
+    public SwerveWheelBank (SwerveWheel... wheels) {
+        this.wheels = wheels.clone();
+    }
+    
+    @Override
+    public void setModuleOutputs (double[] directions, double[] driveSpeeds) {
+        for (int i = 0; i < wheels.length; i ++) wheels[i].sendOutputs(directions[i], driveSpeeds[i]);
+    }
+    
+    @Override
+    public void stopModules () {
+        for (SwerveWheel wheel : wheels) wheel.stop();
+    }
+    
+}
@@ -25,15 +25,68 @@ public class Angles {
      */
     public static double TAU = PI * 2;
     
+    // Whether sin, cos, and atan2 use the approximations in FastMath
+    private static boolean fastMath = false;
+    
+    /**
+     * Sets whether or not {@link #sin(double)}, {@link #cos(double)}, and {@link #atan2(double, double)},
+     * along with the {@link Vector} methods built on them, use the faster approximations in {@link FastMath}
+     * instead of {@link Math}. This is off by default. It should be set once when the robot starts, before any
+     * threads which use swerve or odometry calculations are started.
+     * @param fastMath  Whether or not to use fast math
+     */
+    public static void setFastMath (boolean fastMath) {
+        Angles.fastMath = fastMath;
+    }
+    
+    /**
+     * @return Whether or not fast math is turned on
+     * @see #setFastMath(boolean)
+     */
+    public static boolean isFastMath () {
+        return fastMath;
+    }
+    
+    /**
+     * Gets the sine of an angle, approximated with {@link FastMath#sin(double)} if fast math is turned on.
+     * @param radians   The angle, in radians
+     * @return          The sine of the angle
+     * @see #setFastMath(boolean)
+     */
+    public static double sin (double radians) {
+        return fastMath ? FastMath.sin(radians) : Math.sin(radians);
+    }
+    
+    /**
+     * Gets the cosine of an angle, approximated with {@link FastMath#cos(double)} if fast math is turned on.
+     * @param radians   The angle, in radians
+     * @return          The cosine of the angle
+     * @see #setFastMath(boolean)
+     */
+    public static double cos (double radians) {
+        return fastMath ? FastMath.cos(radians) : Math.cos(radians);
+    }
+    
+    /**
+     * Gets the counterclockwise angle from the positive x axis to the point (x, y), approximated with
+     * {@link FastMath#atan2(double, double)} if fast math is turned on.
+     * @param y The y coordinate of the point
+     * @param x The x coordinate of the point
+     * @return  The angle, in radians, on the interval [-pi, pi]
+     * @see #setFastMath(boolean)
+     */
+    public static double atan2 (double y, double x) {
+        return fastMath ? FastMath.atan2(y, x) : Math.atan2(y, x);
+    }
+    
     /**
      * Wraps {@code degrees} to be on the interval [0, 360).
      * @param degrees   The unwrapped degrees
      * @return          The degrees, wrapped between 0 and 360
      */
     public static double wrapDegrees (double degrees) {
-        while (degrees >= 360) degrees -= 360;
-        while (degrees < 0) degrees += 360;
-        return degrees;
+        if (degrees >= 0 && degrees < 360) return degrees;
+        return wrap(degrees, 0, 360);
     }
     
     /**
@@ -42,9 +95,8 @@ public class Angles {
      * @return          The degrees, wrapped between -180 and 180
      */
     public static double wrapDegreesZeroCenter (double degrees) {
-        while (degrees >= 180) degrees -= 360;
-        while (degrees < -180) degrees += 360;
-        return degrees;
+        if (degrees >= -180 && degrees < 180) return degrees;
+        return wrap(degrees, -180, 360);
     }
     
     /**
@@ -53,9 +105,8 @@ public class Angles {
      * @return          The radians, wrapped between 0 and 2pi
      */
     public static double wrapRadians (double radians) {
-        while (radians >= TAU) radians -= TAU;
-        while (radians < 0) radians += TAU;
-        return radians;
+        if (radians >= 0 && radians < TAU) return radians;
+        return wrap(radians, 0, TAU);
     }
     
     /**
@@ -64,9 +115,18 @@ public class Angles {
      * @return          The radians, wrapped between -pi and pi
      */
     public static double wrapRadiansZeroCenter (double radians) {
-        while (radians >= PI) radians -= TAU;
-        while (radians < -PI) radians += TAU;
-        return radians;
+        if (radians >= -PI && radians < PI) return radians;
+        return wrap(radians, -PI, TAU);
+    }
+    
+    // Wraps an angle onto [start, start + period) in constant time, by subtracting the whole number of periods
+    // it is past start. The division may round to the wrong side of a multiple of the period, which leaves
+    // the angle at most one period outside the interval. Infinite angles have no wrapped value and give NaN
+    private static double wrap (double angle, double start, double period) {
+        angle -= period * Math.floor((angle - start) / period);
+        if (angle >= start + period) angle -= period;
+        else if (angle < start) angle += period;
+        return angle;
     }
     
     /**
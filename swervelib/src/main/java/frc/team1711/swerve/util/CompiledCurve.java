@@ -0,0 +1,115 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util;
+
+/**
+ * An {@link InputHandler.Curve} which has been sampled into a dense table when it is created, so that
+ * each output costs one table lookup and a linear interpolation instead of evaluating the source curve.
+ * 
+ * <p>The compiled curve equals the source curve exactly at every table entry. Between entries it is a
+ * straight line, so it rises wherever the source curve rises, and it is monotonic if the source curve is, as
+ * a {@link SplineCurve} is. The table is made large enough that the compiled curve is within a given error of
+ * the source curve at the points it is checked at, which are described in
+ * {@link #compile(InputHandler.Curve, double)}. Between those points, the error is only measured by
+ * tests, not guaranteed.</p>
+ * @author Gabriel Seaver
+ */
+public class CompiledCurve implements InputHandler.Curve {
+    
+    // The largest table a curve can be compiled into
+    private static final int MAX_INTERVALS = 1 << 16;
+    
+    // The number of points inside each interval at which the compiled curve is checked against the source
+    private static final int CHECKS_PER_INTERVAL = 7;
+    
+    // The source curve's output at inputs of i / intervals, for i from 0 to intervals
+    private final double[] table;
+    private final int intervals;
+    private final double maxError;
+    
+    private CompiledCurve (double[] table, double maxError) {
+        this.table = table;
+        this.intervals = table.length - 1;
+        this.maxError = maxError;
+    }
+    
+    /**
+     * Compiles a {@link InputHandler.Curve} into a table. The number of table entries is doubled until
+     * the compiled curve is within {@code maxError} of the source curve at seven evenly spaced points inside
+     * every interval of the table. These include the middle of the interval, where the error is largest if
+     * the source curve's curvature is nearly constant across the interval, which is true of smooth curves
+     * once the table is dense enough. A curve which bends sharply between two checked points can still be
+     * further than {@code maxError} from the compiled curve there.
+     * @param source    The source curve
+     * @param maxError  The largest allowed difference between the outputs of the compiled curve and
+     * the source curve, which must be positive
+     * @return          The {@code CompiledCurve}
+     * @throws IllegalArgumentException If the source curve cannot be compiled within {@code maxError},
+     * for example because it is not continuous
+     */
+    public static CompiledCurve compile (InputHandler.Curve source, double maxError) {
+        if (!(maxError > 0)) throw new IllegalArgumentException("maxError should be positive");
+        
+        for (int intervals = 16; intervals <= MAX_INTERVALS; intervals *= 2) {
+            final double[] table = new double[intervals + 1];
+            for (int i = 0; i <= intervals; i ++) table[i] = source.getOutput((double)i / intervals);
+            
+            final CompiledCurve compiled = new CompiledCurve(table, maxError);
+            if (compiled.isWithinError(source)) return compiled;
+        }
+        
+        throw new IllegalArgumentException("curve cannot be compiled within an error of " + maxError);
+    }
+    
+    /**
+     * Compiles a {@link SplineCurve} through a set of control points into a table. This is the same as
+     * {@code compile(new SplineCurve(xs, ys), maxError)}.
+     * @param xs        The inputs of the control points, which must be strictly increasing, starting at 0
+     * and ending at 1
+     * @param ys        The outputs of the control points, on the interval [0, 1]
+     * @param maxError  The largest allowed difference between the compiled curve and the spline
+     * @return          The {@code CompiledCurve}
+     */
+    public static CompiledCurve fromControlPoints (double[] xs, double[] ys, double maxError) {
+        return compile(new SplineCurve(xs, ys), maxError);
+    }
+    
+    // Checks the compiled curve against the source at evenly spaced points inside every interval
+    private boolean isWithinError (InputHandler.Curve source) {
+        for (int i = 0; i < intervals; i ++) {
+            for (int j = 1; j <= CHECKS_PER_INTERVAL; j ++) {
+                final double input = (i + (double)j / (CHECKS_PER_INTERVAL + 1)) / intervals;
+                if (!(Math.abs(getOutput(input) - source.getOutput(input)) <= maxError)) return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @return The number of entries in the table
+     */
+    public int getTableSize () {
+        return table.length;
+    }
+    
+    /**
+     * @return The largest allowed difference between the outputs of this curve and the source curve
+     */
+    public double getMaxError () {
+        return maxError;
+    }
+    
+    @Override
+    public double getOutput (double input) {
+        if (!(input > 0)) return table[0];
+        if (input >= 1) return table[intervals];
+        
+        final double position = input * intervals;
+        final int index = (int)position;
+        final double before = table[index];
+        return before + (table[index + 1] - before) * (position - index);
+    }
+    
+}
@@ -0,0 +1,135 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util;
+
+/**
+ * Polynomial approximations of {@link Math#sin(double)}, {@link Math#cos(double)}, and
+ * {@link Math#atan2(double, double)}, which trade a small, bounded error for speed. These are used by
+ * {@link Angles#sin(double)}, {@link Angles#cos(double)}, and {@link Angles#atan2(double, double)} when
+ * fast math is turned on with {@link Angles#setFastMath(boolean)}.
+ * 
+ * <p>Error bounds, as absolute errors compared to the exact result:</p>
+ * <ul>
+ * <li>{@link #sin(double)} and {@link #cos(double)}: less than 2e-9 for any angle of at most
+ * {@link #MAX_REDUCED_ANGLE} radians, and exact (the result of {@code Math}) for larger angles.</li>
+ * <li>{@link #atan2(double, double)}: less than 5e-10 radians.</li>
+ * </ul>
+ * <p>These bounds come from the truncated Taylor series used on the reduced ranges, where the error of
+ * an alternating series is less than its first omitted term. An error of 2e-9 radians is about 1e-7
+ * degrees, or a position error of 2e-9 inches for every inch travelled.</p>
+ * @author Gabriel Seaver
+ */
+public class FastMath {
+    
+    /**
+     * The largest angle, in radians, which {@link #sin(double)} and {@link #cos(double)} reduce
+     * themselves. Larger angles are passed to {@link Math}.
+     */
+    public static final double MAX_REDUCED_ANGLE = 1e6;
+    
+    // pi/2 split into a high part with a short mantissa, so that multiples of it are exact, and a low part
+    private static final double
+        TWO_OVER_PI = 2 / Math.PI,
+        HALF_PI_HIGH = 1.57079632673412561417e+00,
+        HALF_PI_LOW = 6.07710050650619224932e-11;
+    
+    private static final double TAN_EIGHTH_PI = 0.41421356237309503;
+    
+    // Taylor series coefficients for sin and cos on [-pi/4, pi/4]
+    private static final double
+        S3 = -1.0 / 6,
+        S5 = 1.0 / 120,
+        S7 = -1.0 / 5040,
+        S9 = 1.0 / 362880;
+    private static final double
+        C2 = -1.0 / 2,
+        C4 = 1.0 / 24,
+        C6 = -1.0 / 720,
+        C8 = 1.0 / 40320,
+        C10 = -1.0 / 3628800;
+    
+    /**
+     * Approximates the sine of an angle.
+     * @param radians   The angle, in radians
+     * @return          The sine of the angle, with an absolute error less than 2e-9
+     */
+    public static double sin (double radians) {
+        if (Math.abs(radians) > MAX_REDUCED_ANGLE) return Math.sin(radians);
+        
+        // radians = quadrant * pi/2 + reduced, where reduced is on [-pi/4, pi/4]
+        final double quadrant = Math.rint(radians * TWO_OVER_PI);
+        final double reduced = (radians - quadrant * HALF_PI_HIGH) - quadrant * HALF_PI_LOW;
+        
+        switch ((int)quadrant & 3) {
+            case 0: return sinKernel(reduced);
+            case 1: return cosKernel(reduced);
+            case 2: return -sinKernel(reduced);
+            default: return -cosKernel(reduced);
+        }
+    }
+    
+    /**
+     * Approximates the cosine of an angle.
+     * @param radians   The angle, in radians
+     * @return          The cosine of the angle, with an absolute error less than 2e-9
+     */
+    public static double cos (double radians) {
+        if (Math.abs(radians) > MAX_REDUCED_ANGLE) return Math.cos(radians);
+        
+        final double quadrant = Math.rint(radians * TWO_OVER_PI);
+        final double reduced = (radians - quadrant * HALF_PI_HIGH) - quadrant * HALF_PI_LOW;
+        
+        switch ((int)quadrant & 3) {
+            case 0: return cosKernel(reduced);
+            case 1: return -sinKernel(reduced);
+            case 2: return -cosKernel(reduced);
+            default: return sinKernel(reduced);
+        }
+    }
+    
+    /**
+     * Approximates the counterclockwise angle from the positive x axis to the point (x, y), like
+     * {@link Math#atan2(double, double)}.
+     * @param y The y coordinate of the point
+     * @param x The x coordinate of the point
+     * @return  The angle, in radians, on the interval [-pi, pi], with an absolute error less than 5e-10
+     */
+    public static double atan2 (double y, double x) {
+        final double absX = Math.abs(x), absY = Math.abs(y);
+        
+        // Zeros, infinities, NaN, and values too large to add are left to Math
+        if (!(absX < 1e300 && absY < 1e300) || (absX == 0 && absY == 0)) return Math.atan2(y, x);
+        
+        // Find the angle in the first octant, then reflect it into the point's octant
+        final double low = Math.min(absX, absY), high = Math.max(absX, absY);
+        double angle = low <= TAN_EIGHTH_PI * high
+            ? atanKernel(low / high)
+            : Math.PI / 4 + atanKernel((low - high) / (low + high));
+        
+        if (absY > absX) angle = Math.PI / 2 - angle;
+        if (x < 0) angle = Math.PI - angle;
+        return Math.copySign(angle, y);
+    }
+    
+    // Approximates sin on [-pi/4, pi/4], with an error less than (pi/4)^11 / 11! < 2e-9
+    private static double sinKernel (double x) {
+        final double x2 = x * x;
+        return x + x * x2 * (S3 + x2 * (S5 + x2 * (S7 + x2 * S9)));
+    }
+    
+    // Approximates cos on [-pi/4, pi/4], with an error less than (pi/4)^12 / 12! < 2e-10
+    private static double cosKernel (double x) {
+        final double x2 = x * x;
+        return 1 + x2 * (C2 + x2 * (C4 + x2 * (C6 + x2 * (C8 + x2 * C10))));
+    }
+    
+    // Approximates atan on [-tan(pi/8), tan(pi/8)] with its Taylor series up to x^19, with an error less
+    // than tan(pi/8)^21 / 21 < 5e-10
+    private static double atanKernel (double x) {
+        final double x2 = x * x;
+        return x * (1 + x2 * (-1.0 / 3 + x2 * (1.0 / 5 + x2 * (-1.0 / 7 + x2 * (1.0 / 9 + x2 * (-1.0 / 11
+            + x2 * (1.0 / 13 + x2 * (-1.0 / 15 + x2 * (1.0 / 17 + x2 * (-1.0 / 19))))))))));
+    }
+    
+}
@@ -73,12 +73,28 @@ public class InputHandler {
         // Returns a zero output vector if the input magnitude is zero (prevents dividing by zero later)
         if (input.getMagnitude() == 0) return Vector.ZERO;
         
-        // Gets the new magnitude of the vector based on the deadband and input curve
-        double newMag = apply(input.getMagnitude());
-        
         // Scales the vector to the new magnitude
-        // Could divide by zero if the input magnitude is zero, but prevented by an earlier check
-        return input.scale(newMag / input.getMagnitude());
+        return input.scale(getVectorScale(input.getX(), input.getY()));
+    }
+    
+    /**
+     * Gets the scalar which {@link #apply(Vector)} would multiply the input vector (x, y) by, without
+     * creating any {@link Vector} instances. Multiplying both components by this scalar gives the same
+     * output as {@code apply(new Vector(x, y))}.
+     * @param x The x component of the input vector
+     * @param y The y component of the input vector
+     * @return The scalar to multiply both components of the input vector by, or zero if the
+     * input vector has a magnitude of zero
+     */
+    public final double getVectorScale (double x, double y) {
+        final double mag = Vector.getMagnitude(x, y);
+        
+        // Returns zero if the input magnitude is zero (prevents dividing by zero later)
+        if (mag == 0) return 0;
+        
+        // Gets the new magnitude of the vector based on the deadband and input curve,
+        // and divides by the old magnitude to get the scalar
+        return apply(mag) / mag;
     }
     
     // Applies the deadband to the input value on the interval [0, 1],
@@ -101,6 +117,9 @@ public class InputHandler {
      * at certain input magnitudes. Accepts an input on the range [0, 1], returning an output on the range
      * [0, 1]. As a rule, an input of 0 should map to 0, and an input of 1 should map to 1.
      * 
+     * <p>Curves which are expensive to evaluate, or which are defined by control points with a
+     * {@link SplineCurve}, can be compiled into a lookup table with {@link CompiledCurve}.</p>
+     * 
      * @see #linearCurve
      * @see #squareCurve
      * @see #threeHalvesPowerCurve
@@ -133,8 +152,10 @@ public class InputHandler {
         /**
          * An x^1.5 curve. The sensitivity of the output increases
          * with the input, making the output easier to control
-         * at lower values.
+         * at lower values. The curve is compiled into a lookup
+         * table which is within 1e-6 of x^1.5, so that inputs
+         * don't each need a call to {@code Math.pow}.
          */
-        public static final Curve threeHalvesPowerCurve = x -> Math.pow(x, 1.5);
+        public static final Curve threeHalvesPowerCurve = CompiledCurve.compile(x -> Math.pow(x, 1.5), 1e-6);
     }
 }
\ No newline at end of file
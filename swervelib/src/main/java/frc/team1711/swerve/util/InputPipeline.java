@@ -0,0 +1,228 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Processes the three joystick axes used for teleop driving (strafe x, strafe y, and steering) in a single
+ * pass, through these stages in order:
+ * <ol>
+ * <li>Deadband and curve, applied by an {@link InputHandler} to the strafe vector's magnitude and to steering.</li>
+ * <li>Slew rate limiting, which limits how quickly the strafe vector and steering can change (optional).</li>
+ * <li>Low-pass filtering, which smooths out sudden changes (optional).</li>
+ * <li>Scaling by the strafe and steering speeds.</li>
+ * <li>Rotation priority, which shortens the strafe vector so that the robot can always steer as fast as
+ * requested without the module speeds being desaturated (optional).</li>
+ * </ol>
+ * The outputs and the state of each stage are kept in primitive fields, so nothing is allocated. Because the
+ * slew rate limit and filter have state, a pipeline should only be used by one swerve drive. Used by
+ * {@link frc.team1711.swerve.subsystems.SwerveDrive.ControlsConfig}.
+ * @author Gabriel Seaver
+ */
+public class InputPipeline {
+    
+    private final InputHandler inputHandler;
+    private final double strafeSpeed, steerSpeed;
+    
+    // The largest change per second of the strafe vector and steering, which are infinite when disabled
+    private double strafeSlewRate = Double.POSITIVE_INFINITY, steerSlewRate = Double.POSITIVE_INFINITY;
+    
+    // The time constant of the low-pass filter in seconds, which is zero when disabled
+    private double filterTimeConstant = 0;
+    
+    private boolean rotationPriority = false;
+    
+    // The strafe and steering inputs after the slew rate limit and filter, before they are scaled
+    private double strafeX = 0, strafeY = 0, steering = 0;
+    private double lastTimestamp = Double.NaN;
+    
+    // The outputs of the last call to process
+    private double outputStrafeX = 0, outputStrafeY = 0, outputSteering = 0;
+    
+    /**
+     * Creates a new {@code InputPipeline} with no slew rate limit, filter, or rotation priority. It gives
+     * the same outputs as applying {@code inputHandler} and then scaling by the speeds.
+     * @param inputHandler  The {@link InputHandler} which applies the deadband and curve
+     * @param strafeSpeed   The scalar on the strafe inputs
+     * @param steerSpeed    The scalar on the steering input
+     */
+    public InputPipeline (InputHandler inputHandler, double strafeSpeed, double steerSpeed) {
+        this.inputHandler = inputHandler;
+        this.strafeSpeed = strafeSpeed;
+        this.steerSpeed = steerSpeed;
+    }
+    
+    /**
+     * @return The {@link InputHandler} which applies the deadband and curve
+     */
+    public InputHandler getInputHandler () {
+        return inputHandler;
+    }
+    
+    /**
+     * @return The scalar on the strafe inputs
+     */
+    public double getStrafeSpeed () {
+        return strafeSpeed;
+    }
+    
+    /**
+     * @return The scalar on the steering input
+     */
+    public double getSteerSpeed () {
+        return steerSpeed;
+    }
+    
+    /**
+     * Limits how quickly the strafe vector and steering can change, after the deadband and curve but before
+     * they are scaled by the speeds. A rate of 2 means that changing from not moving to full speed takes
+     * half a second.
+     * @param strafeSlewRate    The largest change in the strafe vector per second, or
+     * {@link Double#POSITIVE_INFINITY} for no limit
+     * @param steerSlewRate     The largest change in steering per second, or
+     * {@link Double#POSITIVE_INFINITY} for no limit
+     */
+    public void setSlewRateLimits (double strafeSlewRate, double steerSlewRate) {
+        if (!(strafeSlewRate > 0) || !(steerSlewRate > 0)) throw new IllegalArgumentException("slew rates should be positive");
+        this.strafeSlewRate = strafeSlewRate;
+        this.steerSlewRate = steerSlewRate;
+    }
+    
+    /**
+     * Smooths the inputs with a first-order low-pass filter, after the slew rate limit. After a sudden change
+     * in the inputs, the outputs cover about 63% of the change in one time constant.
+     * @param timeConstant  The time constant of the filter in seconds, or zero for no filter
+     */
+    public void setFilterTimeConstant (double timeConstant) {
+        if (!(timeConstant >= 0)) throw new IllegalArgumentException("time constant cannot be negative");
+        filterTimeConstant = timeConstant;
+    }
+    
+    /**
+     * Sets whether or not steering takes priority over strafing. When it does, the scaled strafe vector is
+     * shortened whenever its magnitude plus the magnitude of the scaled steering would be greater than 1, so
+     * no module is asked to go faster than full speed. Otherwise, every module speed would be reduced, which
+     * would make the robot steer more slowly than requested while strafing quickly.
+     * @param rotationPriority Whether or not steering takes priority over strafing
+     */
+    public void setRotationPriority (boolean rotationPriority) {
+        this.rotationPriority = rotationPriority;
+    }
+    
+    /**
+     * Resets the state of the slew rate limit and filter, as if the joystick had been centered. This should
+     * be called when teleop starts, so the inputs don't ramp from where they were left.
+     */
+    public void reset () {
+        strafeX = 0;
+        strafeY = 0;
+        steering = 0;
+        lastTimestamp = Double.NaN;
+    }
+    
+    /**
+     * Processes the joystick axes through every stage of the pipeline, timing the slew rate limit and
+     * filter with the FPGA timestamp. The outputs can then be read with {@link #getStrafeX()},
+     * {@link #getStrafeY()}, and {@link #getSteering()}.
+     * @param strafeX   The strafing input in the x direction, on the interval [-1, 1]
+     * @param strafeY   The strafing input in the y direction, on the interval [-1, 1]
+     * @param steering  The steering input, on the interval [-1, 1]
+     */
+    public void process (double strafeX, double strafeY, double steering) {
+        process(strafeX, strafeY, steering, isStateful() ? Timer.getFPGATimestamp() : 0);
+    }
+    
+    /**
+     * Processes the joystick axes through every stage of the pipeline. The outputs can then be read with
+     * {@link #getStrafeX()}, {@link #getStrafeY()}, and {@link #getSteering()}. On the first call, or the
+     * first call after {@link #reset()}, the slew rate limit and filter hold the inputs at zero.
+     * @param strafeX   The strafing input in the x direction, on the interval [-1, 1]
+     * @param strafeY   The strafing input in the y direction, on the interval [-1, 1]
+     * @param steering  The steering input, on the interval [-1, 1]
+     * @param timestamp The time of the inputs, in seconds
+     */
+    public void process (double strafeX, double strafeY, double steering, double timestamp) {
+        // Deadband and curve
+        final double strafeScale = inputHandler.getVectorScale(strafeX, strafeY);
+        strafeX *= strafeScale;
+        strafeY *= strafeScale;
+        steering = inputHandler.apply(steering);
+        
+        if (isStateful()) {
+            final double dt = Double.isNaN(lastTimestamp) ? 0 : Math.max(timestamp - lastTimestamp, 0);
+            lastTimestamp = timestamp;
+            
+            // Slew rate limit, which limits the change of the strafe vector as a whole so it doesn't change direction
+            final double
+                maxStrafeStep = dt > 0 ? strafeSlewRate * dt : 0,
+                maxSteerStep = dt > 0 ? steerSlewRate * dt : 0;
+            double stepX = strafeX - this.strafeX, stepY = strafeY - this.strafeY;
+            final double step = Vector.getMagnitude(stepX, stepY);
+            if (step > maxStrafeStep) {
+                stepX *= maxStrafeStep / step;
+                stepY *= maxStrafeStep / step;
+            }
+            final double steerStep = Math.max(-maxSteerStep, Math.min(steering - this.steering, maxSteerStep));
+            
+            // Low-pass filter, which only moves part of the way towards the slew-limited inputs
+            final double alpha = filterTimeConstant > 0 ? dt / (filterTimeConstant + dt) : 1;
+            this.strafeX += stepX * alpha;
+            this.strafeY += stepY * alpha;
+            this.steering += steerStep * alpha;
+            
+            strafeX = this.strafeX;
+            strafeY = this.strafeY;
+            steering = this.steering;
+        }
+        
+        // Scale
+        strafeX *= strafeSpeed;
+        strafeY *= strafeSpeed;
+        steering *= steerSpeed;
+        
+        // Rotation priority
+        if (rotationPriority) {
+            final double strafeMagnitude = Vector.getMagnitude(strafeX, strafeY);
+            final double available = Math.max(1 - Math.abs(steering), 0);
+            if (strafeMagnitude > available) {
+                strafeX *= available / strafeMagnitude;
+                strafeY *= available / strafeMagnitude;
+            }
+        }
+        
+        outputStrafeX = strafeX;
+        outputStrafeY = strafeY;
+        outputSteering = steering;
+    }
+    
+    // Whether or not any stage has state which depends on time
+    private boolean isStateful () {
+        return strafeSlewRate != Double.POSITIVE_INFINITY
+            || steerSlewRate != Double.POSITIVE_INFINITY
+            || filterTimeConstant > 0;
+    }
+    
+    /**
+     * @return The strafing output in the x direction from the last call to {@code process}
+     */
+    public double getStrafeX () {
+        return outputStrafeX;
+    }
+    
+    /**
+     * @return The strafing output in the y direction from the last call to {@code process}
+     */
+    public double getStrafeY () {
+        return outputStrafeY;
+    }
+    
+    /**
+     * @return The steering output from the last call to {@code process}
+     */
+    public double getSteering () {
+        return outputSteering;
+    }
+    
+}
@@ -0,0 +1,181 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util;
+
+/**
+ * An immutable rotation, measured in degrees clockwise from directly above the origin on the y axis like
+ * {@link frc.team1711.swerve.util.odometry.Position#getDirection()}. The cosine and sine of the rotation are
+ * found once when it is created, so composing and inverting rotations and rotating vectors only takes a few
+ * multiplications, instead of converting between degrees and radians and calling trigonometric functions.
+ * @author Gabriel Seaver
+ */
+public class Rotation {
+    
+    /**
+     * The rotation of zero degrees.
+     */
+    public static final Rotation ZERO = new Rotation(0, 1, 0);
+    
+    // The rotation in degrees on [0, 360), and the cosine and sine of the clockwise angle
+    private final double degrees, cos, sin;
+    
+    private Rotation (double degrees, double cos, double sin) {
+        this.degrees = degrees;
+        this.cos = cos;
+        this.sin = sin;
+    }
+    
+    /**
+     * Creates a new {@code Rotation} from an angle in degrees.
+     * @param degrees   The rotation, in degrees, progressing clockwise starting directly above the origin
+     * on the y axis
+     * @return          The {@code Rotation}
+     */
+    public static Rotation fromDegrees (double degrees) {
+        final double wrapped = Angles.wrapDegrees(degrees);
+        final double radians = Math.toRadians(wrapped);
+        return new Rotation(wrapped, Angles.cos(radians), Angles.sin(radians));
+    }
+    
+    /**
+     * Creates a new {@code Rotation} pointing in the direction of the vector (x, y), without any
+     * trigonometric functions other than a single {@code atan2} to find the rotation in degrees.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return  The {@code Rotation}, or {@link #ZERO} if the vector is (0, 0)
+     */
+    public static Rotation fromDirection (double x, double y) {
+        final double magnitude = Vector.getMagnitude(x, y);
+        if (magnitude == 0) return ZERO;
+        
+        final double degrees = Angles.wrapDegrees(Math.toDegrees(Angles.atan2(x, y)));
+        return new Rotation(degrees, y / magnitude, x / magnitude);
+    }
+    
+    /**
+     * @return The rotation, in degrees, on the interval [0, 360)
+     */
+    public double getDegrees () {
+        return degrees;
+    }
+    
+    /**
+     * @return The cosine of the rotation
+     */
+    public double getCos () {
+        return cos;
+    }
+    
+    /**
+     * @return The sine of the rotation, which is positive for clockwise rotations of less than 180 degrees
+     */
+    public double getSin () {
+        return sin;
+    }
+    
+    /**
+     * Composes this rotation with another, giving the rotation of turning by this rotation and then by the other.
+     * @param other The other {@code Rotation}
+     * @return      The sum of the rotations
+     */
+    public Rotation plus (Rotation other) {
+        return new Rotation(
+            Angles.wrapDegrees(degrees + other.degrees),
+            cos * other.cos - sin * other.sin,
+            sin * other.cos + cos * other.sin);
+    }
+    
+    /**
+     * Gets the rotation from another rotation to this one.
+     * @param other The other {@code Rotation}
+     * @return      The difference of the rotations
+     */
+    public Rotation minus (Rotation other) {
+        return new Rotation(
+            Angles.wrapDegrees(degrees - other.degrees),
+            cos * other.cos + sin * other.sin,
+            sin * other.cos - cos * other.sin);
+    }
+    
+    /**
+     * @return The rotation which undoes this rotation
+     */
+    public Rotation inverse () {
+        return new Rotation(Angles.wrapDegrees(-degrees), cos, -sin);
+    }
+    
+    /**
+     * Rotates a vector clockwise by this rotation, preserving its magnitude. This can be used to convert a
+     * robot-relative vector into a field-relative vector, given the robot's rotation on the field.
+     * @param vector    The vector to rotate
+     * @return          The rotated vector
+     */
+    public Vector rotate (Vector vector) {
+        return new Vector(rotateX(vector.getX(), vector.getY()), rotateY(vector.getX(), vector.getY()));
+    }
+    
+    /**
+     * Rotates a vector counterclockwise by this rotation, preserving its magnitude. This can be used to
+     * convert a field-relative vector into a robot-relative vector, given the robot's rotation on the field.
+     * @param vector    The vector to rotate
+     * @return          The rotated vector
+     */
+    public Vector unrotate (Vector vector) {
+        return new Vector(unrotateX(vector.getX(), vector.getY()), unrotateY(vector.getX(), vector.getY()));
+    }
+    
+    /**
+     * Gets the x component of the vector (x, y) rotated clockwise by this rotation, without creating a
+     * {@link Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return  The x component of the rotated vector
+     * @see #rotate(Vector)
+     */
+    public double rotateX (double x, double y) {
+        return x * cos + y * sin;
+    }
+    
+    /**
+     * Gets the y component of the vector (x, y) rotated clockwise by this rotation, without creating a
+     * {@link Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return  The y component of the rotated vector
+     * @see #rotate(Vector)
+     */
+    public double rotateY (double x, double y) {
+        return y * cos - x * sin;
+    }
+    
+    /**
+     * Gets the x component of the vector (x, y) rotated counterclockwise by this rotation, without creating
+     * a {@link Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return  The x component of the rotated vector
+     * @see #unrotate(Vector)
+     */
+    public double unrotateX (double x, double y) {
+        return x * cos - y * sin;
+    }
+    
+    /**
+     * Gets the y component of the vector (x, y) rotated counterclockwise by this rotation, without creating
+     * a {@link Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return  The y component of the rotated vector
+     * @see #unrotate(Vector)
+     */
+    public double unrotateY (double x, double y) {
+        return y * cos + x * sin;
+    }
+    
+    @Override
+    public String toString () {
+        return "Rotation: " + degrees;
+    }
+    
+}
@@ -0,0 +1,85 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util;
+
+/**
+ * An {@link InputHandler.Curve} which passes through a set of control points, joined by a monotone cubic
+ * spline. Between any two control points, the curve only rises if the second point is higher, and only falls
+ * if it is lower, so the curve never overshoots the control points. This allows custom response curves to be
+ * defined by a few points instead of a formula. Finding the segment to evaluate takes a binary search, so
+ * the curve should usually be compiled with {@link CompiledCurve#fromControlPoints(double[], double[], double)}.
+ * @author Gabriel Seaver
+ */
+public class SplineCurve implements InputHandler.Curve {
+    
+    private final double[] xs, ys;
+    
+    // The slope of the curve at each control point
+    private final double[] slopes;
+    
+    /**
+     * Creates a new {@code SplineCurve} passing through the control points (xs[i], ys[i]).
+     * @param xs    The inputs of the control points, which must be strictly increasing, starting at 0
+     * and ending at 1
+     * @param ys    The outputs of the control points, on the interval [0, 1]
+     */
+    public SplineCurve (double[] xs, double[] ys) {
+        if (xs.length != ys.length) throw new IllegalArgumentException("xs and ys should have the same length");
+        if (xs.length < 2) throw new IllegalArgumentException("a spline needs at least two control points");
+        if (xs[0] != 0 || xs[xs.length - 1] != 1) throw new IllegalArgumentException("control points should start at 0 and end at 1");
+        for (int i = 0; i < xs.length; i ++) {
+            if (i > 0 && !(xs[i] > xs[i - 1])) throw new IllegalArgumentException("xs should be strictly increasing");
+            if (!(ys[i] >= 0 && ys[i] <= 1)) throw new IllegalArgumentException("ys should be on the interval [0, 1]");
+        }
+        
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        slopes = findSlopes(this.xs, this.ys);
+    }
+    
+    // Finds the slope at each control point with the Fritsch-Butland weighted harmonic mean of the secant
+    // slopes on either side, which is zero at local extrema and keeps every segment monotone
+    private static double[] findSlopes (double[] xs, double[] ys) {
+        final int last = xs.length - 1;
+        final double[] secants = new double[last];
+        for (int i = 0; i < last; i ++) secants[i] = (ys[i + 1] - ys[i]) / (xs[i + 1] - xs[i]);
+        
+        final double[] slopes = new double[xs.length];
+        slopes[0] = secants[0];
+        slopes[last] = secants[last - 1];
+        for (int i = 1; i < last; i ++) {
+            final double before = secants[i - 1], after = secants[i];
+            if (before * after <= 0) continue;
+            
+            final double widthBefore = xs[i] - xs[i - 1], widthAfter = xs[i + 1] - xs[i];
+            final double weightBefore = 2 * widthAfter + widthBefore, weightAfter = widthAfter + 2 * widthBefore;
+            slopes[i] = (weightBefore + weightAfter) / (weightBefore / before + weightAfter / after);
+        }
+        
+        return slopes;
+    }
+    
+    @Override
+    public double getOutput (double input) {
+        if (!(input > 0)) return ys[0];
+        if (input >= 1) return ys[ys.length - 1];
+        
+        // Finds the segment containing the input, such that xs[low] <= input < xs[low + 1]
+        int low = 0, high = xs.length - 1;
+        while (high - low > 1) {
+            final int middle = (low + high) >>> 1;
+            if (xs[middle] <= input) low = middle;
+            else high = middle;
+        }
+        
+        // Cubic Hermite interpolation between the control points on either side
+        final double width = xs[low + 1] - xs[low];
+        final double t = (input - xs[low]) / width, t2 = t * t, t3 = t2 * t;
+        return (2 * t3 - 3 * t2 + 1) * ys[low]
+            + (t3 - 2 * t2 + t) * width * slopes[low]
+            + (-2 * t3 + 3 * t2) * ys[low + 1]
+            + (t3 - t2) * width * slopes[low + 1];
+    }
+    
+}
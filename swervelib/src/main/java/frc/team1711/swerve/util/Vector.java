@@ -49,7 +49,7 @@ public class Vector {
      */
     public Vector toRotationRadians (double radians) {
         final double mag = getMagnitude();
-        return new Vector(mag * Math.cos(radians), mag * Math.sin(radians));
+        return new Vector(mag * Angles.cos(radians), mag * Angles.sin(radians));
     }
     
     /**
@@ -62,6 +62,21 @@ public class Vector {
         return toRotationRadians(Angles.degreesToRadians(degrees));
     }
     
+    /**
+     * Rotates this vector clockwise by a given angle, preserving its magnitude. If fast math is turned on
+     * (see {@link Angles#setFastMath(boolean)}), the vector is multiplied by a rotation matrix. Otherwise,
+     * this is the same as {@code toRotationDegrees(getRotationDegrees() + degrees)}.
+     * @param degrees   The angle to rotate the vector by, in degrees, where a positive angle is clockwise
+     * @return          The new rotated vector
+     */
+    public Vector rotateDegrees (double degrees) {
+        if (!Angles.isFastMath()) return toRotationDegrees(getRotationDegrees() + degrees);
+        
+        final double radians = Math.toRadians(degrees);
+        final double cos = FastMath.cos(radians), sin = FastMath.sin(radians);
+        return new Vector(x * cos + y * sin, y * cos - x * sin);
+    }
+    
     /**
      * Creates a new vector with the specified {@code direction} and {@code magnitude}.
      * @param direction The direction of the vector, in degrees, starting directly above
@@ -70,7 +85,7 @@ public class Vector {
      * @return          The vector
      */
     public static Vector fromPolarDegrees (double direction, double magnitude) {
-        return new Vector(1, 0).toRotationDegrees(direction).scale(magnitude);
+        return fromPolarRadians(Angles.degreesToRadians(direction), magnitude);
     }
     
     /**
@@ -81,7 +96,7 @@ public class Vector {
      * @return          The vector
      */
     public static Vector fromPolarRadians (double direction, double magnitude) {
-        return new Vector(1, 0).toRotationRadians(direction).scale(magnitude);
+        return new Vector(magnitude * Angles.cos(direction), magnitude * Angles.sin(direction));
     }
     
     /**
@@ -132,6 +147,36 @@ public class Vector {
      * having a rotation of 0, in the range [0, 2pi).
      */
     public double getRotationRadians () {
+        return getRotationRadians(x, y);
+    }
+    
+    /**
+     * @return The clockwise rotation, in degrees, with directly above the origin
+     * having a rotation of 0, in the range [0, 360).
+     */
+    public double getRotationDegrees () {
+        return getRotationDegrees(x, y);
+    }
+    
+    /**
+     * @return The magnitude of the vector
+     */
+    public double getMagnitude () {
+        return getMagnitude(x, y);
+    }
+    
+    /**
+     * Gets the rotation of the vector (x, y) without creating a {@code Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
+     * @return The counterclockwise rotation, in radians, with directly right of the origin
+     * having a rotation of 0, in the range [0, 2pi).
+     * @see #getRotationRadians()
+     */
+    public static double getRotationRadians (double x, double y) {
+        // With fast math, a single atan2 replaces the square root, divisions, and acos below
+        if (Angles.isFastMath()) return Angles.wrapRadians(FastMath.atan2(y, x));
+        
         // Puts the coordinate on the unit circle, returning a rotation of 0 is the point is on the origin
         final double dist = Math.sqrt(x*x + y*y);
         if (dist == 0) return 0;
@@ -150,17 +195,25 @@ public class Vector {
     }
     
     /**
+     * Gets the rotation of the vector (x, y) without creating a {@code Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
      * @return The clockwise rotation, in degrees, with directly above the origin
      * having a rotation of 0, in the range [0, 360).
+     * @see #getRotationDegrees()
      */
-    public double getRotationDegrees () {
-        return Angles.radiansToDegrees(getRotationRadians());
+    public static double getRotationDegrees (double x, double y) {
+        return Angles.radiansToDegrees(getRotationRadians(x, y));
     }
     
     /**
+     * Gets the magnitude of the vector (x, y) without creating a {@code Vector} instance.
+     * @param x The x component of the vector
+     * @param y The y component of the vector
      * @return The magnitude of the vector
+     * @see #getMagnitude()
      */
-    public double getMagnitude () {
+    public static double getMagnitude (double x, double y) {
         return Math.sqrt(x*x + y*y);
     }
     
@@ -0,0 +1,127 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.kinematics;
+
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Converts large batches of chassis commands into module speeds and directions, for path planners
+ * and offline tools which need to evaluate many candidate commands at once. Unlike
+ * {@link frc.team1711.swerve.subsystems.SwerveDrive#autoDrive(double, double, double)}, this
+ * never touches any hardware, and nothing is allocated per command or per batch.
+ * 
+ * <p>Inputs and outputs are structs of arrays: one array per chassis input, and one speed array
+ * and one direction array per module. Each module is processed in its own simple loop over
+ * every command, so the JIT compiler is able to vectorize the speed and desaturation loops. Every
+ * output is exactly equal to what
+ * {@link SwerveKinematics#toModuleStates(double, double, double, double[], double[])} would give
+ * for the same command.</p>
+ * 
+ * <p><b>IMPLEMENTATION NOTE: A {@code ModuleStateBatch} keeps scratch space for desaturation, so
+ * one instance should not be used by more than one thread at a time. Use one instance per
+ * thread to process batches in parallel.</b></p>
+ * @author Gabriel Seaver
+ */
+public class ModuleStateBatch {
+    
+    private final SwerveKinematics kinematics;
+    private final int capacity;
+    
+    // The maximum module speed for each command, used to desaturate the module speeds
+    private final double[] maxSpeeds;
+    
+    /**
+     * Creates a new {@code ModuleStateBatch} which can process up to {@code capacity} commands
+     * at a time.
+     * @param kinematics    The {@link SwerveKinematics} to convert commands with
+     * @param capacity      The maximum number of commands in a single batch
+     */
+    public ModuleStateBatch (SwerveKinematics kinematics, int capacity) {
+        this.kinematics = kinematics;
+        this.capacity = capacity;
+        maxSpeeds = new double[capacity];
+    }
+    
+    /**
+     * @return The maximum number of commands in a single batch
+     */
+    public int getCapacity () {
+        return capacity;
+    }
+    
+    /**
+     * Calculates module speeds and directions for a batch of commands, where command {@code i} is
+     * given by {@code strafeX[i]}, {@code strafeY[i]}, and {@code steering[i]}, following the
+     * same conventions as
+     * {@link SwerveKinematics#toModuleStates(double, double, double, double[], double[])}.
+     * Module speeds are desaturated separately for each command.
+     * @param strafeX       The strafing speeds in the x direction
+     * @param strafeY       The strafing speeds in the y direction
+     * @param steering      The steering speeds, where a positive value steers clockwise from a top-down point of view
+     * @param count         The number of commands to process, which must not exceed the capacity
+     * @param speeds        One array per module to write module speeds to, such that {@code speeds[m][i]}
+     * is the speed of module {@code m} for command {@code i}
+     * @param directions    One array per module to write module directions to, in degrees, in the same layout as
+     * {@code speeds}. This may be {@code null} if only speeds are needed, which skips the most expensive
+     * part of the calculation.
+     */
+    public void toModuleStates (
+            double[] strafeX,
+            double[] strafeY,
+            double[] steering,
+            int count,
+            double[][] speeds,
+            double[][] directions) {
+        if (count > capacity) throw new IllegalArgumentException("count should not exceed the capacity of the batch");
+        
+        final int moduleCount = kinematics.getModuleCount();
+        final double maxModuleRadius = kinematics.getMaxModuleRadius();
+        
+        for (int i = 0; i < count; i ++) maxSpeeds[i] = 0;
+        
+        // Calculates module speeds, keeping track of the maximum speed for each command
+        for (int m = 0; m < moduleCount; m ++) {
+            final double
+                x0 = kinematics.getInverseKinematicsEntry(2 * m, 0),
+                x1 = kinematics.getInverseKinematicsEntry(2 * m, 1),
+                x2 = kinematics.getInverseKinematicsEntry(2 * m, 2),
+                y0 = kinematics.getInverseKinematicsEntry(2 * m + 1, 0),
+                y1 = kinematics.getInverseKinematicsEntry(2 * m + 1, 1),
+                y2 = kinematics.getInverseKinematicsEntry(2 * m + 1, 2);
+            final double[] moduleSpeeds = speeds[m];
+            
+            for (int i = 0; i < count; i ++) {
+                final double steeringInput = steering[i] / maxModuleRadius;
+                final double
+                    x = x0 * strafeX[i] + x1 * strafeY[i] + x2 * steeringInput,
+                    y = y0 * strafeX[i] + y1 * strafeY[i] + y2 * steeringInput;
+                final double speed = Math.sqrt(x*x + y*y);
+                moduleSpeeds[i] = speed;
+                maxSpeeds[i] = Math.max(maxSpeeds[i], speed);
+            }
+            
+            // Directions are calculated in a separate loop because the trigonometry
+            // would otherwise prevent the speed loop from being vectorized
+            if (directions != null) {
+                final double[] moduleDirections = directions[m];
+                for (int i = 0; i < count; i ++) {
+                    final double steeringInput = steering[i] / maxModuleRadius;
+                    moduleDirections[i] = Vector.getRotationDegrees(
+                        x0 * strafeX[i] + x1 * strafeY[i] + x2 * steeringInput,
+                        y0 * strafeX[i] + y1 * strafeY[i] + y2 * steeringInput);
+                }
+            }
+        }
+        
+        // Desaturates module speeds. Dividing by a maximum speed of 1 leaves the speeds unchanged,
+        // so there is no need for a branch in the loop
+        for (int m = 0; m < moduleCount; m ++) {
+            final double[] moduleSpeeds = speeds[m];
+            for (int i = 0; i < count; i ++) {
+                moduleSpeeds[i] /= Math.max(maxSpeeds[i], 1);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,292 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.kinematics;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Describes the geometry of a swerve drive with any number of modules, and converts
+ * chassis commands (strafing and steering inputs) into module speeds and directions.
+ * It can also convert measured module movement back into the movement of the robot.
+ * The inverse kinematics matrix and its pseudo-inverse are built once on construction, so
+ * each conversion is a single matrix-vector multiply over flat {@code double[]} arrays
+ * and allocates nothing.
+ * Used by {@link frc.team1711.swerve.subsystems.SwerveDrive} and
+ * {@link frc.team1711.swerve.util.odometry.Odometry}.
+ * @author Gabriel Seaver
+ */
+public class SwerveKinematics {
+    
+    // The number of columns in the inverse kinematics matrix: strafeX, strafeY, and steering
+    private static final int INPUTS = 3;
+    
+    private final int moduleCount;
+    
+    // The positions of each of the modules relative to the center of rotation
+    private final double[] moduleX, moduleY;
+    
+    // The distance from the center of rotation to the furthest module
+    private final double maxModuleRadius;
+    
+    // Whether the module positions are the robot's real dimensions, rather than only its proportions
+    private final boolean modulePositionsMeasured;
+    
+    // The inverse kinematics matrix, in row-major order. Rows 2i and 2i+1 map the chassis
+    // inputs (strafeX, strafeY, steering / maxModuleRadius) to the x and y components of
+    // the i-th module's movement vector
+    private final double[] inverseKinematics;
+    
+    // The forward kinematics matrix, in row-major order, which is the pseudo-inverse of the inverse
+    // kinematics matrix (with an unscaled rotation column). Its three rows map the x and y components
+    // of every module's movement to the least-squares estimate of the robot's x movement, y movement,
+    // and clockwise rotation in radians
+    private final double[] forwardKinematics;
+    
+    /**
+     * Creates a new {@code SwerveKinematics} given the positions of any number of modules. Positions
+     * are relative to the robot's center of rotation, where +x is to the right and +y is forwards.
+     * Any unit may be used for inverse kinematics, but odometry features which estimate the robot's
+     * rotation from the modules require positions to be measured in inches. The order in which
+     * the positions are given is the order in which module speeds and directions are calculated.
+     * @param modulePositions   The position of each module, relative to the center of rotation
+     */
+    public SwerveKinematics (Vector... modulePositions) {
+        this(true, modulePositions);
+    }
+    
+    // Creates a SwerveKinematics whose module positions may only be in proportion to the robot's dimensions
+    private SwerveKinematics (boolean modulePositionsMeasured, Vector[] modulePositions) {
+        this.modulePositionsMeasured = modulePositionsMeasured;
+        if (modulePositions.length < 2) throw new IllegalArgumentException("a swerve drive must have at least two modules");
+        
+        moduleCount = modulePositions.length;
+        moduleX = new double[moduleCount];
+        moduleY = new double[moduleCount];
+        inverseKinematics = new double[2 * moduleCount * INPUTS];
+        
+        double maxRadius = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            moduleX[i] = modulePositions[i].getX();
+            moduleY[i] = modulePositions[i].getY();
+            maxRadius = Math.max(maxRadius, Vector.getMagnitude(moduleX[i], moduleY[i]));
+            
+            // Movement Vector = Strafe Vector + Module's Steering Vector
+            // The steering vector for clockwise rotation at (x, y) is perpendicular to the
+            // module's position, in the direction (y, -x)
+            final int xRow = 2 * i * INPUTS, yRow = xRow + INPUTS;
+            inverseKinematics[xRow] = 1;
+            inverseKinematics[xRow + 1] = 0;
+            inverseKinematics[xRow + 2] = moduleY[i];
+            inverseKinematics[yRow] = 0;
+            inverseKinematics[yRow + 1] = 1;
+            inverseKinematics[yRow + 2] = -moduleX[i];
+        }
+        
+        if (maxRadius == 0) throw new IllegalArgumentException("module positions cannot all be at the center of rotation");
+        maxModuleRadius = maxRadius;
+        forwardKinematics = buildForwardKinematics();
+    }
+    
+    // Builds the pseudo-inverse (A^T A)^-1 A^T of the inverse kinematics matrix A, where the rows of A
+    // are [1, 0, y] and [0, 1, -x] for each module
+    private double[] buildForwardKinematics () {
+        double sumX = 0, sumY = 0, sumSquares = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            sumX += moduleX[i];
+            sumY += moduleY[i];
+            sumSquares += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+        }
+        
+        // A^T A = [[n, 0, sumY], [0, n, -sumX], [sumY, -sumX, sumSquares]], inverted by cofactors
+        final double n = moduleCount;
+        final double det = n * (n * sumSquares - sumX * sumX - sumY * sumY);
+        if (Math.abs(det) <= 1e-12 * n * n * sumSquares)
+            throw new IllegalArgumentException("module positions cannot all be the same");
+        
+        final double
+            i00 = (n * sumSquares - sumX * sumX) / det,
+            i01 = -sumX * sumY / det,
+            i02 = -n * sumY / det,
+            i11 = (n * sumSquares - sumY * sumY) / det,
+            i12 = n * sumX / det,
+            i22 = n * n / det;
+        
+        // Multiply the inverse by A^T, one module (two columns) at a time
+        final int columns = 2 * moduleCount;
+        final double[] matrix = new double[INPUTS * columns];
+        for (int i = 0; i < moduleCount; i ++) {
+            final double x = moduleX[i], y = moduleY[i];
+            matrix[2 * i] = i00 + i02 * y;
+            matrix[2 * i + 1] = i01 - i02 * x;
+            matrix[columns + 2 * i] = i01 + i12 * y;
+            matrix[columns + 2 * i + 1] = i11 - i12 * x;
+            matrix[2 * columns + 2 * i] = i02 + i22 * y;
+            matrix[2 * columns + 2 * i + 1] = i12 - i22 * x;
+        }
+        
+        return matrix;
+    }
+    
+    /**
+     * Creates a new {@code SwerveKinematics} for a rectangular four-module swerve drive, with
+     * the modules in the order front left, front right, rear left, rear right. The modules are
+     * placed at (&plusmn;1, &plusmn;{@code wheelbaseToTrackRatio}), which gives the steering vectors
+     * used by the {@link frc.team1711.swerve.subsystems.SwerveDrive} constructors which take a
+     * {@code wheelbaseToTrackRatio}. These positions only give the robot's proportions, so the rotation
+     * found by {@link #toChassisMovement(double[], double[], double[])} is not in degrees (see
+     * {@link #hasMeasuredModulePositions()}).
+     * @param wheelbaseToTrackRatio The distance between the centers of the left and right wheels divided
+     * by the distance between the centers of the front and back wheels
+     * @return The {@code SwerveKinematics}
+     */
+    public static SwerveKinematics rectangular (double wheelbaseToTrackRatio) {
+        return new SwerveKinematics(false, new Vector[] {
+            new Vector(-1, wheelbaseToTrackRatio),
+            new Vector(1, wheelbaseToTrackRatio),
+            new Vector(-1, -wheelbaseToTrackRatio),
+            new Vector(1, -wheelbaseToTrackRatio),
+        });
+    }
+    
+    /**
+     * Gets whether the module positions are the robot's real dimensions. This is false for kinematics made by
+     * {@link #rectangular(double)}, whose module positions only give the robot's proportions. The robot's rotation
+     * can only be measured from the movement of its modules if this is true and the module positions are in the
+     * same unit as the measured movement.
+     * @return Whether the module positions are measured
+     */
+    public boolean hasMeasuredModulePositions () {
+        return modulePositionsMeasured;
+    }
+    
+    /**
+     * @return The number of modules on the swerve drive
+     */
+    public int getModuleCount () {
+        return moduleCount;
+    }
+    
+    /**
+     * Gets the position of a module relative to the center of rotation, where +x is to the right
+     * and +y is forwards.
+     * @param module    The index of the module
+     * @return          The position of the module
+     */
+    public Vector getModulePosition (int module) {
+        return new Vector(moduleX[module], moduleY[module]);
+    }
+    
+    /**
+     * Calculates module speeds and directions given strafing and steering inputs, all on the interval
+     * [-1, 1], where +{@code strafeY} is forwards and +{@code strafeX} is to the right. Steering is scaled
+     * such that the module furthest from the center of rotation moves at {@code steering} when the robot
+     * is only steering. If any module speed is greater than 1, all speeds are divided by the maximum
+     * speed so that they stay in proportion to each other. Nothing is allocated by this method.
+     * @param strafeX       The strafing speed in the x direction
+     * @param strafeY       The strafing speed in the y direction
+     * @param steering      The steering speed, where a positive value steers clockwise from a top-down point of view
+     * @param speeds        The array to write module speeds to, on the interval [0, 1]
+     * @param directions    The array to write module directions to, in degrees, on the interval [0, 360). A
+     * direction of zero is directly forwards and an increase in direction is further clockwise. The direction
+     * of a module with a speed of zero is unspecified.
+     */
+    public void toModuleStates (double strafeX, double strafeY, double steering, double[] speeds, double[] directions) {
+        final double steeringInput = steering / maxModuleRadius;
+        
+        // Multiplies the inverse kinematics matrix by the chassis input vector
+        for (int i = 0; i < moduleCount; i ++) {
+            final int xRow = 2 * i * INPUTS, yRow = xRow + INPUTS;
+            final double
+                x = inverseKinematics[xRow] * strafeX + inverseKinematics[xRow + 1] * strafeY + inverseKinematics[xRow + 2] * steeringInput,
+                y = inverseKinematics[yRow] * strafeX + inverseKinematics[yRow + 1] * strafeY + inverseKinematics[yRow + 2] * steeringInput;
+            
+            speeds[i] = Vector.getMagnitude(x, y);
+            directions[i] = Vector.getRotationDegrees(x, y);
+        }
+        
+        desaturate(speeds);
+    }
+    
+    /**
+     * Calculates the movement of the robot from the movement of each module, using a least-squares fit
+     * over every module so that the measurements of all modules are taken into account together. The
+     * rotation is only meaningful if the module positions are in the same unit as {@code distances}.
+     * Nothing is allocated by this method.
+     * @param distances     The distance each module has moved
+     * @param directions    The direction each module moved in, in degrees, relative to the robot. A
+     * direction of zero is directly forwards and an increase in direction is further clockwise.
+     * @param movement      The array to write the robot-relative movement of the robot to, as its x movement,
+     * y movement, and clockwise rotation in degrees
+     */
+    public void toChassisMovement (double[] distances, double[] directions, double[] movement) {
+        final int columns = 2 * moduleCount;
+        double x = 0, y = 0, rotation = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            final double radians = Angles.degreesToRadians(directions[i]);
+            final double moduleX = distances[i] * Angles.cos(radians), moduleY = distances[i] * Angles.sin(radians);
+            
+            x += forwardKinematics[2 * i] * moduleX + forwardKinematics[2 * i + 1] * moduleY;
+            y += forwardKinematics[columns + 2 * i] * moduleX + forwardKinematics[columns + 2 * i + 1] * moduleY;
+            rotation += forwardKinematics[2 * columns + 2 * i] * moduleX + forwardKinematics[2 * columns + 2 * i + 1] * moduleY;
+        }
+        
+        movement[0] = x;
+        movement[1] = y;
+        movement[2] = Math.toDegrees(rotation);
+    }
+    
+    /**
+     * Calculates the movement of the robot from the movement of each module, like
+     * {@link #toChassisMovement(double[], double[], double[])}, but with each module's direction given as the
+     * components of a unit vector, so callers which already have them (or can reuse them between calls) don't
+     * need any trigonometry. Nothing is allocated by this method.
+     * @param distances     The distance each module has moved
+     * @param directionsX   The x component of a unit vector in the direction each module moved in, relative to the robot
+     * @param directionsY   The y component of a unit vector in the direction each module moved in, relative to the robot
+     * @param movement      The array to write the robot-relative movement of the robot to, as its x movement,
+     * y movement, and clockwise rotation in degrees
+     */
+    public void toChassisMovement (double[] distances, double[] directionsX, double[] directionsY, double[] movement) {
+        final int columns = 2 * moduleCount;
+        double x = 0, y = 0, rotation = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            final double moduleX = distances[i] * directionsX[i], moduleY = distances[i] * directionsY[i];
+            
+            x += forwardKinematics[2 * i] * moduleX + forwardKinematics[2 * i + 1] * moduleY;
+            y += forwardKinematics[columns + 2 * i] * moduleX + forwardKinematics[columns + 2 * i + 1] * moduleY;
+            rotation += forwardKinematics[2 * columns + 2 * i] * moduleX + forwardKinematics[2 * columns + 2 * i + 1] * moduleY;
+        }
+        
+        movement[0] = x;
+        movement[1] = y;
+        movement[2] = Math.toDegrees(rotation);
+    }
+    
+    // Gets an entry of the inverse kinematics matrix, used by ModuleStateBatch
+    double getInverseKinematicsEntry (int row, int column) {
+        return inverseKinematics[row * INPUTS + column];
+    }
+    
+    // Gets the distance from the center of rotation to the furthest module, used by ModuleStateBatch
+    double getMaxModuleRadius () {
+        return maxModuleRadius;
+    }
+    
+    /**
+     * Because module speeds must be in correct proportions in order for swerve to function correctly,
+     * this checks if the maximum speed is within the proper bounds and if it isn't, divides all
+     * speeds by the maximum speed.
+     * @param speeds    The module speeds, which will be modified in place
+     */
+    public void desaturate (double[] speeds) {
+        double maxSpeed = 0;
+        for (int i = 0; i < moduleCount; i ++) maxSpeed = Math.max(maxSpeed, speeds[i]);
+        
+        if (maxSpeed > 1) {
+            for (int i = 0; i < moduleCount; i ++) speeds[i] /= maxSpeed;
+        }
+    }
+    
+}
@@ -0,0 +1,27 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+/**
+ * The way {@link Odometry} turns the wheel movement measured between two updates into a change in
+ * the robot's position. There is straight-line integration, {@link #CHORD}, and constant-curvature
+ * integration, {@link #ARC}.
+ * @author Gabriel Seaver
+ */
+public enum IntegrationMode {
+    /**
+     * Denoting integration which moves the robot in a straight line between updates, in the direction
+     * the wheels were facing at the end of the update. This is the default. It is accurate while the
+     * robot is only strafing or only turning, but builds up error while the robot strafes and turns at
+     * the same time, especially at low update rates.
+     */
+    CHORD,
+    
+    /**
+     * Denoting integration which moves the robot along a circular arc between updates, turning steadily
+     * from the robot's direction at the last update to its direction at the current update. This stays
+     * accurate at lower update rates while the robot strafes and turns at the same time.
+     */
+    ARC
+}
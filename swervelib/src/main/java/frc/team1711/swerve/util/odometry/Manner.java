@@ -13,6 +13,7 @@ package frc.team1711.swerve.util.odometry;
 public abstract class Manner {
     
     private final double marginOfError;
+    private final MotionProfile.Constraints profileConstraints;
     
     /**
      * Represents the abstract creation of a manner, which includes a property describing the acceptible margin
@@ -21,7 +22,19 @@ public abstract class Manner {
      * @param marginOfError The margin of error from the endpoint of the autonomous activity
      */
     public Manner (double marginOfError) {
+        this(marginOfError, null);
+    }
+    
+    /**
+     * Represents the abstract creation of a manner which follows a {@link MotionProfile}, generated once
+     * when the autonomous activity starts and followed by the time elapsed since then.
+     * @param marginOfError         The margin of error from the endpoint of the autonomous activity
+     * @param profileConstraints    The {@link MotionProfile.Constraints} on the profile, or {@code null} if
+     * no profile should be followed
+     */
+    protected Manner (double marginOfError, MotionProfile.Constraints profileConstraints) {
         this.marginOfError = marginOfError;
+        this.profileConstraints = profileConstraints;
     }
     
     /**
@@ -39,6 +52,16 @@ public abstract class Manner {
         return marginOfError;
     }
     
+    /**
+     * Gets the constraints on the {@link MotionProfile} the robot follows while performing the autonomous
+     * activity, if there is one.
+     * @return The {@link MotionProfile.Constraints}, or {@code null} if the speed should only be found from
+     * {@link #getSpeedSupplier()}
+     */
+    public MotionProfile.Constraints getProfileConstraints () {
+        return profileConstraints;
+    }
+    
     /**
      * A functional interface which gets the speed the robot should perform an abstract autonomous task given
      * the amount left to be completed.
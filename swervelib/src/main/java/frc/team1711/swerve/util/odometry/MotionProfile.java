@@ -0,0 +1,345 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+/**
+ * A precomputed, rest-to-rest motion profile over a given distance, limiting velocity, acceleration, and
+ * optionally jerk. With a jerk limit the profile is an S-curve, made of up to seven phases of constant jerk,
+ * so the acceleration changes smoothly; without one it is a trapezoid, made of up to three phases of constant
+ * acceleration. The phases are found once when the profile is created, and sampling the profile at a given
+ * time only takes a few comparisons and a polynomial evaluation. The units are arbitrary, so a profile can be
+ * used for distances in inches or turns in degrees (see {@link MovementManner} and {@link TurnManner}).
+ * @author Gabriel Seaver
+ */
+public class MotionProfile {
+    
+    private static final int PHASE_COUNT = 7;
+    
+    private final double distance, duration;
+    
+    // The ratio of the fastest duration within the constraints to the profile's duration, which is less than 1
+    // if the profile has been slowed down with withDuration
+    private final double timeScale;
+    
+    // The start time of each phase, and the position, velocity, acceleration, and jerk at that time, before the
+    // profile is slowed down. These arrays are never changed after the profile is created, so they are shared
+    // with slowed down profiles
+    private final double[] phaseTimes, phasePositions, phaseVelocities, phaseAccelerations, phaseJerks;
+    
+    /**
+     * Creates a new {@code MotionProfile} which starts and ends at rest, and reaches {@code distance} as
+     * quickly as possible within the given constraints.
+     * @param distance      The distance to travel, which cannot be negative
+     * @param constraints   The {@link Constraints} on the profile
+     */
+    public MotionProfile (double distance, Constraints constraints) {
+        if (!(distance >= 0)) throw new IllegalArgumentException("distance cannot be negative");
+        this.distance = distance;
+        timeScale = 1;
+        phaseTimes = new double[PHASE_COUNT];
+        phasePositions = new double[PHASE_COUNT];
+        phaseVelocities = new double[PHASE_COUNT];
+        phaseAccelerations = new double[PHASE_COUNT];
+        phaseJerks = new double[PHASE_COUNT];
+        
+        final double maxJerk = constraints.getMaxJerk();
+        double velocity = constraints.getMaxVelocity(), acceleration = constraints.getMaxAcceleration();
+        
+        // Without a jerk limit, the jerk phases take no time
+        final boolean jerkLimited = maxJerk != Double.POSITIVE_INFINITY;
+        
+        // Lower the peak acceleration if the peak velocity is reached before the acceleration ramps up fully
+        if (jerkLimited && velocity * maxJerk < acceleration * acceleration)
+            acceleration = Math.sqrt(velocity * maxJerk);
+        
+        // Speeding up (or slowing down) to velocity takes velocity / acceleration + acceleration / maxJerk seconds,
+        // and covers half of velocity times that time. If that would overshoot half the distance, lower the peak velocity
+        if (velocity * getRampTime(velocity, acceleration, maxJerk) > distance) {
+            acceleration = constraints.getMaxAcceleration();
+            if (jerkLimited) {
+                // Solve velocity^2 / acceleration + velocity * acceleration / maxJerk = distance
+                final double b = acceleration / maxJerk;
+                velocity = (Math.sqrt(b * b + 4 * distance / acceleration) - b) * acceleration / 2;
+                
+                // If the acceleration can't ramp up fully, solve 2 * velocity^1.5 / sqrt(maxJerk) = distance instead
+                if (velocity * maxJerk < acceleration * acceleration) {
+                    velocity = Math.cbrt(distance * distance * maxJerk / 4);
+                    acceleration = Math.sqrt(velocity * maxJerk);
+                }
+            } else {
+                velocity = Math.sqrt(distance * acceleration);
+            }
+        }
+        
+        final double
+            jerkTime = jerkLimited ? acceleration / maxJerk : 0,
+            accelerationTime = velocity > 0 ? Math.max(velocity / acceleration - jerkTime, 0) : 0,
+            cruiseTime = velocity > 0 ? distance / velocity - getRampTime(velocity, acceleration, maxJerk) : 0;
+        final double jerk = jerkLimited ? maxJerk : 0;
+        
+        final double[] phaseDurations = {
+            jerkTime, accelerationTime, jerkTime, Math.max(cruiseTime, 0), jerkTime, accelerationTime, jerkTime,
+        };
+        final double[] accelerations = { 0, acceleration, acceleration, 0, 0, -acceleration, -acceleration };
+        final double[] jerks = { jerk, 0, -jerk, 0, -jerk, 0, jerk };
+        
+        // Integrate through each phase to find the state at the start of the next
+        double time = 0, position = 0, speed = 0;
+        for (int i = 0; i < PHASE_COUNT; i ++) {
+            final double t = phaseDurations[i], a = accelerations[i], j = jerks[i];
+            phaseTimes[i] = time;
+            phasePositions[i] = position;
+            phaseVelocities[i] = speed;
+            phaseAccelerations[i] = a;
+            phaseJerks[i] = j;
+            
+            time += t;
+            position += t * (speed + t * (a / 2 + t * j / 6));
+            speed += t * (a + t * j / 2);
+        }
+        
+        duration = time;
+    }
+    
+    // Creates a copy of a profile which is slowed down to take a longer duration
+    private MotionProfile (MotionProfile profile, double duration) {
+        distance = profile.distance;
+        this.duration = duration;
+        timeScale = profile.timeScale * (profile.duration > 0 ? profile.duration / duration : 0);
+        phaseTimes = profile.phaseTimes;
+        phasePositions = profile.phasePositions;
+        phaseVelocities = profile.phaseVelocities;
+        phaseAccelerations = profile.phaseAccelerations;
+        phaseJerks = profile.phaseJerks;
+    }
+    
+    /**
+     * Gets a copy of this profile which is slowed down to take a longer duration, by stretching it evenly in
+     * time. The velocity is divided by the ratio of the durations, the acceleration by its square, and the jerk
+     * by its cube, so the slowed down profile is still within the original constraints. This is used to make
+     * two profiles finish at the same time.
+     * @param duration  The duration of the new profile, in seconds, which cannot be shorter than this profile's
+     * @return          The slowed down {@code MotionProfile}
+     */
+    public MotionProfile withDuration (double duration) {
+        if (!(duration >= this.duration)) throw new IllegalArgumentException("a profile can only be slowed down");
+        return new MotionProfile(this, duration);
+    }
+    
+    // Gets the time taken to speed up from rest to a velocity
+    private static double getRampTime (double velocity, double acceleration, double maxJerk) {
+        return velocity / acceleration + (maxJerk == Double.POSITIVE_INFINITY ? 0 : acceleration / maxJerk);
+    }
+    
+    // Gets the index of the phase containing a time on the interval [0, duration)
+    private int getPhase (double time) {
+        int phase = PHASE_COUNT - 1;
+        while (phaseTimes[phase] > time) phase --;
+        return phase;
+    }
+    
+    /**
+     * @return The total distance travelled by the profile
+     */
+    public double getDistance () {
+        return distance;
+    }
+    
+    /**
+     * @return The time the profile takes to reach its distance and come to rest, in seconds
+     */
+    public double getDuration () {
+        return duration;
+    }
+    
+    /**
+     * @return The largest velocity reached by the profile, in units per second
+     */
+    public double getPeakVelocity () {
+        // The velocity is at its peak when the profile stops speeding up, which is the start of the cruise phase
+        return phaseVelocities[3] * timeScale;
+    }
+    
+    /**
+     * Gets the distance travelled at a given time.
+     * @param time  The time since the start of the profile, in seconds
+     * @return      The distance travelled, which is zero before the profile starts and {@link #getDistance()}
+     * after it ends
+     */
+    public double getPosition (double time) {
+        if (time <= 0) return 0;
+        if (time >= duration) return distance;
+        
+        time *= timeScale;
+        final int phase = getPhase(time);
+        final double t = time - phaseTimes[phase];
+        final double position = phasePositions[phase]
+            + t * (phaseVelocities[phase] + t * (phaseAccelerations[phase] / 2 + t * phaseJerks[phase] / 6));
+        
+        // Rounding can leave the position very slightly past the distance near the end
+        return Math.min(position, distance);
+    }
+    
+    /**
+     * Gets the velocity at a given time.
+     * @param time  The time since the start of the profile, in seconds
+     * @return      The velocity, in units per second, which is zero before the profile starts and after it ends
+     */
+    public double getVelocity (double time) {
+        if (time <= 0 || time >= duration) return 0;
+        
+        time *= timeScale;
+        final int phase = getPhase(time);
+        final double t = time - phaseTimes[phase];
+        return Math.max(phaseVelocities[phase] + t * (phaseAccelerations[phase] + t * phaseJerks[phase] / 2), 0) * timeScale;
+    }
+    
+    /**
+     * Gets the acceleration at a given time.
+     * @param time  The time since the start of the profile, in seconds
+     * @return      The acceleration, in units per second squared, which is zero before the profile starts
+     * and after it ends
+     */
+    public double getAcceleration (double time) {
+        if (time <= 0 || time >= duration) return 0;
+        
+        time *= timeScale;
+        final int phase = getPhase(time);
+        return (phaseAccelerations[phase] + (time - phaseTimes[phase]) * phaseJerks[phase]) * timeScale * timeScale;
+    }
+    
+    /**
+     * The limits on a {@link MotionProfile}, along with the velocity the robot reaches at full output, which
+     * converts the profile's velocities into speeds on the interval [0, 1] for the swerve drive.
+     */
+    public static class Constraints {
+        
+        /**
+         * The default settle speed, as a fraction of full output (see {@link #withSettleSpeed(double)}).
+         */
+        public static final double DEFAULT_SETTLE_SPEED = 0.05;
+        
+        private final double fullSpeedVelocity, maxVelocity, maxAcceleration, maxJerk, settleSpeed;
+        
+        private Constraints (
+                double fullSpeedVelocity,
+                double maxVelocity,
+                double maxAcceleration,
+                double maxJerk,
+                double settleSpeed) {
+            if (!(fullSpeedVelocity > 0) || !(maxVelocity > 0) || !(maxAcceleration > 0) || !(maxJerk > 0))
+                throw new IllegalArgumentException("constraints should be positive");
+            if (!(settleSpeed >= 0) || settleSpeed > 1)
+                throw new IllegalArgumentException("settle speed should be on the interval [0, 1]");
+            this.fullSpeedVelocity = fullSpeedVelocity;
+            this.maxVelocity = maxVelocity;
+            this.maxAcceleration = maxAcceleration;
+            this.maxJerk = maxJerk;
+            this.settleSpeed = settleSpeed;
+        }
+        
+        /**
+         * Creates {@code Constraints} for a trapezoidal profile, which limits velocity and acceleration.
+         * @param fullSpeedVelocity The velocity the robot reaches when driven at full output (a speed of 1),
+         * in units per second
+         * @param maxVelocity       The largest velocity, in units per second
+         * @param maxAcceleration   The largest acceleration, in units per second squared
+         * @return                  The {@code Constraints}
+         */
+        public static Constraints trapezoidal (double fullSpeedVelocity, double maxVelocity, double maxAcceleration) {
+            return new Constraints(fullSpeedVelocity, maxVelocity, maxAcceleration, Double.POSITIVE_INFINITY, DEFAULT_SETTLE_SPEED);
+        }
+        
+        /**
+         * Creates {@code Constraints} for an S-curve profile, which limits velocity, acceleration, and jerk.
+         * Limiting jerk keeps the acceleration from changing suddenly, which reduces wheel slip at the start and
+         * end of the profile.
+         * @param fullSpeedVelocity The velocity the robot reaches when driven at full output (a speed of 1),
+         * in units per second
+         * @param maxVelocity       The largest velocity, in units per second
+         * @param maxAcceleration   The largest acceleration, in units per second squared
+         * @param maxJerk           The largest jerk, in units per second cubed
+         * @return                  The {@code Constraints}
+         */
+        public static Constraints sCurve (double fullSpeedVelocity, double maxVelocity, double maxAcceleration, double maxJerk) {
+            return new Constraints(fullSpeedVelocity, maxVelocity, maxAcceleration, maxJerk, DEFAULT_SETTLE_SPEED);
+        }
+        
+        /**
+         * Gets a copy of these constraints with a different settle speed. Once a profile has ended, the robot
+         * is only driven by the correction towards the profile's endpoint, which gets slower as the robot gets
+         * closer. The settle speed is the slowest the robot is driven at while it is still outside its margin
+         * of error, so that friction cannot stop it short of the endpoint. It should be low enough that the
+         * robot does not move further than its margin of error in one loop at that speed.
+         * @param settleSpeed   The settle speed, as a fraction of full output on the interval [0, 1]
+         * @return              The {@code Constraints}
+         */
+        public Constraints withSettleSpeed (double settleSpeed) {
+            return new Constraints(fullSpeedVelocity, maxVelocity, maxAcceleration, maxJerk, settleSpeed);
+        }
+        
+        /**
+         * @return The velocity the robot reaches when driven at full output, in units per second
+         */
+        public double getFullSpeedVelocity () {
+            return fullSpeedVelocity;
+        }
+        
+        /**
+         * @return The largest velocity, in units per second
+         */
+        public double getMaxVelocity () {
+            return maxVelocity;
+        }
+        
+        /**
+         * @return The largest acceleration, in units per second squared
+         */
+        public double getMaxAcceleration () {
+            return maxAcceleration;
+        }
+        
+        /**
+         * @return The largest jerk, in units per second cubed, which is {@link Double#POSITIVE_INFINITY} for
+         * trapezoidal profiles
+         */
+        public double getMaxJerk () {
+            return maxJerk;
+        }
+        
+        /**
+         * @return The slowest the robot is driven at once a profile has ended, as a fraction of full output
+         * @see #withSettleSpeed(double)
+         */
+        public double getSettleSpeed () {
+            return settleSpeed;
+        }
+        
+        /**
+         * Raises a velocity which corrects the robot's position after a profile has ended to at least the
+         * settle speed (see {@link #withSettleSpeed(double)}).
+         * @param correctionVelocity    The velocity towards the profile's endpoint, in units per second
+         * @return                      The velocity in the same direction, which is at least the settle speed
+         * unless {@code correctionVelocity} is zero
+         */
+        public double getSettleVelocity (double correctionVelocity) {
+            if (correctionVelocity == 0) return 0;
+            final double minVelocity = settleSpeed * fullSpeedVelocity;
+            return Math.abs(correctionVelocity) >= minVelocity ? correctionVelocity : Math.copySign(minVelocity, correctionVelocity);
+        }
+        
+        /**
+         * Gets the speed on the interval [0, 1] at which a profile with these constraints would be slowing down
+         * with a given distance remaining. This can be used to drive reactively, without timing a profile.
+         * @param remaining The remaining distance
+         * @return          The speed, as a fraction of full output
+         */
+        public double getSpeed (double remaining) {
+            final double velocity = Math.min(maxVelocity, Math.sqrt(2 * maxAcceleration * remaining));
+            return Math.min(velocity / fullSpeedVelocity, 1);
+        }
+    
+    }
+    
+}
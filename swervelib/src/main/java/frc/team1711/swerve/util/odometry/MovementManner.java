@@ -32,6 +32,20 @@ public class MovementManner extends Manner {
         this.speedSupplier = speedSupplier;
     }
     
+    /**
+     * Constructs a {@link MovementManner} instance where the robot follows a trapezoidal or S-curve
+     * {@link MotionProfile} along a given {@link RobotMovement} path. The profile is generated once when the
+     * path starts, and the robot's speed is found from the time elapsed since then instead of from the remaining
+     * distance, so the robot speeds up and slows down smoothly without crawling near the endpoint.
+     * @param marginOfError         A {@code double} describing how far the robot can be from its endpoint in
+     * order for the path to be considered finished, in inches.
+     * @param profileConstraints    The {@link MotionProfile.Constraints} on the profile, in inches.
+     */
+    public MovementManner (double marginOfError, MotionProfile.Constraints profileConstraints) {
+        super(marginOfError, profileConstraints);
+        this.speedSupplier = profileConstraints::getSpeed;
+    }
+    
     /**
      * Gets the {@link MovementSpeedSupplier} associated with this {@link MovementManner} instance.
      * @return The {@code MovementSpeedSupplier} which describes how quickly the robot
@@ -3,9 +3,16 @@
 
 package frc.team1711.swerve.util.odometry;
 
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
 import frc.team1711.swerve.subsystems.AutoSwerveDrive;
 import frc.team1711.swerve.subsystems.AutoSwerveWheel;
+import frc.team1711.swerve.util.Angles;
 import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
 
 /**
  * A class used in coordination with {@link AutoSwerveDrive} in order to track the position of the robot on the field.
@@ -13,117 +20,561 @@ import frc.team1711.swerve.util.Vector;
  */
 public class Odometry {
     
-    private double
-        frontLeftDistance,
-        frontRightDistance,
-        rearLeftDistance,
-        rearRightDistance;
-    
-    private final AutoSwerveWheel
-        frontLeftWheel,
-        frontRightWheel,
-        rearLeftWheel,
-        rearRightWheel;
+    // The number of past positions kept for getPositionAt
+    private static final int HISTORY_CAPACITY = 256;
     
+    // The drive and wheels the sensors are read from, which are null if the odometry isn't connected to hardware
     private final AutoSwerveDrive swerveDrive;
+    private final AutoSwerveWheel[] wheels;
+    private final SwerveKinematics kinematics;
+    
+    // The encoder distances of each wheel and the absolute gyro angle at the last update
+    private final double[] wheelDistances;
+    private double gyroAngle;
+    
+    // Scratch arrays for the movement of each wheel and of the robot since the last update
+    private final double[] moduleDistances, chassisMovement = new double[3];
+    private double cachedHeading = Double.NaN, headingCos, headingSin;
+    
+    // The last direction of each module, and the components of a unit vector in that direction. Modules
+    // usually hold their direction between samples, so these are only recalculated when it changes
+    private final double[] cachedModuleDirections, moduleDirectionsX, moduleDirectionsY;
+    
+    // Sensors are read into these arrays when there is no sample source
+    private final double[] sensorDistances, sensorDirections;
+    private SensorSampleBuffer.Reader sampleSource;
     
     private double gyroYawOffset;
-    private Position position = new Position(Vector.ZERO, 0);
+    private boolean gyroEnabled = true, gyroRealignRequired = false;
+    
+    // The robot's direction according to only the rotation measured by the wheels
+    private double wheelDirection = 0;
+    
+    // The robot's position, kept as primitives so that integrating a sample allocates nothing. The direction
+    // is always wrapped to [0, 360), as it would be in a Position
+    private double positionX = 0, positionY = 0, positionDirection = 0;
+    private double timestamp;
+    
+    // The latest position and its timestamp, which can be read from any thread
+    private final PositionPublisher publisher = new PositionPublisher();
+    
+    private final PositionHistory history = new PositionHistory(HISTORY_CAPACITY);
+    
+    private IntegrationMode integrationMode = IntegrationMode.CHORD;
+    
+    // Rejects slipping modules before their movement is integrated, see setWheelSlipFilter
+    private WheelSlipFilter slipFilter;
+    
+    // Fuses external measurements with the odometry, see setPoseEstimator and setParticleFilter
+    private PoseEstimator poseEstimator;
+    private ParticleFilter particleFilter;
+    
+    // Updates the odometry on its own thread, see startThread
+    private Notifier notifier;
+    private volatile boolean threadRunning = false;
+    
+    // Records every sample and state change so the odometry can be replayed, see setSensorLog
+    private SensorLogWriter sensorLog;
     
     /**
      * Creates a new {@link Odometry} object which tracks the position of an {@link AutoSwerveDrive} on the field.
      * This constructor method should not be called outside of the {@code AutoSwerveDrive} class. Use methods on the
      * {@code AutoSwerveDrive} class in order to access odometry functionality.
      * @param swerveDrive       The {@code AutoSwerveDrive} subsystem.
-     * @param frontLeftWheel    The front left {@code AutoSwerveWheel}.
-     * @param frontRightWheel   The front right {@code AutoSwerveWheel}.
-     * @param rearLeftWheel     The rear left {@code AutoSwerveWheel}.
-     * @param rearRightWheel    The rear right {@code AutoSwerveWheel}.
+     * @param kinematics        The {@link SwerveKinematics} describing the positions of the modules.
+     * @param wheels            The {@code AutoSwerveWheel} for each module, in the same order as the module
+     * positions given to {@code kinematics}.
      */
     public Odometry (
             AutoSwerveDrive swerveDrive,
-            AutoSwerveWheel frontLeftWheel,
-            AutoSwerveWheel frontRightWheel,
-            AutoSwerveWheel rearLeftWheel,
-            AutoSwerveWheel rearRightWheel) {
+            SwerveKinematics kinematics,
+            AutoSwerveWheel... wheels) {
+        if (wheels.length != kinematics.getModuleCount())
+            throw new IllegalArgumentException("number of wheels should match the number of modules in kinematics");
+        
         this.swerveDrive = swerveDrive;
-        this.frontLeftWheel = frontLeftWheel;
-        this.frontRightWheel = frontRightWheel;
-        this.rearLeftWheel = rearLeftWheel;
-        this.rearRightWheel = rearRightWheel;
+        this.wheels = wheels.clone();
+        this.kinematics = kinematics;
+        wheelDistances = new double[wheels.length];
+        moduleDistances = new double[wheels.length];
+        cachedModuleDirections = new double[wheels.length];
+        moduleDirectionsX = new double[wheels.length];
+        moduleDirectionsY = new double[wheels.length];
+        Arrays.fill(cachedModuleDirections, Double.NaN);
+        sensorDistances = new double[wheels.length];
+        sensorDirections = new double[wheels.length];
         
         // Update wheel distances so the position doesn't jump when swerveDrive is initialized
         // Reset offset so the direction doesn't jump either
-        updateWheelDistances();
-        setGyroYawOffset(0);
+        readSensors();
+        System.arraycopy(sensorDistances, 0, wheelDistances, 0, wheels.length);
+        gyroAngle = swerveDrive.getAbsoluteGyroAngle();
+        gyroYawOffset = gyroAngle;
+        timestamp = Timer.getFPGATimestamp();
+        recordHistory();
+        publishPosition();
+    }
+    
+    /**
+     * Creates a new {@link Odometry} object which is not connected to any hardware, starting at the origin
+     * with every sensor reading zero. Samples must be given to it with
+     * {@link #addSample(double, double, double[], double[])} or through a sample source. This is used to
+     * replay sensor logs (see {@link SensorLogReplay}) and to test odometry without a robot.
+     * @param kinematics        The {@link SwerveKinematics} describing the positions of the modules.
+     */
+    public Odometry (SwerveKinematics kinematics) {
+        final int moduleCount = kinematics.getModuleCount();
+        this.swerveDrive = null;
+        this.wheels = null;
+        this.kinematics = kinematics;
+        wheelDistances = new double[moduleCount];
+        moduleDistances = new double[moduleCount];
+        cachedModuleDirections = new double[moduleCount];
+        moduleDirectionsX = new double[moduleCount];
+        moduleDirectionsY = new double[moduleCount];
+        Arrays.fill(cachedModuleDirections, Double.NaN);
+        sensorDistances = new double[moduleCount];
+        sensorDirections = new double[moduleCount];
+        
+        gyroAngle = 0;
+        gyroYawOffset = 0;
+        timestamp = 0;
+        recordHistory();
+        publishPosition();
     }
     
     /**
      * Used in order to update the estimated robot location on the field. This method is automatically called by
-     * {@link AutoSwerveDrive} every time the robot's movement kinematics are set.
+     * {@link AutoSwerveDrive} once per loop and every time the robot's movement kinematics are set, unless the
+     * odometry thread is running. If there is a sample source (see {@link #setSampleSource(SensorSampleBuffer.Reader)}),
+     * every new sample is integrated. Otherwise, the sensors are read directly, unless this odometry is not
+     * connected to any hardware. The new position is then published
+     * for {@link #getPosition()} and {@link #getTimestampedPosition()}.
+     */
+    public synchronized void update () {
+        if (sampleSource == null) {
+            if (swerveDrive != null) {
+                readSensors();
+                integrateSample(Timer.getFPGATimestamp(), swerveDrive.getAbsoluteGyroAngle(), sensorDistances, sensorDirections);
+            }
+        } else {
+            while (sampleSource.next()) {
+                integrateSample(
+                    sampleSource.getTimestamp(),
+                    sampleSource.getGyroAngle(),
+                    sampleSource.getDistances(),
+                    sampleSource.getDirections());
+            }
+        }
+        
+        publishPosition();
+    }
+    
+    /**
+     * Starts updating the odometry on its own thread at a fixed rate, so that the accuracy of the
+     * odometry does not depend on how often the robot is driven. Samples must be read from a sample
+     * source (see {@link #setSampleSource(SensorSampleBuffer.Reader)}), because sensors read by the
+     * main robot thread cannot safely be read from the odometry thread. While the thread is running,
+     * {@link AutoSwerveDrive} does not update the odometry from the main robot thread.
+     * @param frequency The number of updates per second
+     * @see #stopThread()
+     */
+    public synchronized void startThread (double frequency) {
+        if (sampleSource == null) throw new IllegalStateException("the odometry thread requires a sample source");
+        
+        if (notifier == null) {
+            notifier = new Notifier(this::update);
+            notifier.setName("SwerveLib Odometry");
+        }
+        
+        threadRunning = true;
+        notifier.startPeriodic(1 / frequency);
+    }
+    
+    /**
+     * Stops updating the odometry on its own thread.
+     * @see #startThread(double)
+     */
+    public synchronized void stopThread () {
+        if (notifier != null) notifier.stop();
+        threadRunning = false;
+    }
+    
+    /**
+     * Sets the source of sensor samples for this odometry. If {@code sampleSource} is not {@code null},
+     * {@link #update()} will integrate the samples read from it instead of reading the sensors directly.
+     * @param sampleSource  The {@link SensorSampleBuffer.Reader} to read samples from, or {@code null} to
+     * read the sensors directly
+     * @see SensorSampler
+     */
+    public synchronized void setSampleSource (SensorSampleBuffer.Reader sampleSource) {
+        if (sampleSource == null && threadRunning)
+            throw new IllegalStateException("the odometry thread requires a sample source");
+        
+        update();
+        this.sampleSource = sampleSource;
+    }
+    
+    /**
+     * Integrates a single sample of sensor readings and publishes the new position. This is used by odometry
+     * which is not connected to any hardware, for example to replay a sensor log. It should not be mixed with
+     * a sample source or with sensors read by {@link #update()}, which would both integrate the same movement.
+     * @param timestamp     The time the sample was taken, in seconds
+     * @param gyroAngle     The absolute gyro angle, in degrees
+     * @param distances     The encoder distance of each module, in inches
+     * @param directions    The steering direction of each module, in degrees
+     */
+    public synchronized void addSample (double timestamp, double gyroAngle, double[] distances, double[] directions) {
+        integrateSample(timestamp, gyroAngle, distances, directions);
+        publishPosition();
+    }
+    
+    /**
+     * Sets the {@link SensorLogWriter} which records every sample integrated by this odometry, so that it can
+     * later be replayed exactly with a {@link SensorLogReplay}. The odometry's complete state is logged first,
+     * and again whenever it changes other than by a sample, such as when the position is reset. The previous
+     * log, if any, is not closed.
+     * @param sensorLog The {@code SensorLogWriter}, or {@code null} to stop logging
+     */
+    public synchronized void setSensorLog (SensorLogWriter sensorLog) {
+        update();
+        this.sensorLog = sensorLog;
+        logState(SensorLogWriter.STATE_START);
+    }
+    
+    // Writes the odometry's complete state to the sensor log, if there is one
+    private void logState (int reason) {
+        if (sensorLog == null) return;
+        sensorLog.writeState(
+            reason,
+            timestamp,
+            gyroAngle,
+            gyroYawOffset,
+            getCurrentPosition(),
+            wheelDirection,
+            wheelDistances,
+            gyroEnabled,
+            gyroRealignRequired,
+            integrationMode,
+            slipFilter);
+    }
+    
+    // Restores the odometry's complete state from a sensor log. If the state was logged when logging
+    // started or when the position was reset, the history and any attached estimators are also reset
+    synchronized void restoreState (
+            boolean reset,
+            double timestamp,
+            double gyroAngle,
+            double gyroYawOffset,
+            Position position,
+            double wheelDirection,
+            double[] wheelDistances,
+            boolean gyroEnabled,
+            boolean gyroRealignRequired,
+            IntegrationMode integrationMode,
+            double slipAbsoluteTolerance,
+            double slipRelativeTolerance) {
+        this.timestamp = timestamp;
+        this.gyroAngle = gyroAngle;
+        this.gyroYawOffset = gyroYawOffset;
+        setCurrentPosition(position);
+        this.wheelDirection = wheelDirection;
+        System.arraycopy(wheelDistances, 0, this.wheelDistances, 0, this.wheelDistances.length);
+        this.gyroEnabled = gyroEnabled;
+        this.gyroRealignRequired = gyroRealignRequired;
+        this.integrationMode = integrationMode;
+        
+        // A NaN tolerance means there was no slip filter. The filter is only replaced if its tolerances changed
+        if (Double.isNaN(slipAbsoluteTolerance)) {
+            slipFilter = null;
+        } else if (slipFilter == null
+                || slipFilter.getAbsoluteTolerance() != slipAbsoluteTolerance
+                || slipFilter.getRelativeTolerance() != slipRelativeTolerance) {
+            slipFilter = new WheelSlipFilter(kinematics, slipAbsoluteTolerance, slipRelativeTolerance);
+        }
+        
+        if (reset) {
+            history.clear();
+            if (poseEstimator != null) poseEstimator.reset(timestamp, position);
+            if (particleFilter != null) particleFilter.reset(timestamp, position, 0, 0);
+            recordHistory();
+        }
+        publishPosition();
+    }
+    
+    // Creates a Position from the primitive position fields. This is only done when the position is given
+    // to something outside of the odometry, never while integrating a sample
+    private Position getCurrentPosition () {
+        return new Position(new Vector(positionX, positionY), positionDirection);
+    }
+    
+    // Sets the primitive position fields from a Position
+    private void setCurrentPosition (Position position) {
+        final Vector location = position.getLocation();
+        positionX = location.getX();
+        positionY = location.getY();
+        positionDirection = position.getDirection();
+    }
+    
+    // Reads every wheel's encoder distance and direction into sensorDistances and sensorDirections
+    private void readSensors () {
+        for (int i = 0; i < wheels.length; i ++) {
+            sensorDistances[i] = wheels[i].getEncoderDistanceSnapshot();
+            sensorDirections[i] = wheels[i].getDirectionSnapshot();
+        }
+    }
+    
+    // Integrates the movement of the wheels since the last sample
+    private void integrateSample (double timestamp, double gyroAngle, double[] distances, double[] directions) {
+        if (sensorLog != null) sensorLog.writeSample(timestamp, gyroAngle, distances, directions);
+        
+        // Get the robot-relative movement of the robot from the movement of every wheel
+        for (int i = 0; i < moduleDistances.length; i ++) {
+            moduleDistances[i] = distances[i] - wheelDistances[i];
+            wheelDistances[i] = distances[i];
+            if (directions[i] != cachedModuleDirections[i]) {
+                final double radians = Angles.degreesToRadians(directions[i]);
+                cachedModuleDirections[i] = directions[i];
+                moduleDirectionsX[i] = Angles.cos(radians);
+                moduleDirectionsY[i] = Angles.sin(radians);
+            }
+        }
+        if (slipFilter == null) kinematics.toChassisMovement(moduleDistances, moduleDirectionsX, moduleDirectionsY, chassisMovement);
+        else slipFilter.toChassisMovement(moduleDistances, moduleDirectionsX, moduleDirectionsY, chassisMovement);
+        wheelDirection += chassisMovement[2];
+        
+        // Realign the gyro with the current direction after it has been turned back on
+        if (gyroRealignRequired) {
+            gyroYawOffset = gyroAngle - positionDirection;
+            gyroRealignRequired = false;
+        }
+        
+        // The robot's new direction comes from the gyro, or from the wheels if the gyro is turned off
+        final double direction = gyroEnabled
+            ? gyroAngle - gyroYawOffset
+            : positionDirection + chassisMovement[2];
+        
+        final double heading;
+        double arcScale = 1;
+        if (integrationMode == IntegrationMode.ARC) {
+            // Following an arc which turns by some angle gives the same displacement as a straight line
+            // in the direction halfway through the turn, shortened by sin(turn/2) / (turn/2)
+            final double turn = Angles.wrapDegreesZeroCenter(direction - positionDirection);
+            final double halfTurn = Math.toRadians(turn) / 2;
+            arcScale = Math.abs(halfTurn) < 1e-6
+                ? 1 - halfTurn * halfTurn / 6
+                : Angles.sin(halfTurn) / halfTurn;
+            heading = Math.toRadians(positionDirection + turn / 2);
+        } else {
+            // Move in a straight line, with the movement taken at the robot's new direction
+            heading = Math.toRadians(direction);
+        }
+        
+        // Rotate the robot-relative movement clockwise by the heading to make it field-relative.
+        // The heading often doesn't change between updates, so its cosine and sine are cached
+        if (heading != cachedHeading) {
+            cachedHeading = heading;
+            headingCos = Angles.cos(heading);
+            headingSin = Angles.sin(heading);
+        }
+        final double cos = headingCos, sin = headingSin;
+        final double moveX = chassisMovement[0], moveY = chassisMovement[1];
+        
+        if (particleFilter != null) {
+            final double turn = Angles.wrapDegreesZeroCenter(direction - positionDirection);
+            particleFilter.predict(timestamp, moveX, moveY, turn, integrationMode);
+        }
+        
+        positionX += (moveX * cos + moveY * sin) * arcScale;
+        positionY += (moveY * cos - moveX * sin) * arcScale;
+        positionDirection = Angles.wrapDegrees(direction);
+        this.gyroAngle = gyroAngle;
+        this.timestamp = timestamp;
+        recordHistory();
+    }
+    
+    /**
+     * Sets whether or not the robot's direction is taken from the gyro. If the gyro is turned off, for
+     * example because it has disconnected, the robot's direction is instead estimated from the rotation
+     * measured by the wheels (see {@link #getWheelDirection()}). When the gyro is turned back on, it is
+     * realigned with the robot's current direction. The gyro can only be turned off if the module positions
+     * in the {@link SwerveKinematics} are measured in inches.
+     * @param gyroEnabled Whether or not to use the gyro
+     * @throws IllegalStateException If the gyro is turned off and the kinematics only give the robot's
+     * proportions (see {@link SwerveKinematics#hasMeasuredModulePositions()})
      */
-    public void update () {
-        // Get field-relative movement vectors for wheels
-        final Vector frontLeftMovement = getWheelMovement(frontLeftWheel, frontLeftDistance),
-            frontRightMovement = getWheelMovement(frontRightWheel, frontRightDistance),
-            rearLeftMovement = getWheelMovement(rearLeftWheel, rearLeftDistance),
-            rearRightMovement = getWheelMovement(rearRightWheel, rearRightDistance),
-            movement = frontLeftMovement.add(frontRightMovement).add(rearLeftMovement).add(rearRightMovement).scale(0.25);
+    public synchronized void setGyroEnabled (boolean gyroEnabled) {
+        if (!gyroEnabled && !kinematics.hasMeasuredModulePositions())
+            throw new IllegalStateException("the robot's direction can only be measured by the wheels if the module positions are measured");
         
-        // Get new location by adding the field-relative wheel movement. Direction is trivial
-        position = position.addMovementVector(movement).withDirection(getDirection());
+        update();
+        if (gyroEnabled && !this.gyroEnabled) gyroRealignRequired = true;
+        this.gyroEnabled = gyroEnabled;
+        logState(SensorLogWriter.STATE_SETTINGS);
+    }
+    
+    /**
+     * Gets the robot's direction estimated only from the rotation measured by the wheels since the last
+     * time the position was reset. This can be used to cross-check the gyro, and is used as the robot's
+     * direction if the gyro is turned off with {@link #setGyroEnabled(boolean)}. It is only meaningful if
+     * the module positions in the {@link SwerveKinematics} are measured in inches.
+     * @return The robot's direction according to the wheels, in degrees
+     * @throws IllegalStateException If the kinematics only give the robot's proportions (see
+     * {@link SwerveKinematics#hasMeasuredModulePositions()})
+     */
+    public synchronized double getWheelDirection () {
+        if (!kinematics.hasMeasuredModulePositions())
+            throw new IllegalStateException("the robot's direction can only be measured by the wheels if the module positions are measured");
+        return Angles.wrapDegrees(wheelDirection);
+    }
+    
+    /**
+     * Sets the way the movement measured between updates is integrated into the robot's position.
+     * The default is {@link IntegrationMode#CHORD}.
+     * @param integrationMode The {@link IntegrationMode} to use
+     */
+    public synchronized void setIntegrationMode (IntegrationMode integrationMode) {
+        this.integrationMode = integrationMode;
+        logState(SensorLogWriter.STATE_SETTINGS);
+    }
+    
+    /**
+     * Sets the {@link WheelSlipFilter} which rejects modules whose movement is inconsistent with the other
+     * modules, for example because they are slipping, before the movement is integrated into the robot's
+     * position. By default, there is no slip filter and every module is used.
+     * @param slipFilter The {@code WheelSlipFilter}, or {@code null} to use every module
+     */
+    public synchronized void setWheelSlipFilter (WheelSlipFilter slipFilter) {
+        if (slipFilter != null && slipFilter.getModuleCount() != kinematics.getModuleCount())
+            throw new IllegalArgumentException("slip filter should have the same number of modules as the odometry");
         
-        // Update wheel distances
-        updateWheelDistances();
+        update();
+        this.slipFilter = slipFilter;
+        logState(SensorLogWriter.STATE_SETTINGS);
+    }
+    
+    /**
+     * @return The {@link WheelSlipFilter} used by the odometry, or {@code null} if there is none
+     */
+    public synchronized WheelSlipFilter getWheelSlipFilter () {
+        return slipFilter;
     }
     
-    private double getDirection () {
-        return swerveDrive.getAbsoluteGyroAngle() - gyroYawOffset;
+    /**
+     * @return The {@link IntegrationMode} used to integrate movement into the robot's position
+     */
+    public synchronized IntegrationMode getIntegrationMode () {
+        return integrationMode;
     }
     
-    private void setGyroYawOffset (double newDirection) {
-        gyroYawOffset = swerveDrive.getAbsoluteGyroAngle() - newDirection;
+    // Adds the current position to the position history, and passes it to the pose estimator
+    private void recordHistory () {
+        history.add(timestamp, positionX, positionY, positionDirection);
+        if (poseEstimator != null) poseEstimator.addOdometry(timestamp, positionX, positionY, positionDirection);
     }
     
-    private void updateWheelDistances () {
-        frontLeftDistance = frontLeftWheel.getEncoderDistance();
-        frontRightDistance = frontRightWheel.getEncoderDistance();
-        rearLeftDistance = rearLeftWheel.getEncoderDistance();
-        rearRightDistance = rearRightWheel.getEncoderDistance();
+    // Publishes the current position for readers. Only the latest position is published, once per
+    // update, even though every sample integrated during the update goes into the history
+    private void publishPosition () {
+        publisher.publish(timestamp, positionX, positionY, positionDirection);
     }
     
     /**
      * Resets the robot's odometry to a given {@link Position}.
      * @param newPosition The new {@code Position} for the robot's odometry
      */
-    public void resetPosition (Position newPosition) {
+    public synchronized void resetPosition (Position newPosition) {
+        // Update wheel distances so there isn't a jump if it's been awhile since the last update
+        update();
+        
         // Sets the current robot's position to be the new position
-        position = newPosition;
+        setCurrentPosition(newPosition);
         
         // Sets the gyro yaw offset such that as we make new positions when the odometry is updated
         // the new position directions will match
-        setGyroYawOffset(newPosition.getDirection());
+        gyroYawOffset = gyroAngle - newPosition.getDirection();
+        gyroRealignRequired = false;
+        wheelDirection = newPosition.getDirection();
         
-        // Update wheel distances so there isn't a jump if it's been awhile since the last update
-        updateWheelDistances();
+        // Positions from before the reset are in a different frame, so they can't be interpolated with
+        history.clear();
+        if (poseEstimator != null) poseEstimator.reset(timestamp, newPosition);
+        if (particleFilter != null) particleFilter.reset(timestamp, newPosition, 0, 0);
+        recordHistory();
+        publishPosition();
+        logState(SensorLogWriter.STATE_RESET);
     }
     
     /**
-     * Gets the current {@link Position} of the robot on the field.
+     * Gets the latest published {@link Position} of the robot on the field. This does not update the
+     * odometry, and can be called from any thread without blocking.
      * @return The robot's {@code Position}
      */
     public Position getPosition () {
-        update(); // Just in case there it's been almost one roborio cycle since the last time the odometry was updated
-        return position;
+        return publisher.read().getPosition();
+    }
+    
+    /**
+     * Gets the latest published {@link Position} of the robot on the field, along with the time of the
+     * sensor readings it was calculated from. This does not update the odometry, and can be called from
+     * any thread without blocking.
+     * @return The robot's {@code TimestampedPosition}
+     */
+    public TimestampedPosition getTimestampedPosition () {
+        return publisher.read();
+    }
+    
+    /**
+     * Gets the version of the latest published position, which increases every time the odometry is
+     * updated or reset. Readers can compare versions to tell whether there is a new position.
+     * @return The version number
+     */
+    public long getPositionVersion () {
+        return publisher.getVersion();
+    }
+    
+    /**
+     * Gets the {@link Position} of the robot on the field at a given time in the past, interpolated
+     * between the recorded positions immediately before and after it. Only a limited number of past
+     * positions are kept, and positions from before the last call to {@link #resetPosition(Position)}
+     * are discarded. Times outside the recorded history give the oldest or newest recorded position.
+     * This does not update the odometry.
+     * @param timestamp The FPGA time, in seconds
+     * @return The robot's {@code Position} at {@code timestamp}
+     */
+    public synchronized Position getPositionAt (double timestamp) {
+        return history.getPositionAt(timestamp);
+    }
+    
+    /**
+     * Sets the {@link PoseEstimator} which fuses external measurements with this odometry. The estimator is
+     * reset to the current position, and is then given every position integrated by the odometry.
+     * @param poseEstimator The {@code PoseEstimator}, or {@code null} to stop updating the current estimator
+     */
+    public synchronized void setPoseEstimator (PoseEstimator poseEstimator) {
+        update();
+        this.poseEstimator = poseEstimator;
+        if (poseEstimator != null) poseEstimator.reset(timestamp, getCurrentPosition());
+    }
+    
+    /**
+     * Sets the {@link ParticleFilter} which is moved by this odometry. The particles are reset to the current
+     * position, and are then moved by the robot-relative movement and turning of every sample integrated by
+     * the odometry.
+     * @param particleFilter The {@code ParticleFilter}, or {@code null} to stop moving the current filter
+     */
+    public synchronized void setParticleFilter (ParticleFilter particleFilter) {
+        update();
+        this.particleFilter = particleFilter;
+        if (particleFilter != null) particleFilter.reset(timestamp, getCurrentPosition(), 0, 0);
     }
     
     /**
-     * Gets the movement of the wheel as a field-relative vector
+     * @return Whether or not the odometry is being updated on its own thread
+     * @see #startThread(double)
      */
-    private Vector getWheelMovement (AutoSwerveWheel wheel, double prevDistance) {
-        final double direction = getDirection() + wheel.getDirection();
-        final double magnitude = wheel.getEncoderDistance() - prevDistance;
-        return Vector.fromPolarDegrees(direction, magnitude);
+    public boolean isThreadRunning () {
+        return threadRunning;
     }
     
 }
\ No newline at end of file
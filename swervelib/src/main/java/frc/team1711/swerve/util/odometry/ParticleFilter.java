@@ -0,0 +1,542 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * A Monte Carlo localization engine which tracks many possible positions of the robot (particles) at once,
+ * so it can recover when the robot is bumped or its wheels slip, unlike a single estimate. Every particle
+ * is moved by the movement measured by {@link Odometry}, plus random noise, and is then weighted by how well
+ * it agrees with observations, such as vision measurements of the robot's position or measurements of the
+ * distance and bearing to a landmark. Particles are resampled by weight once too few of them carry most of
+ * the weight. To recover quickly when the robot is moved without its wheels measuring the movement, a small
+ * fraction of the particles are redrawn around every position observation (see {@link #setRecoveryFraction(double)}).
+ *
+ * <p>Particles are stored in primitive arrays and split into fixed chunks, which are processed in parallel
+ * by a dedicated {@link ForkJoinPool}. Each chunk has its own random number generator, so the chunks share
+ * no state while they are processed. With one thread, chunks are processed on the calling thread instead,
+ * which avoids handing work to another thread.</p>
+ *
+ * <p>The filter is moved by {@code Odometry} (see {@link Odometry#setParticleFilter(ParticleFilter)}).
+ * Observations can be added and estimates read from any thread.</p>
+ * @author Gabriel Seaver
+ */
+public class ParticleFilter implements AutoCloseable {
+    
+    // The number of chunks particles are split into per thread, so threads finish at similar times
+    private static final int CHUNKS_PER_THREAD = 4;
+    
+    private final int particleCount;
+    
+    // The noise added to every particle's movement, as a fraction of the movement
+    private final double translationNoise, directionNoise;
+    
+    // The fraction of particles redrawn around every position observation
+    private double recoveryFraction = 0.05;
+    
+    // The particles' positions, directions in degrees, and natural logarithms of their (unnormalized) weights.
+    // Resampling copies particles into the spare arrays, which are then swapped with the current arrays
+    private double[] xs, ys, directions;
+    private double[] spareXs, spareYs, spareDirections;
+    private final double[] logWeights;
+    
+    // Chunk i holds the particles from chunkStarts[i] up to chunkStarts[i + 1]
+    private final int[] chunkStarts;
+    private final long[] randomStates;
+    private final ChunkTask[] tasks;
+    private final ForkJoinPool pool;
+    private final RecursiveAction processAll;
+    
+    // The operation processed by the chunk tasks, and its inputs
+    private static final int PREDICT = 0, OBSERVE_POSITION = 1, OBSERVE_LANDMARK = 2, NORMALIZE = 3, ESTIMATE = 4;
+    private int operation;
+    private final double[] inputs = new double[8];
+    
+    // The partial sums found by each chunk: weight, x, y, direction cosine, direction sine, squared distance,
+    // squared weight, and maximum log weight
+    private static final int SUMS = 8;
+    private final double[] chunkSums;
+    
+    // The estimate is only found from the particles when it is read after the particles have changed
+    private boolean estimateStale = true;
+    private TimestampedPosition estimate;
+    private double spread;
+    private double timestamp;
+    private int resampleCount = 0;
+    
+    /**
+     * Creates a new {@code ParticleFilter}, with every particle at the origin.
+     * @param particleCount     The number of particles
+     * @param threads           The number of threads to process particles with, which is usually the
+     * number of processor cores
+     * @param translationNoise  The standard deviation of the noise added to each particle's movement, as a
+     * fraction of the distance moved
+     * @param directionNoise    The standard deviation of the noise added to each particle's turning, as a
+     * fraction of the angle turned
+     */
+    public ParticleFilter (int particleCount, int threads, double translationNoise, double directionNoise) {
+        if (particleCount <= 0) throw new IllegalArgumentException("there must be at least one particle");
+        if (threads <= 0) throw new IllegalArgumentException("there must be at least one thread");
+        if (translationNoise < 0 || directionNoise < 0) throw new IllegalArgumentException("noise cannot be negative");
+        
+        this.particleCount = particleCount;
+        this.translationNoise = translationNoise;
+        this.directionNoise = directionNoise;
+        
+        xs = new double[particleCount];
+        ys = new double[particleCount];
+        directions = new double[particleCount];
+        spareXs = new double[particleCount];
+        spareYs = new double[particleCount];
+        spareDirections = new double[particleCount];
+        logWeights = new double[particleCount];
+        
+        final int chunks = Math.min(particleCount, threads * CHUNKS_PER_THREAD);
+        chunkStarts = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i ++) chunkStarts[i] = (int)((long)particleCount * i / chunks);
+        
+        randomStates = new long[chunks];
+        for (int i = 0; i < chunks; i ++) randomStates[i] = 0x9E3779B97F4A7C15L * (i + 1);
+        
+        chunkSums = new double[chunks * SUMS];
+        tasks = new ChunkTask[chunks];
+        for (int i = 0; i < chunks; i ++) tasks[i] = new ChunkTask(i);
+        
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        processAll = new RecursiveAction() {
+            @Override
+            protected void compute () {
+                invokeAll(tasks);
+            }
+        };
+        
+        reset(0, new Position(Vector.ZERO, 0), 0, 0);
+    }
+    
+    /**
+     * Spreads every particle around a given position with normally distributed noise, and gives them
+     * equal weights. This is called by {@link Odometry} when it is reset.
+     * @param timestamp         The FPGA time of the reset, in seconds
+     * @param position          The robot's {@link Position}
+     * @param translationStdDev The standard deviation of the particles' x and y coordinates, in inches
+     * @param directionStdDev   The standard deviation of the particles' directions, in degrees
+     */
+    public synchronized void reset (double timestamp, Position position, double translationStdDev, double directionStdDev) {
+        final double x = position.getLocation().getX(), y = position.getLocation().getY();
+        for (int c = 0; c < tasks.length; c ++) {
+            for (int i = chunkStarts[c]; i < chunkStarts[c + 1]; i ++) {
+                xs[i] = x + nextGaussian(c) * translationStdDev;
+                ys[i] = y + nextGaussian(c) * translationStdDev;
+                directions[i] = Angles.wrapDegrees(position.getDirection() + nextGaussian(c) * directionStdDev);
+                logWeights[i] = 0;
+            }
+        }
+        
+        this.timestamp = timestamp;
+        estimateStale = true;
+    }
+    
+    /**
+     * Moves every particle by the movement measured by odometry, with noise, integrating the movement along
+     * an arc (see {@link IntegrationMode#ARC}).
+     * @param timestamp The FPGA time of the movement, in seconds
+     * @param moveX     The robot-relative movement to the right, in inches
+     * @param moveY     The robot-relative movement forwards, in inches
+     * @param turn      The clockwise turn, in degrees
+     * @see #predict(double, double, double, double, IntegrationMode)
+     */
+    public void predict (double timestamp, double moveX, double moveY, double turn) {
+        predict(timestamp, moveX, moveY, turn, IntegrationMode.ARC);
+    }
+    
+    /**
+     * Moves every particle by the movement measured by odometry, with noise, integrating the movement in the
+     * same way as {@link Odometry} does, so that particles without noise follow the odometry exactly. This is
+     * called by {@code Odometry} every time it integrates a sample.
+     * @param timestamp         The FPGA time of the movement, in seconds
+     * @param moveX             The robot-relative movement to the right, in inches
+     * @param moveY             The robot-relative movement forwards, in inches
+     * @param turn              The clockwise turn, in degrees
+     * @param integrationMode   The {@link IntegrationMode} used to integrate the movement
+     */
+    public synchronized void predict (double timestamp, double moveX, double moveY, double turn, IntegrationMode integrationMode) {
+        // The arc's shortening is found from the measured turn rather than each particle's noisy turn,
+        // which only differs by a tiny fraction and would otherwise need another sine for every particle
+        double arcScale = 1;
+        if (integrationMode == IntegrationMode.ARC) {
+            final double halfTurn = Math.toRadians(turn) / 2;
+            arcScale = Math.abs(halfTurn) < 1e-6
+                ? 1 - halfTurn * halfTurn / 6
+                : Angles.sin(halfTurn) / halfTurn;
+        }
+        
+        inputs[0] = moveX * arcScale;
+        inputs[1] = moveY * arcScale;
+        inputs[2] = turn;
+        inputs[3] = translationNoise * Vector.getMagnitude(moveX, moveY);
+        inputs[4] = directionNoise * Math.abs(turn);
+        inputs[5] = integrationMode == IntegrationMode.ARC ? 0.5 : 1;
+        process(PREDICT);
+        
+        this.timestamp = timestamp;
+        estimateStale = true;
+    }
+    
+    /**
+     * Weights the particles by an observation of the robot's position, such as a vision measurement.
+     * @param measurement       The observed {@link Position}
+     * @param translationStdDev The standard deviation of the observation's x and y coordinates, in inches
+     * @param directionStdDev   The standard deviation of the observation's direction, in degrees
+     */
+    public synchronized void observePosition (Position measurement, double translationStdDev, double directionStdDev) {
+        if (translationStdDev <= 0 || directionStdDev <= 0)
+            throw new IllegalArgumentException("observation standard deviations must be positive");
+        
+        inputs[0] = measurement.getLocation().getX();
+        inputs[1] = measurement.getLocation().getY();
+        inputs[2] = measurement.getDirection();
+        inputs[3] = 1 / (translationStdDev * translationStdDev);
+        inputs[4] = 1 / (directionStdDev * directionStdDev);
+        inputs[5] = translationStdDev;
+        inputs[6] = directionStdDev;
+        inputs[7] = recoveryFraction;
+        process(OBSERVE_POSITION);
+        resampleIfNeeded();
+    }
+    
+    /**
+     * Sets the fraction of particles which are redrawn around every position observation, according to the
+     * observation's standard deviations, before the particles are weighted. A larger fraction recovers more
+     * quickly when the robot is bumped, but lets noisy observations move the estimate more. The default is 0.05.
+     * @param recoveryFraction The fraction of particles to redraw, on the interval [0, 1]
+     */
+    public synchronized void setRecoveryFraction (double recoveryFraction) {
+        if (recoveryFraction < 0 || recoveryFraction > 1)
+            throw new IllegalArgumentException("recovery fraction must be on the interval [0, 1]");
+        this.recoveryFraction = recoveryFraction;
+    }
+    
+    /**
+     * Weights the particles by an observation of a landmark at a known location on the field.
+     * @param landmark          The location of the landmark on the field
+     * @param distance          The observed distance from the robot to the landmark, in inches
+     * @param bearing           The observed direction of the landmark relative to the robot, in degrees,
+     * where zero is directly forwards and an increase is further clockwise
+     * @param distanceStdDev    The standard deviation of the observed distance, in inches
+     * @param bearingStdDev     The standard deviation of the observed bearing, in degrees
+     */
+    public synchronized void observeLandmark (Vector landmark, double distance, double bearing, double distanceStdDev, double bearingStdDev) {
+        if (distanceStdDev <= 0 || bearingStdDev <= 0)
+            throw new IllegalArgumentException("observation standard deviations must be positive");
+        
+        inputs[0] = landmark.getX();
+        inputs[1] = landmark.getY();
+        inputs[2] = distance;
+        inputs[3] = bearing;
+        inputs[4] = 1 / (distanceStdDev * distanceStdDev);
+        inputs[5] = 1 / (bearingStdDev * bearingStdDev);
+        process(OBSERVE_LANDMARK);
+        resampleIfNeeded();
+    }
+    
+    // Normalizes weights, and resamples the particles if the effective number of particles has dropped
+    // below half of all particles
+    private void resampleIfNeeded () {
+        // Find the maximum log weight, which each chunk found while it was observing, then subtract it from
+        // every log weight so the largest weight is 1. Normalizing also finds the sums for the estimate
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < tasks.length; c ++) maxLogWeight = Math.max(maxLogWeight, chunkSums[c * SUMS + 7]);
+        inputs[0] = maxLogWeight;
+        process(NORMALIZE);
+        publishEstimate();
+        
+        // Effective number of particles = (sum of weights)^2 / (sum of squared weights)
+        double weight = 0, squaredWeight = 0;
+        for (int c = 0; c < tasks.length; c ++) {
+            weight += chunkSums[c * SUMS];
+            squaredWeight += chunkSums[c * SUMS + 6];
+        }
+        if (weight * weight < squaredWeight * particleCount / 2) resample(weight);
+    }
+    
+    // Systematic resampling: particles are picked at evenly spaced points along the cumulative weights,
+    // which takes O(n) time and keeps the particles' relative weights as closely as possible
+    private void resample (double totalWeight) {
+        final double step = totalWeight / particleCount;
+        double point = nextUniform(0) * step;
+        double cumulative = Math.exp(logWeights[0]);
+        int source = 0;
+        for (int i = 0; i < particleCount; i ++) {
+            while (point > cumulative && source < particleCount - 1) {
+                source ++;
+                cumulative += Math.exp(logWeights[source]);
+            }
+            spareXs[i] = xs[source];
+            spareYs[i] = ys[source];
+            spareDirections[i] = directions[source];
+            point += step;
+        }
+        
+        double[] swap = xs; xs = spareXs; spareXs = swap;
+        swap = ys; ys = spareYs; spareYs = swap;
+        swap = directions; directions = spareDirections; spareDirections = swap;
+        for (int i = 0; i < particleCount; i ++) logWeights[i] = 0;
+        
+        resampleCount ++;
+        estimateStale = true;
+    }
+    
+    // Finds the estimate from the partial sums of every chunk: the weighted mean position and the spread of
+    // the particles
+    private void publishEstimate () {
+        double weight = 0, x = 0, y = 0, cos = 0, sin = 0;
+        for (int c = 0; c < tasks.length; c ++) {
+            final int s = c * SUMS;
+            weight += chunkSums[s];
+            x += chunkSums[s + 1];
+            y += chunkSums[s + 2];
+            cos += chunkSums[s + 3];
+            sin += chunkSums[s + 4];
+        }
+        
+        final double estimateX = x / weight, estimateY = y / weight;
+        final double estimateDirection = Angles.wrapDegrees(Math.toDegrees(Math.atan2(sin, cos)));
+        
+        // The spread is the weighted root mean square distance of the particles from the estimate,
+        // found from the weighted mean squared distance from the origin
+        double squaredDistance = 0;
+        for (int c = 0; c < tasks.length; c ++) squaredDistance += chunkSums[c * SUMS + 5];
+        spread = Math.sqrt(Math.max(0, squaredDistance / weight - estimateX * estimateX - estimateY * estimateY));
+        
+        estimate = new TimestampedPosition(new Position(new Vector(estimateX, estimateY), estimateDirection), timestamp);
+        estimateStale = false;
+    }
+    
+    // Finds the estimate if the particles have changed since it was last found
+    private void updateEstimate () {
+        if (!estimateStale) return;
+        process(ESTIMATE);
+        publishEstimate();
+    }
+    
+    // Runs an operation over every chunk of particles in parallel
+    private void process (int operation) {
+        this.operation = operation;
+        if (pool == null) {
+            for (ChunkTask task : tasks) task.compute();
+            return;
+        }
+        
+        processAll.reinitialize();
+        for (ChunkTask task : tasks) task.reinitialize();
+        pool.invoke(processAll);
+    }
+    
+    // Processes one chunk of particles for the current operation
+    private class ChunkTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int chunk;
+        
+        private ChunkTask (int chunk) {
+            this.chunk = chunk;
+        }
+        
+        @Override
+        protected void compute () {
+            final int start = chunkStarts[chunk], end = chunkStarts[chunk + 1];
+            switch (operation) {
+                case PREDICT: predictChunk(chunk, start, end); break;
+                case OBSERVE_POSITION: observePositionChunk(chunk, start, end); break;
+                case OBSERVE_LANDMARK: observeLandmarkChunk(chunk, start, end); break;
+                case NORMALIZE: normalizeChunk(chunk, start, end); break;
+                case ESTIMATE: estimateChunk(chunk, start, end); break;
+            }
+        }
+    
+    }
+    
+    // Moves each particle in a chunk by the odometry movement with noise, taken at the particle's new direction
+    // for chord integration, or at the direction halfway through the particle's turn for arc integration
+    private void predictChunk (int chunk, int start, int end) {
+        final double moveX = inputs[0], moveY = inputs[1], turn = inputs[2];
+        final double translationStdDev = inputs[3], directionStdDev = inputs[4], headingFraction = inputs[5];
+        
+        for (int i = start; i < end; i ++) {
+            final double particleTurn = turn + nextGaussian(chunk) * directionStdDev;
+            final double direction = directions[i] + particleTurn;
+            final double x = moveX + nextGaussian(chunk) * translationStdDev;
+            final double y = moveY + nextGaussian(chunk) * translationStdDev;
+            
+            // Rotate the robot-relative movement clockwise by the particle's heading during the movement
+            final double radians = Math.toRadians(directions[i] + particleTurn * headingFraction);
+            final double cos = Angles.cos(radians), sin = Angles.sin(radians);
+            xs[i] += x * cos + y * sin;
+            ys[i] += y * cos - x * sin;
+            directions[i] = Angles.wrapDegrees(direction);
+        }
+    }
+    
+    // Redraws the recovery fraction of a chunk's particles around a position observation, then weights each
+    // particle in the chunk by the likelihood of the observation, finding the chunk's maximum log weight
+    private void observePositionChunk (int chunk, int start, int end) {
+        final double x = inputs[0], y = inputs[1], direction = inputs[2];
+        final double translationPrecision = inputs[3], directionPrecision = inputs[4];
+        final double translationStdDev = inputs[5], directionStdDev = inputs[6];
+        
+        // Particles are in no particular order, so the first particles of the chunk are redrawn. Redrawn particles
+        // are given the mean log weight of the chunk's other particles, so they start out no more or less likely
+        // than a typical particle instead of keeping the weights of the particles they replace
+        final int recoveryEnd = start + (int)((end - start) * inputs[7]);
+        double logWeightSum = 0;
+        for (int i = recoveryEnd; i < end; i ++) logWeightSum += logWeights[i];
+        final double meanLogWeight = recoveryEnd < end ? logWeightSum / (end - recoveryEnd) : 0;
+        for (int i = start; i < recoveryEnd; i ++) {
+            xs[i] = x + nextGaussian(chunk) * translationStdDev;
+            ys[i] = y + nextGaussian(chunk) * translationStdDev;
+            directions[i] = Angles.wrapDegrees(direction + nextGaussian(chunk) * directionStdDev);
+            logWeights[i] = meanLogWeight;
+        }
+        
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i ++) {
+            final double errorX = xs[i] - x, errorY = ys[i] - y;
+            final double errorDirection = Angles.wrapDegreesZeroCenter(directions[i] - direction);
+            logWeights[i] -= 0.5 * ((errorX * errorX + errorY * errorY) * translationPrecision
+                + errorDirection * errorDirection * directionPrecision);
+            maxLogWeight = Math.max(maxLogWeight, logWeights[i]);
+        }
+        chunkSums[chunk * SUMS + 7] = maxLogWeight;
+    }
+    
+    // Weights each particle in a chunk by the likelihood of a landmark observation, finding the chunk's
+    // maximum log weight
+    private void observeLandmarkChunk (int chunk, int start, int end) {
+        final double landmarkX = inputs[0], landmarkY = inputs[1], distance = inputs[2], bearing = inputs[3];
+        final double distancePrecision = inputs[4], bearingPrecision = inputs[5];
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+        
+        for (int i = start; i < end; i ++) {
+            final double toX = landmarkX - xs[i], toY = landmarkY - ys[i];
+            final double expectedDistance = Vector.getMagnitude(toX, toY);
+            final double expectedBearing = Vector.getRotationDegrees(toX, toY) - directions[i];
+            final double errorDistance = expectedDistance - distance;
+            final double errorBearing = Angles.wrapDegreesZeroCenter(expectedBearing - bearing);
+            logWeights[i] -= 0.5 * (errorDistance * errorDistance * distancePrecision
+                + errorBearing * errorBearing * bearingPrecision);
+            maxLogWeight = Math.max(maxLogWeight, logWeights[i]);
+        }
+        chunkSums[chunk * SUMS + 7] = maxLogWeight;
+    }
+    
+    // Subtracts the maximum log weight from the log weight of each particle in a chunk, then finds
+    // the chunk's partial sums for the estimate
+    private void normalizeChunk (int chunk, int start, int end) {
+        final double maxLogWeight = inputs[0];
+        for (int i = start; i < end; i ++) logWeights[i] -= maxLogWeight;
+        estimateChunk(chunk, start, end);
+    }
+    
+    // Finds the partial sums used for the estimate over the particles in a chunk
+    private void estimateChunk (int chunk, int start, int end) {
+        double weight = 0, x = 0, y = 0, cos = 0, sin = 0, squaredDistance = 0, squaredWeight = 0;
+        double maxLogWeight = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i ++) {
+            final double w = Math.exp(logWeights[i]);
+            final double radians = Math.toRadians(directions[i]);
+            weight += w;
+            x += w * xs[i];
+            y += w * ys[i];
+            cos += w * Math.cos(radians);
+            sin += w * Math.sin(radians);
+            squaredDistance += w * (xs[i] * xs[i] + ys[i] * ys[i]);
+            squaredWeight += w * w;
+            maxLogWeight = Math.max(maxLogWeight, logWeights[i]);
+        }
+        
+        final int s = chunk * SUMS;
+        chunkSums[s] = weight;
+        chunkSums[s + 1] = x;
+        chunkSums[s + 2] = y;
+        chunkSums[s + 3] = cos;
+        chunkSums[s + 4] = sin;
+        chunkSums[s + 5] = squaredDistance;
+        chunkSums[s + 6] = squaredWeight;
+        chunkSums[s + 7] = maxLogWeight;
+    }
+    
+    // Gets a uniformly distributed random number in [0, 1) from a chunk's xorshift64* generator
+    private double nextUniform (int chunk) {
+        long state = randomStates[chunk];
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        randomStates[chunk] = state;
+        return ((state * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+    }
+    
+    // Gets an approximately normally distributed random number with a mean of 0 and standard deviation of 1,
+    // as the scaled sum of four uniform random numbers. Its tails are cut off at about 3.46 standard deviations
+    private double nextGaussian (int chunk) {
+        final double sum = nextUniform(chunk) + nextUniform(chunk) + nextUniform(chunk) + nextUniform(chunk);
+        return (sum - 2) * 1.7320508075688772;
+    }
+    
+    /**
+     * Gets the weighted mean {@link Position} of the particles. This can be called from any thread.
+     * @return The estimated {@code Position}
+     */
+    public Position getEstimatedPosition () {
+        return getTimestampedEstimatedPosition().getPosition();
+    }
+    
+    /**
+     * Gets the weighted mean {@link Position} of the particles, along with the time of the last movement.
+     * This can be called from any thread.
+     * @return The estimated {@code TimestampedPosition}
+     */
+    public synchronized TimestampedPosition getTimestampedEstimatedPosition () {
+        updateEstimate();
+        return estimate;
+    }
+    
+    /**
+     * Gets how spread out the particles are, as the weighted root mean square distance of the particles
+     * from the estimated position. A large spread means the filter is unsure where the robot is.
+     * @return The spread, in inches
+     */
+    public synchronized double getSpread () {
+        updateEstimate();
+        return spread;
+    }
+    
+    /**
+     * @return The number of particles
+     */
+    public int getParticleCount () {
+        return particleCount;
+    }
+    
+    /**
+     * @return The number of times the particles have been resampled
+     */
+    public synchronized int getResampleCount () {
+        return resampleCount;
+    }
+    
+    /**
+     * Shuts down the threads used to process particles.
+     */
+    @Override
+    public void close () {
+        if (pool != null) pool.shutdown();
+    }
+    
+}
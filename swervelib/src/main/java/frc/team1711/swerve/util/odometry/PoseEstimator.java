@@ -0,0 +1,408 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Angles;
+
+/**
+ * A Kalman filter which fuses the positions measured by {@link Odometry} with timestamped external
+ * measurements of the robot's {@link Position}, such as vision measurements from AprilTags. External
+ * measurements usually arrive some time after they were taken, so the estimator keeps a history of
+ * odometry updates, along with the measurements applied at each of them. When a measurement arrives, the
+ * estimator rewinds to the time it was taken, corrects the estimate there, and replays every later odometry
+ * update on top of the corrected estimate, applying every later measurement again. Measurements can
+ * therefore arrive in any order, and give the same estimate as if they had arrived in the order they
+ * were taken.
+ *
+ * <p>The filter's state is the robot's x coordinate, y coordinate, and direction, and every matrix is a
+ * fixed 3x3 matrix stored in primitive fields and arrays, so nothing is allocated by updates or
+ * measurements. Uncertainty in the odometry builds up steadily over time, and is the same in the x and
+ * y directions.</p>
+ *
+ * <p>The estimator is updated by {@code Odometry} (see {@link Odometry#setPoseEstimator(PoseEstimator)}).
+ * Measurements can be added and the estimated position read from any thread.</p>
+ * @author Gabriel Seaver
+ */
+public class PoseEstimator {
+    
+    // The number of odometry updates kept for rewinding to late measurements
+    private static final int HISTORY_CAPACITY = 256;
+    private static final int MASK = HISTORY_CAPACITY - 1;
+    
+    // The variance of the odometry error which builds up every second
+    private final double translationVariance, directionVariance;
+    
+    // The default variances of measurements
+    private final double measurementXVariance, measurementYVariance, measurementDirectionVariance;
+    
+    // For each odometry update: its timestamp, the position measured by odometry, the estimated
+    // position, and the upper triangle of the estimate's covariance matrix
+    private final double[] timestamps = new double[HISTORY_CAPACITY];
+    private final double[] odometryXs = new double[HISTORY_CAPACITY], odometryYs = new double[HISTORY_CAPACITY];
+    private final double[] odometryDirections = new double[HISTORY_CAPACITY];
+    private final double[] estimateXs = new double[HISTORY_CAPACITY], estimateYs = new double[HISTORY_CAPACITY];
+    private final double[] estimateDirections = new double[HISTORY_CAPACITY];
+    private final double[] covariances = new double[HISTORY_CAPACITY * 6];
+    
+    // For each odometry update: the estimate and its covariance before any measurements were applied
+    private final double[] priorXs = new double[HISTORY_CAPACITY], priorYs = new double[HISTORY_CAPACITY];
+    private final double[] priorDirections = new double[HISTORY_CAPACITY];
+    private final double[] priorCovariances = new double[HISTORY_CAPACITY * 6];
+    
+    // For each odometry update: whether any measurements were applied there, and if so, every measurement
+    // applied there fused into one, with the variances of its x, y, and direction
+    private final boolean[] measured = new boolean[HISTORY_CAPACITY];
+    private final double[] measurementXs = new double[HISTORY_CAPACITY], measurementYs = new double[HISTORY_CAPACITY];
+    private final double[] measurementDirections = new double[HISTORY_CAPACITY];
+    private final double[] measurementVariances = new double[HISTORY_CAPACITY * 3];
+    
+    // The physical index of the oldest update, and the number of updates stored
+    private int oldest = 0, size = 0;
+    
+    // The cosine and sine of the last angle that odometry movement was rotated by
+    private double cachedRotation = Double.NaN, rotationCos, rotationSin;
+    
+    private int acceptedMeasurements = 0, rejectedMeasurements = 0;
+    
+    private final PositionPublisher publisher = new PositionPublisher();
+    
+    /**
+     * Creates a new {@code PoseEstimator}. Standard deviations are given in inches and degrees.
+     * @param translationStdDev             The standard deviation of the error in the odometry's x and y
+     * coordinates which builds up over one second
+     * @param directionStdDev               The standard deviation of the error in the odometry's direction
+     * which builds up over one second
+     * @param measurementTranslationStdDev  The default standard deviation of the x and y coordinates of
+     * external measurements
+     * @param measurementDirectionStdDev    The default standard deviation of the direction of external
+     * measurements
+     */
+    public PoseEstimator (
+            double translationStdDev,
+            double directionStdDev,
+            double measurementTranslationStdDev,
+            double measurementDirectionStdDev) {
+        if (translationStdDev < 0 || directionStdDev < 0)
+            throw new IllegalArgumentException("standard deviations cannot be negative");
+        if (measurementTranslationStdDev <= 0 || measurementDirectionStdDev <= 0)
+            throw new IllegalArgumentException("measurement standard deviations must be positive");
+        
+        translationVariance = translationStdDev * translationStdDev;
+        directionVariance = directionStdDev * directionStdDev;
+        measurementXVariance = measurementTranslationStdDev * measurementTranslationStdDev;
+        measurementYVariance = measurementXVariance;
+        measurementDirectionVariance = measurementDirectionStdDev * measurementDirectionStdDev;
+    }
+    
+    /**
+     * Resets the estimator such that both the odometry and the estimate are at a given position, with no
+     * uncertainty. Every update before the reset is discarded. This is called by {@link Odometry} when it
+     * is reset.
+     * @param timestamp The FPGA time of the reset, in seconds
+     * @param position  The robot's {@code Position}
+     */
+    public synchronized void reset (double timestamp, Position position) {
+        oldest = 0;
+        size = 1;
+        
+        final double x = position.getLocation().getX(), y = position.getLocation().getY();
+        timestamps[0] = timestamp;
+        odometryXs[0] = x;
+        odometryYs[0] = y;
+        odometryDirections[0] = position.getDirection();
+        estimateXs[0] = x;
+        estimateYs[0] = y;
+        estimateDirections[0] = position.getDirection();
+        for (int i = 0; i < 6; i ++) covariances[i] = 0;
+        measured[0] = false;
+        savePrior(0);
+        
+        publish(0);
+    }
+    
+    /**
+     * Adds a position measured by odometry, moving the estimate by the same amount the odometry moved
+     * since its last update. This is called by {@link Odometry} every time it integrates a sample.
+     * Updates must be added in order of increasing timestamp, and updates which are not newer than the
+     * last update are ignored.
+     * @param timestamp The FPGA time of the update, in seconds
+     * @param x         The x coordinate measured by odometry
+     * @param y         The y coordinate measured by odometry
+     * @param direction The direction measured by odometry, in degrees
+     */
+    public synchronized void addOdometry (double timestamp, double x, double y, double direction) {
+        if (size == 0) return;
+        
+        final int previous = (oldest + size - 1) & MASK;
+        if (timestamp <= timestamps[previous]) return;
+        
+        final int index = (previous + 1) & MASK;
+        if (size < HISTORY_CAPACITY) size ++;
+        else oldest = (oldest + 1) & MASK;
+        
+        timestamps[index] = timestamp;
+        odometryXs[index] = x;
+        odometryYs[index] = y;
+        odometryDirections[index] = direction;
+        measured[index] = false;
+        
+        predict(previous, index);
+        publish(index);
+    }
+    
+    // Sets the estimate at an index to the estimate at the previous index moved by the odometry's movement
+    // between them, rotated into the estimate's frame, and saves it as the prior at the index
+    private void predict (int previous, int index) {
+        setRotation(estimateDirections[previous] - odometryDirections[previous]);
+        final double moveX = odometryXs[index] - odometryXs[previous], moveY = odometryYs[index] - odometryYs[previous];
+        estimateXs[index] = estimateXs[previous] + moveX * rotationCos + moveY * rotationSin;
+        estimateYs[index] = estimateYs[previous] + moveY * rotationCos - moveX * rotationSin;
+        estimateDirections[index] = estimateDirections[previous]
+            + Angles.wrapDegreesZeroCenter(odometryDirections[index] - odometryDirections[previous]);
+        
+        addProcessNoise(previous, index, timestamps[index] - timestamps[previous]);
+        savePrior(index);
+    }
+    
+    // Saves the estimate and covariance at an index as its prior
+    private void savePrior (int index) {
+        priorXs[index] = estimateXs[index];
+        priorYs[index] = estimateYs[index];
+        priorDirections[index] = estimateDirections[index];
+        System.arraycopy(covariances, index * 6, priorCovariances, index * 6, 6);
+    }
+    
+    // Restores the estimate and covariance at an index to its prior
+    private void restorePrior (int index) {
+        estimateXs[index] = priorXs[index];
+        estimateYs[index] = priorYs[index];
+        estimateDirections[index] = priorDirections[index];
+        System.arraycopy(priorCovariances, index * 6, covariances, index * 6, 6);
+    }
+    
+    /**
+     * Adds an external measurement of the robot's position, using the default measurement standard deviations.
+     * @param measurement   The measured {@link Position}
+     * @param timestamp     The FPGA time at which the measurement was taken, in seconds
+     * @return              Whether or not the measurement was used. Measurements older than the estimator's
+     * history of odometry updates are ignored.
+     * @see #addMeasurement(Position, double, double, double, double)
+     */
+    public boolean addMeasurement (Position measurement, double timestamp) {
+        return addMeasurement(
+            measurement,
+            timestamp,
+            Math.sqrt(measurementXVariance),
+            Math.sqrt(measurementYVariance),
+            Math.sqrt(measurementDirectionVariance));
+    }
+    
+    /**
+     * Adds an external measurement of the robot's position. The estimate is corrected at the last odometry
+     * update at or before {@code timestamp}, and every later odometry update is replayed on top of it, along
+     * with every measurement which was already applied at a later update.
+     * @param measurement       The measured {@link Position}
+     * @param timestamp         The FPGA time at which the measurement was taken, in seconds
+     * @param xStdDev           The standard deviation of the measurement's x coordinate, in inches
+     * @param yStdDev           The standard deviation of the measurement's y coordinate, in inches
+     * @param directionStdDev   The standard deviation of the measurement's direction, in degrees
+     * @return                  Whether or not the measurement was used. Measurements older than the estimator's
+     * history of odometry updates are ignored.
+     */
+    public synchronized boolean addMeasurement (
+            Position measurement,
+            double timestamp,
+            double xStdDev,
+            double yStdDev,
+            double directionStdDev) {
+        if (xStdDev <= 0 || yStdDev <= 0 || directionStdDev <= 0)
+            throw new IllegalArgumentException("measurement standard deviations must be positive");
+        
+        if (size == 0 || timestamp < timestamps[oldest]) {
+            rejectedMeasurements ++;
+            return false;
+        }
+        
+        // Binary search for the last update at or before the measurement, using logical indices
+        // from 0 (oldest) to size - 1 (newest)
+        int low = 0, high = size;
+        while (high - low > 1) {
+            final int mid = (low + high) >>> 1;
+            if (timestamps[(oldest + mid) & MASK] <= timestamp) low = mid;
+            else high = mid;
+        }
+        final int corrected = (oldest + low) & MASK;
+        
+        addToMeasurement(
+            corrected,
+            measurement.getLocation().getX(),
+            measurement.getLocation().getY(),
+            measurement.getDirection(),
+            xStdDev * xStdDev,
+            yStdDev * yStdDev,
+            directionStdDev * directionStdDev);
+        
+        // Correct the prior at the measured update with every measurement there, then replay every later
+        // update, applying the measurements already made at them again
+        restorePrior(corrected);
+        correct(corrected);
+        for (int i = low + 1; i < size; i ++) {
+            final int index = (oldest + i) & MASK;
+            predict((index - 1) & MASK, index);
+            if (measured[index]) correct(index);
+        }
+        
+        acceptedMeasurements ++;
+        publish((oldest + size - 1) & MASK);
+        return true;
+    }
+    
+    // Fuses a measurement into the measurement stored at an index. Measurements of the same state with
+    // independent errors combine into a single measurement whose variance is the inverse of the sum of
+    // their inverse variances, and whose value is their average weighted by inverse variance
+    private void addToMeasurement (int index, double x, double y, double direction, double xVariance, double yVariance, double directionVariance) {
+        final int v = index * 3;
+        if (!measured[index]) {
+            measured[index] = true;
+            measurementXs[index] = x;
+            measurementYs[index] = y;
+            measurementDirections[index] = direction;
+            measurementVariances[v] = xVariance;
+            measurementVariances[v + 1] = yVariance;
+            measurementVariances[v + 2] = directionVariance;
+            return;
+        }
+        
+        final double
+            xWeight = measurementVariances[v] / (measurementVariances[v] + xVariance),
+            yWeight = measurementVariances[v + 1] / (measurementVariances[v + 1] + yVariance),
+            directionWeight = measurementVariances[v + 2] / (measurementVariances[v + 2] + directionVariance);
+        measurementXs[index] += xWeight * (x - measurementXs[index]);
+        measurementYs[index] += yWeight * (y - measurementYs[index]);
+        measurementDirections[index] += directionWeight * Angles.wrapDegreesZeroCenter(direction - measurementDirections[index]);
+        measurementVariances[v] = xVariance * xWeight;
+        measurementVariances[v + 1] = yVariance * yWeight;
+        measurementVariances[v + 2] = directionVariance * directionWeight;
+    }
+    
+    // Applies the Kalman filter's correction step with the measurement stored at an index to the estimate
+    // there, where the measurement matrix is the identity matrix and the measurement covariance is diagonal
+    private void correct (int index) {
+        final int v = index * 3;
+        final double
+            x = measurementXs[index],
+            y = measurementYs[index],
+            direction = measurementDirections[index],
+            xVariance = measurementVariances[v],
+            yVariance = measurementVariances[v + 1],
+            directionVariance = measurementVariances[v + 2];
+        final int c = index * 6;
+        final double
+            p00 = covariances[c], p01 = covariances[c + 1], p02 = covariances[c + 2],
+            p11 = covariances[c + 3], p12 = covariances[c + 4], p22 = covariances[c + 5];
+        
+        // S = P + R, inverted by cofactors
+        final double s00 = p00 + xVariance, s11 = p11 + yVariance, s22 = p22 + directionVariance;
+        final double
+            c00 = s11 * s22 - p12 * p12,
+            c01 = p02 * p12 - p01 * s22,
+            c02 = p01 * p12 - p02 * s11,
+            c11 = s00 * s22 - p02 * p02,
+            c12 = p01 * p02 - s00 * p12,
+            c22 = s00 * s11 - p01 * p01;
+        final double inverseDet = 1 / (s00 * c00 + p01 * c01 + p02 * c02);
+        final double
+            i00 = c00 * inverseDet, i01 = c01 * inverseDet, i02 = c02 * inverseDet,
+            i11 = c11 * inverseDet, i12 = c12 * inverseDet, i22 = c22 * inverseDet;
+        
+        // K = P S^-1
+        final double
+            k00 = p00 * i00 + p01 * i01 + p02 * i02,
+            k01 = p00 * i01 + p01 * i11 + p02 * i12,
+            k02 = p00 * i02 + p01 * i12 + p02 * i22,
+            k10 = p01 * i00 + p11 * i01 + p12 * i02,
+            k11 = p01 * i01 + p11 * i11 + p12 * i12,
+            k12 = p01 * i02 + p11 * i12 + p12 * i22,
+            k20 = p02 * i00 + p12 * i01 + p22 * i02,
+            k21 = p02 * i01 + p12 * i11 + p22 * i12,
+            k22 = p02 * i02 + p12 * i12 + p22 * i22;
+        
+        // Move the estimate towards the measurement, turning the shortest way
+        final double
+            errorX = x - estimateXs[index],
+            errorY = y - estimateYs[index],
+            errorDirection = Angles.wrapDegreesZeroCenter(direction - estimateDirections[index]);
+        estimateXs[index] += k00 * errorX + k01 * errorY + k02 * errorDirection;
+        estimateYs[index] += k10 * errorX + k11 * errorY + k12 * errorDirection;
+        estimateDirections[index] += k20 * errorX + k21 * errorY + k22 * errorDirection;
+        
+        // P = (I - K) P, keeping only the upper triangle since P is symmetric
+        covariances[c] = p00 - (k00 * p00 + k01 * p01 + k02 * p02);
+        covariances[c + 1] = p01 - (k00 * p01 + k01 * p11 + k02 * p12);
+        covariances[c + 2] = p02 - (k00 * p02 + k01 * p12 + k02 * p22);
+        covariances[c + 3] = p11 - (k10 * p01 + k11 * p11 + k12 * p12);
+        covariances[c + 4] = p12 - (k10 * p02 + k11 * p12 + k12 * p22);
+        covariances[c + 5] = p22 - (k20 * p02 + k21 * p12 + k22 * p22);
+    }
+    
+    // Sets the covariance at an index to the covariance at another index, plus the odometry error
+    // which builds up over some time
+    private void addProcessNoise (int from, int to, double time) {
+        final int f = from * 6, t = to * 6;
+        final double translationNoise = translationVariance * time;
+        covariances[t] = covariances[f] + translationNoise;
+        covariances[t + 1] = covariances[f + 1];
+        covariances[t + 2] = covariances[f + 2];
+        covariances[t + 3] = covariances[f + 3] + translationNoise;
+        covariances[t + 4] = covariances[f + 4];
+        covariances[t + 5] = covariances[f + 5] + directionVariance * time;
+    }
+    
+    // Sets rotationCos and rotationSin for rotating odometry movement clockwise by some angle in degrees
+    private void setRotation (double degrees) {
+        if (degrees != cachedRotation) {
+            cachedRotation = degrees;
+            final double radians = Math.toRadians(degrees);
+            rotationCos = Math.cos(radians);
+            rotationSin = Math.sin(radians);
+        }
+    }
+    
+    // Publishes the estimate at an index for readers
+    private void publish (int index) {
+        publisher.publish(timestamps[index], estimateXs[index], estimateYs[index], Angles.wrapDegrees(estimateDirections[index]));
+    }
+    
+    /**
+     * Gets the latest estimated {@link Position} of the robot. This can be called from any thread without blocking.
+     * @return The estimated {@code Position}
+     */
+    public Position getEstimatedPosition () {
+        return publisher.read().getPosition();
+    }
+    
+    /**
+     * Gets the latest estimated {@link Position} of the robot, along with the time of the odometry update it
+     * was estimated at. This can be called from any thread without blocking.
+     * @return The estimated {@code TimestampedPosition}
+     */
+    public TimestampedPosition getTimestampedEstimatedPosition () {
+        return publisher.read();
+    }
+    
+    /**
+     * @return The number of external measurements which were used
+     */
+    public synchronized int getAcceptedMeasurementCount () {
+        return acceptedMeasurements;
+    }
+    
+    /**
+     * @return The number of external measurements which were ignored because they were too old
+     */
+    public synchronized int getRejectedMeasurementCount () {
+        return rejectedMeasurements;
+    }
+    
+}
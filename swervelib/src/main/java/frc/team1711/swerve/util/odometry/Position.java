@@ -4,6 +4,7 @@
 package frc.team1711.swerve.util.odometry;
 
 import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Rotation;
 import frc.team1711.swerve.util.Vector;
 
 /**
@@ -16,6 +17,10 @@ public class Position {
     private final Vector location;
     private final double direction;
     
+    // The direction as a Rotation, only created when it is first needed. Rotation is immutable, so if
+    // two threads race to create it they just create equal rotations
+    private Rotation rotation;
+    
     /**
      * Creates a new robot {@code Position}.
      * 
@@ -32,6 +37,18 @@ public class Position {
         this.direction = Angles.wrapDegrees(direction);
     }
     
+    /**
+     * Creates a new robot {@code Position} from a {@link Rotation}, whose cosine and sine are reused by
+     * {@link #getRotation()}.
+     * @param location A {@code Vector} representing the robot's location on the field, measured in inches.
+     * @param rotation The {@code Rotation} of the robot on the field.
+     */
+    public Position (Vector location, Rotation rotation) {
+        this.location = location;
+        this.direction = rotation.getDegrees();
+        this.rotation = rotation;
+    }
+    
     /**
      * Adds a movement {@link Vector} to this {@link Position} to return a new {@code Position}.
      * @param movement The movement vector to add, measured in inches.
@@ -72,6 +89,22 @@ public class Position {
         return direction;
     }
     
+    /**
+     * Gets the robot's direction relative to the field as a {@link Rotation}, which can be used to convert
+     * between robot-relative and field-relative vectors without any trigonometric functions. The rotation
+     * is created the first time this is called, and then reused.
+     * @return The robot's {@code Rotation}
+     * @see #getDirection()
+     */
+    public Rotation getRotation () {
+        Rotation rotation = this.rotation;
+        if (rotation == null) {
+            rotation = Rotation.fromDegrees(direction);
+            this.rotation = rotation;
+        }
+        return rotation;
+    }
+    
     /**
      * Gets a vector representing the movement required to move the robot from this position to
      * another on the field.
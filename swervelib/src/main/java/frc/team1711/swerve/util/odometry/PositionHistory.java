@@ -0,0 +1,139 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * A fixed-capacity history of timestamped robot positions, used to find where the robot was at a
+ * given time in the past. Positions are stored in primitive arrays, so nothing is allocated when
+ * positions are added. Once the history is full, adding a position overwrites the oldest one.
+ * 
+ * <p>This class is not thread-safe. {@link Odometry} only accesses its history while holding its lock.</p>
+ * @author Gabriel Seaver
+ */
+public class PositionHistory {
+    
+    private final int capacity, mask;
+    private final double[] timestamps, xs, ys, directions;
+    
+    // The physical index of the oldest position, and the number of positions stored
+    private int oldest = 0, size = 0;
+    
+    /**
+     * Creates a new, empty {@code PositionHistory}.
+     * @param capacity The number of positions the history can hold, which must be a power of two
+     */
+    public PositionHistory (int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity should be a power of two");
+        
+        this.capacity = capacity;
+        mask = capacity - 1;
+        timestamps = new double[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        directions = new double[capacity];
+    }
+    
+    /**
+     * Adds a position to the history. Timestamps must be added in increasing order: a position with the
+     * same timestamp as the newest position replaces it, and a position older than the newest position
+     * is ignored.
+     * @param timestamp The FPGA time at which the robot was at the position, in seconds
+     * @param x         The x coordinate of the robot's location
+     * @param y         The y coordinate of the robot's location
+     * @param direction The robot's direction, in degrees
+     */
+    public void add (double timestamp, double x, double y, double direction) {
+        int index;
+        if (size == 0) {
+            index = oldest;
+            size = 1;
+        } else {
+            final int newest = (oldest + size - 1) & mask;
+            if (timestamp < timestamps[newest]) return;
+            
+            if (timestamp == timestamps[newest]) {
+                index = newest;
+            } else if (size < capacity) {
+                index = (newest + 1) & mask;
+                size ++;
+            } else {
+                // Overwrite the oldest position
+                index = oldest;
+                oldest = (oldest + 1) & mask;
+            }
+        }
+        
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+        directions[index] = direction;
+    }
+    
+    /**
+     * Removes every position from the history.
+     */
+    public void clear () {
+        oldest = 0;
+        size = 0;
+    }
+    
+    /**
+     * @return The number of positions in the history
+     */
+    public int size () {
+        return size;
+    }
+    
+    /**
+     * @return The number of positions the history can hold
+     */
+    public int getCapacity () {
+        return capacity;
+    }
+    
+    /**
+     * Gets the robot's {@link Position} at a given time, interpolating linearly between the positions
+     * recorded immediately before and after it. Times before the oldest position or after the newest
+     * position give the oldest or newest position, respectively. This takes O(log n) time.
+     * @param timestamp The FPGA time, in seconds
+     * @return The robot's {@code Position} at {@code timestamp}, or {@code null} if the history is empty
+     */
+    public Position getPositionAt (double timestamp) {
+        if (size == 0) return null;
+        
+        // Binary search for the last position at or before the timestamp, using logical indices
+        // from 0 (oldest) to size - 1 (newest)
+        if (timestamp <= timestamps[oldest]) return getPosition(oldest);
+        int low = 0, high = size - 1;
+        if (timestamp >= timestamps[(oldest + high) & mask]) return getPosition((oldest + high) & mask);
+        
+        while (high - low > 1) {
+            final int mid = (low + high) >>> 1;
+            if (timestamps[(oldest + mid) & mask] <= timestamp) low = mid;
+            else high = mid;
+        }
+        
+        final int before = (oldest + low) & mask, after = (oldest + high) & mask;
+        final double t = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+        
+        // Interpolate the direction along the shortest turn between the two positions
+        final double turn = Angles.wrapDegreesZeroCenter(directions[after] - directions[before]);
+        
+        return new Position(
+            new Vector(
+                xs[before] + (xs[after] - xs[before]) * t,
+                ys[before] + (ys[after] - ys[before]) * t),
+            directions[before] + turn * t);
+    }
+    
+    // Gets the position stored at a physical index
+    private Position getPosition (int index) {
+        return new Position(new Vector(xs[index], ys[index]), directions[index]);
+    }
+    
+}
@@ -0,0 +1,91 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Publishes the latest timestamped position of the robot from a single writer (usually {@link Odometry})
+ * to any number of reader threads, without locks. The position is guarded by a seqlock: readers copy the
+ * position and retry if it was republished while they were copying it, so every read is consistent and
+ * publishing allocates nothing. Each published position has a version number, which increases by one
+ * every time a position is published.
+ * @author Gabriel Seaver
+ */
+public class PositionPublisher {
+    
+    // While version n is being written the sequence is 2n-1, and once it is complete the sequence is 2n
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private double timestamp, x, y, direction;
+    
+    /**
+     * Publishes a new position. This must only ever be called by one thread at a time.
+     * @param timestamp The FPGA time at which the robot was at the position, in seconds
+     * @param x         The x coordinate of the robot's location
+     * @param y         The y coordinate of the robot's location
+     * @param direction The robot's direction, in degrees
+     */
+    public void publish (double timestamp, double x, double y, double direction) {
+        final long current = sequence.get();
+        
+        // Marks the position as being written, and makes sure that mark is visible before any of the data changes
+        sequence.setOpaque(current + 1);
+        VarHandle.storeStoreFence();
+        
+        this.timestamp = timestamp;
+        this.x = x;
+        this.y = y;
+        this.direction = direction;
+        
+        sequence.setRelease(current + 2);
+    }
+    
+    /**
+     * Gets the version of the latest published position, which is zero if no position has been published.
+     * @return The version number
+     */
+    public long getVersion () {
+        return sequence.getAcquire() / 2;
+    }
+    
+    /**
+     * Reads the latest published position into an array, without allocating.
+     * @param destination   The array to copy the position into, as its timestamp, x coordinate, y coordinate,
+     * and direction
+     * @return              The version of the position which was read
+     */
+    public long read (double[] destination) {
+        while (true) {
+            final long before = sequence.getAcquire();
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            
+            destination[0] = timestamp;
+            destination[1] = x;
+            destination[2] = y;
+            destination[3] = direction;
+            
+            // Makes sure the data was read before checking that it was not republished while reading
+            VarHandle.acquireFence();
+            if (sequence.getOpaque() == before) return before / 2;
+        }
+    }
+    
+    /**
+     * Reads the latest published position.
+     * @return The {@link TimestampedPosition}
+     */
+    public TimestampedPosition read () {
+        final double[] position = new double[4];
+        read(position);
+        return new TimestampedPosition(new Position(new Vector(position[1], position[2]), position[3]), position[0]);
+    }
+    
+}
@@ -0,0 +1,174 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Follows a {@link MotionProfile} for the movement and one for the turn from one {@link Position} to another,
+ * giving the speeds to drive at by the time since the profiles started. Each speed is the profile's velocity
+ * (the feedforward) plus a correction proportional to how far the robot is from where the profile is at that
+ * time (the feedback). Once a profile has ended, its correction is no slower than its constraints' settle speed
+ * (see {@link MotionProfile.Constraints#withSettleSpeed(double)}). Used by
+ * {@link frc.team1711.swerve.commands.AutonDrive}.
+ *
+ * <p>A wheel's speed is at most the sum of the movement speed and the turn speed. If there are both movement
+ * and turn profiles, they are slowed down so that they take the same time, and so that the sum of their peak
+ * speeds is at most {@link #FEEDFORWARD_BUDGET}, which leaves the rest of the swerve drive's output for the
+ * corrections. If the corrections would still push the sum over 1, the movement and turn speeds are scaled down
+ * together with {@link #limitToFullOutput(double[])}, so the robot stays on its way to the final position instead
+ * of the turn being cut short. If only one of the movement and turn is profiled, the other speed is zero here, and
+ * the speeds should be limited again once the other speed has been added.</p>
+ * @author Gabriel Seaver
+ */
+public class ProfileFollower {
+    
+    /**
+     * The largest sum of the peak movement and turn speeds of synchronized profiles, as a fraction of full output.
+     */
+    public static final double FEEDFORWARD_BUDGET = 0.8;
+    
+    // How quickly the robot corrects for falling behind or getting ahead of a profile, per second. For example,
+    // falling one inch behind adds four inches per second to the robot's velocity
+    private static final double CORRECTION_GAIN = 4;
+    
+    // The profiles being followed, which are null if there are no constraints for them
+    private final MotionProfile movementProfile, turnProfile;
+    private final MotionProfile.Constraints movementConstraints, turnConstraints;
+    
+    // Where the robot started, the field relative direction of the movement as a unit vector, and the direction
+    // of the turn (1 for clockwise)
+    private final double startX, startY, startDirection, movementDirectionX, movementDirectionY, turnSign;
+    
+    /**
+     * Creates a new {@code ProfileFollower}, generating the profiles.
+     * @param initialPosition       The {@link Position} the robot starts from
+     * @param finalPosition         The {@code Position} the robot should finish at
+     * @param movementConstraints   The {@link MotionProfile.Constraints} on the movement, in inches, or
+     * {@code null} to not profile the movement
+     * @param turnConstraints       The {@code Constraints} on the turn, in degrees, or {@code null} to not
+     * profile the turn
+     */
+    public ProfileFollower (
+            Position initialPosition,
+            Position finalPosition,
+            MotionProfile.Constraints movementConstraints,
+            MotionProfile.Constraints turnConstraints) {
+        this.movementConstraints = movementConstraints;
+        this.turnConstraints = turnConstraints;
+        
+        final Vector start = initialPosition.getLocation(), movement = initialPosition.movementTo(finalPosition);
+        final double distance = movement.getMagnitude();
+        startX = start.getX();
+        startY = start.getY();
+        movementDirectionX = distance > 0 ? movement.getX() / distance : 0;
+        movementDirectionY = distance > 0 ? movement.getY() / distance : 0;
+        
+        final double turn = Angles.wrapDegreesZeroCenter(finalPosition.getDirection() - initialPosition.getDirection());
+        startDirection = initialPosition.getDirection();
+        turnSign = turn < 0 ? -1 : 1;
+        
+        MotionProfile movementProfile = movementConstraints == null ? null : new MotionProfile(distance, movementConstraints);
+        MotionProfile turnProfile = turnConstraints == null ? null : new MotionProfile(Math.abs(turn), turnConstraints);
+        
+        // Stretching a profile to a longer duration divides its velocity by the same ratio, so the duration is made
+        // long enough that the peak speeds fit within the budget once both profiles are stretched to it
+        if (movementProfile != null && turnProfile != null) {
+            final double
+                movementDuration = movementProfile.getDuration(),
+                turnDuration = turnProfile.getDuration(),
+                peakMovementSpeed = movementProfile.getPeakVelocity() / movementConstraints.getFullSpeedVelocity(),
+                peakTurnSpeed = turnProfile.getPeakVelocity() / turnConstraints.getFullSpeedVelocity();
+            final double duration = Math.max(
+                Math.max(movementDuration, turnDuration),
+                (movementDuration * peakMovementSpeed + turnDuration * peakTurnSpeed) / FEEDFORWARD_BUDGET);
+            
+            movementProfile = movementProfile.withDuration(duration);
+            turnProfile = turnProfile.withDuration(duration);
+        }
+        
+        this.movementProfile = movementProfile;
+        this.turnProfile = turnProfile;
+    }
+    
+    /**
+     * @return The movement {@link MotionProfile}, or {@code null} if the movement is not profiled
+     */
+    public MotionProfile getMovementProfile () {
+        return movementProfile;
+    }
+    
+    /**
+     * @return The turn {@link MotionProfile}, or {@code null} if the turn is not profiled
+     */
+    public MotionProfile getTurnProfile () {
+        return turnProfile;
+    }
+    
+    /**
+     * Gets the speeds to drive at to follow the profiles. The magnitude of the movement plus the magnitude of the
+     * turn is at most 1. The speed of a profile which was not generated is zero.
+     * @param currentPosition   The robot's current {@link Position}
+     * @param time              The time since the profiles started, in seconds
+     * @param speeds            The array to write the field relative x and y movement speeds and the clockwise
+     * turn speed to, as fractions of full output
+     */
+    public void getSpeeds (Position currentPosition, double time, double[] speeds) {
+        double moveX = 0, moveY = 0, turn = 0;
+        
+        if (movementProfile != null) {
+            final double
+                profilePosition = movementProfile.getPosition(time),
+                profileVelocity = movementProfile.getVelocity(time);
+            final Vector location = currentPosition.getLocation();
+            final double
+                errorX = startX + movementDirectionX * profilePosition - location.getX(),
+                errorY = startY + movementDirectionY * profilePosition - location.getY();
+            
+            // Once the profile has ended, only the correction moves the robot, so it is kept fast enough not to stall
+            double correctionScale = CORRECTION_GAIN;
+            if (time >= movementProfile.getDuration()) {
+                final double error = Vector.getMagnitude(errorX, errorY);
+                if (error > 0) correctionScale = movementConstraints.getSettleVelocity(error * CORRECTION_GAIN) / error;
+            }
+            
+            final double speedScale = 1 / movementConstraints.getFullSpeedVelocity();
+            moveX = (movementDirectionX * profileVelocity + errorX * correctionScale) * speedScale;
+            moveY = (movementDirectionY * profileVelocity + errorY * correctionScale) * speedScale;
+        }
+        
+        if (turnProfile != null) {
+            final double
+                profileDirection = startDirection + turnSign * turnProfile.getPosition(time),
+                error = Angles.wrapDegreesZeroCenter(profileDirection - currentPosition.getDirection());
+            final double correction = time >= turnProfile.getDuration()
+                ? turnConstraints.getSettleVelocity(error * CORRECTION_GAIN)
+                : error * CORRECTION_GAIN;
+            turn = (turnSign * turnProfile.getVelocity(time) + correction) / turnConstraints.getFullSpeedVelocity();
+        }
+        
+        speeds[0] = moveX;
+        speeds[1] = moveY;
+        speeds[2] = turn;
+        limitToFullOutput(speeds);
+    }
+    
+    /**
+     * Scales down movement speeds and a turn speed together so that the magnitude of the movement plus the
+     * magnitude of the turn is at most 1, which is as fast as a swerve drive can follow both. Speeds which are
+     * already within this are left as they are.
+     * @param speeds    The x and y movement speeds and the turn speed, as fractions of full output, which are
+     * scaled in place
+     */
+    public static void limitToFullOutput (double[] speeds) {
+        final double total = Vector.getMagnitude(speeds[0], speeds[1]) + Math.abs(speeds[2]);
+        if (total <= 1) return;
+        
+        speeds[0] /= total;
+        speeds[1] /= total;
+        speeds[2] /= total;
+    }
+    
+}
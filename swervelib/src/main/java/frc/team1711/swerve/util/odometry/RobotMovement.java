@@ -62,12 +62,9 @@ public class RobotMovement {
         // the movement vector as-is
         if (frameOfReference == FrameOfReference.FIELD) return movement;
         
-        // If the frame of reference is robot-relative, first get the new
-        // direction the robot would have to travel in
-        final double newDir = movement.getRotationDegrees() + position.getDirection();
-        
-        // Return the movement vector rotated in the correct direction
-        return movement.toRotationDegrees(newDir);
+        // If the frame of reference is robot-relative, rotate the movement
+        // vector by the robot's direction
+        return position.getRotation().rotate(movement);
     }
     
 }
\ No newline at end of file
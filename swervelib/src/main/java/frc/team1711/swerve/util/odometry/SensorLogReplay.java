@@ -0,0 +1,191 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Replays a log written by a {@link SensorLogWriter}, feeding the logged inputs through {@link Odometry} or
+ * any other consumer of sensor samples as fast as they can be processed. The log is memory-mapped, so it is
+ * read without copying it into memory first.
+ * 
+ * <p>Replaying into {@code Odometry} is deterministic: the odometry's state is restored from every state
+ * record, and every sample goes through the same code as on the robot, so the replayed positions are exactly
+ * the same as the positions found on the robot, bit for bit. This makes it possible to compare changes to
+ * the odometry against many logged matches.</p>
+ * 
+ * <p>Logs written in any earlier version of the format can still be replayed. Logs from before the wheel slip
+ * filter's tolerances were logged are replayed without a slip filter.</p>
+ * @author Gabriel Seaver
+ */
+public class SensorLogReplay {
+    
+    /**
+     * A consumer of sensor samples, such as {@link Odometry#addSample(double, double, double[], double[])}.
+     */
+    @FunctionalInterface
+    public interface SampleConsumer {
+        
+        /**
+         * Consumes a sample. The arrays are reused for every sample.
+         * @param timestamp     The time the sample was taken, in seconds
+         * @param gyroAngle     The absolute gyro angle, in degrees
+         * @param distances     The encoder distance of each module, in inches
+         * @param directions    The steering direction of each module, in degrees
+         */
+        void accept (double timestamp, double gyroAngle, double[] distances, double[] directions);
+    
+    }
+    
+    private final MappedByteBuffer log;
+    private final int version, moduleCount, recordsStart;
+    private final SwerveKinematics kinematics;
+    
+    /**
+     * Opens and memory-maps a log file.
+     * @param file          The log file
+     * @throws IOException  If the file cannot be read or is not a valid log
+     */
+    public SensorLogReplay (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("log is too large to replay");
+            log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        log.order(ByteOrder.LITTLE_ENDIAN);
+        
+        if (log.limit() < Integer.BYTES * 3 || log.getInt(0) != SensorLogWriter.MAGIC)
+            throw new IOException("not a sensor log");
+        version = log.getInt(4);
+        if (version < 1 || version > SensorLogWriter.VERSION)
+            throw new IOException("unsupported sensor log version " + version);
+        
+        moduleCount = log.getInt(8);
+        final Vector[] modulePositions = new Vector[moduleCount];
+        for (int i = 0; i < moduleCount; i ++) {
+            final int offset = Integer.BYTES * 3 + Double.BYTES * 2 * i;
+            modulePositions[i] = new Vector(log.getDouble(offset), log.getDouble(offset + Double.BYTES));
+        }
+        kinematics = new SwerveKinematics(modulePositions);
+        recordsStart = Integer.BYTES * 3 + Double.BYTES * 2 * moduleCount;
+    }
+    
+    /**
+     * @return The version of the log's format
+     */
+    public int getVersion () {
+        return version;
+    }
+    
+    /**
+     * @return The number of modules in the logged swerve drive
+     */
+    public int getModuleCount () {
+        return moduleCount;
+    }
+    
+    /**
+     * @return The {@link SwerveKinematics} of the logged odometry
+     */
+    public SwerveKinematics getKinematics () {
+        return kinematics;
+    }
+    
+    /**
+     * Creates a new {@link Odometry} which is not connected to any hardware, and replays the whole log into it.
+     * @return The {@code Odometry}, which holds the final replayed position and the position history
+     */
+    public Odometry replay () {
+        final Odometry odometry = new Odometry(kinematics);
+        replay(odometry);
+        return odometry;
+    }
+    
+    /**
+     * Replays the whole log into an {@link Odometry}, restoring its state from every state record and adding
+     * every sample. The odometry must have the same number of modules as the log, and should not be connected
+     * to any hardware or have a sample source.
+     * @param odometry  The {@code Odometry}
+     * @return          The number of samples replayed
+     */
+    public long replay (Odometry odometry) {
+        return replay(odometry::addSample, odometry);
+    }
+    
+    /**
+     * Replays every sample in the log into a {@link SampleConsumer}. State records are skipped.
+     * @param consumer  The {@code SampleConsumer}
+     * @return          The number of samples replayed
+     */
+    public long replay (SampleConsumer consumer) {
+        return replay(consumer, null);
+    }
+    
+    // Replays every record, restoring the state of odometry from state records if it isn't null
+    private long replay (SampleConsumer consumer, Odometry odometry) {
+        final int stateSize = SensorLogWriter.getStateSize(moduleCount, version), sampleSize = SensorLogWriter.getSampleSize(moduleCount);
+        final double[] distances = new double[moduleCount], directions = new double[moduleCount];
+        final IntegrationMode[] integrationModes = IntegrationMode.values();
+        
+        long samples = 0;
+        int offset = recordsStart;
+        while (offset + Integer.BYTES <= log.limit()) {
+            final int type = log.getInt(offset);
+            offset += Integer.BYTES;
+            
+            if (type == SensorLogWriter.SAMPLE) {
+                if (offset + sampleSize > log.limit()) break;
+                final double timestamp = log.getDouble(offset), gyroAngle = log.getDouble(offset + Double.BYTES);
+                int valueOffset = offset + Double.BYTES * 2;
+                for (int i = 0; i < moduleCount; i ++, valueOffset += Double.BYTES) distances[i] = log.getDouble(valueOffset);
+                for (int i = 0; i < moduleCount; i ++, valueOffset += Double.BYTES) directions[i] = log.getDouble(valueOffset);
+                
+                consumer.accept(timestamp, gyroAngle, distances, directions);
+                samples ++;
+                offset += sampleSize;
+            } else if (type == SensorLogWriter.STATE) {
+                if (offset + stateSize > log.limit()) break;
+                if (odometry != null) {
+                    final int reason = log.getInt(offset);
+                    final boolean gyroEnabled = log.getInt(offset + 4) != 0, gyroRealignRequired = log.getInt(offset + 8) != 0;
+                    final IntegrationMode integrationMode = integrationModes[log.getInt(offset + 12)];
+                    
+                    // Logs from before the slip filter tolerances were logged never had a slip filter
+                    final int d = offset + Integer.BYTES * 4, stateDoubles = SensorLogWriter.getStateDoubles(version);
+                    final boolean slipFilterLogged = version >= SensorLogWriter.VERSION_SLIP_FILTER;
+                    for (int i = 0; i < moduleCount; i ++) distances[i] = log.getDouble(d + Double.BYTES * (stateDoubles + i));
+                    odometry.restoreState(
+                        reason != SensorLogWriter.STATE_SETTINGS,
+                        log.getDouble(d),
+                        log.getDouble(d + Double.BYTES),
+                        log.getDouble(d + Double.BYTES * 2),
+                        new Position(
+                            new Vector(log.getDouble(d + Double.BYTES * 3), log.getDouble(d + Double.BYTES * 4)),
+                            log.getDouble(d + Double.BYTES * 5)),
+                        log.getDouble(d + Double.BYTES * 6),
+                        distances,
+                        gyroEnabled,
+                        gyroRealignRequired,
+                        integrationMode,
+                        slipFilterLogged ? log.getDouble(d + Double.BYTES * 7) : Double.NaN,
+                        slipFilterLogged ? log.getDouble(d + Double.BYTES * 8) : Double.NaN);
+                }
+                offset += stateSize;
+            } else {
+                // The rest of the log is corrupt, which can happen if the robot lost power while writing
+                break;
+            }
+        }
+        
+        return samples;
+    }
+    
+}
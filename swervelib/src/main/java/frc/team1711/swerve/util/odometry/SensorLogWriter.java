@@ -0,0 +1,192 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Writes the raw inputs consumed by {@link Odometry} to a compact binary log, so that odometry can be rerun
+ * offline on exactly the same inputs with a {@link SensorLogReplay}. Every sample (timestamp, gyro angle, and
+ * each module's encoder distance and direction) is logged, along with the odometry's complete state when
+ * logging starts and whenever the state is changed other than by a sample, such as when the position is reset.
+ * 
+ * <p>Records are collected in a buffer and written to the file when the buffer is full, or once at least half a
+ * second of samples (by their timestamps) has been collected since the last write, so logging a sample usually
+ * only copies a few numbers and no more than about half a second of samples is lost if the robot loses power.
+ * {@link frc.team1711.swerve.subsystems.AutoSwerveDrive} also writes the buffer when the robot is disabled. If
+ * writing fails, logging stops and {@link #hasFailed()} returns
+ * {@code true}, but no exception is thrown, so a full disk cannot stop the robot.</p>
+ * 
+ * <p>The log starts with a header of the magic number, the format version, the number of modules, and the
+ * position of every module. It is followed by records, each of which is a type followed by doubles. All
+ * values are little-endian.</p>
+ * @author Gabriel Seaver
+ */
+public class SensorLogWriter implements AutoCloseable {
+    
+    static final int MAGIC = 0x53574C47; // "SWLG"
+    static final int VERSION = 2;
+    
+    // The first version whose state records hold the wheel slip filter's tolerances
+    static final int VERSION_SLIP_FILTER = 2;
+    
+    // Record types
+    static final int STATE = 0, SAMPLE = 1;
+    
+    // The reasons a state record was written
+    static final int STATE_START = 0, STATE_RESET = 1, STATE_SETTINGS = 2;
+    
+    // The number of doubles before the wheel distances in a state record of a given version
+    static int getStateDoubles (int version) {
+        return version >= VERSION_SLIP_FILTER ? 9 : 7;
+    }
+    
+    // The number of bytes in each record type, excluding the record type itself
+    static int getStateSize (int moduleCount, int version) {
+        return Integer.BYTES * 4 + Double.BYTES * (getStateDoubles(version) + moduleCount);
+    }
+    
+    static int getSampleSize (int moduleCount) {
+        return Double.BYTES * (2 + 2 * moduleCount);
+    }
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    // The most time between the timestamps of samples logged before the buffer is written to the file, in seconds
+    private static final double FLUSH_INTERVAL = 0.5;
+    
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final int moduleCount;
+    
+    private long sampleCount = 0;
+    private double lastFlushTimestamp = Double.NaN;
+    private boolean failed = false, closed = false;
+    
+    /**
+     * Creates a new {@code SensorLogWriter}, replacing the file if it already exists.
+     * @param file          The log file
+     * @param kinematics    The {@link SwerveKinematics} of the odometry being logged
+     * @throws IOException  If the file cannot be opened
+     */
+    public SensorLogWriter (Path file, SwerveKinematics kinematics) throws IOException {
+        moduleCount = kinematics.getModuleCount();
+        channel = FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(moduleCount);
+        for (int i = 0; i < moduleCount; i ++) {
+            final Vector modulePosition = kinematics.getModulePosition(i);
+            buffer.putDouble(modulePosition.getX()).putDouble(modulePosition.getY());
+        }
+    }
+    
+    // Writes the odometry's complete state
+    synchronized void writeState (
+            int reason,
+            double timestamp,
+            double gyroAngle,
+            double gyroYawOffset,
+            Position position,
+            double wheelDirection,
+            double[] wheelDistances,
+            boolean gyroEnabled,
+            boolean gyroRealignRequired,
+            IntegrationMode integrationMode,
+            WheelSlipFilter slipFilter) {
+        if (!reserve(Integer.BYTES + getStateSize(moduleCount, VERSION))) return;
+        
+        buffer.putInt(STATE).putInt(reason);
+        buffer.putInt(gyroEnabled ? 1 : 0).putInt(gyroRealignRequired ? 1 : 0).putInt(integrationMode.ordinal());
+        buffer.putDouble(timestamp).putDouble(gyroAngle).putDouble(gyroYawOffset);
+        buffer.putDouble(position.getLocation().getX()).putDouble(position.getLocation().getY()).putDouble(position.getDirection());
+        buffer.putDouble(wheelDirection);
+        buffer.putDouble(slipFilter == null ? Double.NaN : slipFilter.getAbsoluteTolerance());
+        buffer.putDouble(slipFilter == null ? Double.NaN : slipFilter.getRelativeTolerance());
+        for (int i = 0; i < moduleCount; i ++) buffer.putDouble(wheelDistances[i]);
+    }
+    
+    // Writes a sample consumed by the odometry
+    synchronized void writeSample (double timestamp, double gyroAngle, double[] distances, double[] directions) {
+        if (!reserve(Integer.BYTES + getSampleSize(moduleCount))) return;
+        
+        buffer.putInt(SAMPLE).putDouble(timestamp).putDouble(gyroAngle);
+        for (int i = 0; i < moduleCount; i ++) buffer.putDouble(distances[i]);
+        for (int i = 0; i < moduleCount; i ++) buffer.putDouble(directions[i]);
+        sampleCount ++;
+        
+        // Timestamps can jump backwards if the odometry is replaced, which also starts a new interval
+        if (!(Math.abs(timestamp - lastFlushTimestamp) < FLUSH_INTERVAL)) {
+            flushBuffer();
+            lastFlushTimestamp = timestamp;
+        }
+    }
+    
+    // Makes sure there is space for a record in the buffer, writing the buffer to the file if needed
+    private boolean reserve (int bytes) {
+        if (failed || closed) return false;
+        if (buffer.remaining() < bytes) flushBuffer();
+        return !failed;
+    }
+    
+    // Writes the buffer to the file, stopping logging if writing fails
+    private void flushBuffer () {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            failed = true;
+        }
+        buffer.clear();
+    }
+    
+    /**
+     * Writes every buffered record to the file.
+     */
+    public synchronized void flush () {
+        if (failed || closed) return;
+        flushBuffer();
+    }
+    
+    /**
+     * @return The number of samples which have been logged
+     */
+    public synchronized long getSampleCount () {
+        return sampleCount;
+    }
+    
+    /**
+     * @return Whether or not writing to the file has failed, in which case logging has stopped
+     */
+    public synchronized boolean hasFailed () {
+        return failed;
+    }
+    
+    /**
+     * Writes every buffered record to the file and closes it.
+     */
+    @Override
+    public synchronized void close () {
+        if (closed) return;
+        flush();
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+    
+}
@@ -0,0 +1,228 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-capacity, lock-free ring buffer of timestamped sensor samples, written by a single producer
+ * (usually a {@link SensorSampler}) and read by any number of consumers, each with its own {@link Reader}.
+ * Samples are stored in primitive arrays, so nothing is allocated when samples are written or read.
+ * 
+ * <p>If a consumer falls more than one buffer capacity behind the producer, the oldest samples are
+ * overwritten before the consumer reads them. The consumer's {@code Reader} then skips ahead to the
+ * oldest sample still in the buffer, and counts the skipped samples with {@link Reader#getDroppedCount()}.</p>
+ * @author Gabriel Seaver
+ */
+public class SensorSampleBuffer {
+    
+    private final int capacity, mask, moduleCount;
+    
+    // Each slot has a sequence number which works as a seqlock: while sample n is being written
+    // into a slot its sequence is 2n+1, and once it is complete the sequence is 2n+2
+    private final AtomicLongArray sequences;
+    
+    private final double[] timestamps, gyroAngles, distances, directions;
+    
+    // The number of samples which have been completely written
+    private final AtomicLong written = new AtomicLong();
+    
+    /**
+     * Creates a new {@code SensorSampleBuffer}.
+     * @param capacity      The number of samples the buffer can hold, which must be a power of two
+     * @param moduleCount   The number of modules in each sample
+     */
+    public SensorSampleBuffer (int capacity, int moduleCount) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity should be a power of two");
+        
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.moduleCount = moduleCount;
+        
+        sequences = new AtomicLongArray(capacity);
+        timestamps = new double[capacity];
+        gyroAngles = new double[capacity];
+        distances = new double[capacity * moduleCount];
+        directions = new double[capacity * moduleCount];
+    }
+    
+    /**
+     * @return The number of samples the buffer can hold
+     */
+    public int getCapacity () {
+        return capacity;
+    }
+    
+    /**
+     * @return The number of modules in each sample
+     */
+    public int getModuleCount () {
+        return moduleCount;
+    }
+    
+    /**
+     * @return The total number of samples which have been written to the buffer
+     */
+    public long getWrittenCount () {
+        return written.get();
+    }
+    
+    /**
+     * Writes a sample to the buffer. This must only ever be called by one thread.
+     * @param timestamp     The time the sample was taken, in seconds
+     * @param gyroAngle     The absolute gyro angle, in degrees
+     * @param distances     The encoder distance of each module, in inches
+     * @param directions    The steering direction of each module, in degrees
+     */
+    public void write (double timestamp, double gyroAngle, double[] distances, double[] directions) {
+        final long sample = written.get();
+        final int slot = (int)sample & mask;
+        
+        // Marks the slot as being written, and makes sure that mark is visible before any of the data changes
+        sequences.setOpaque(slot, 2 * sample + 1);
+        VarHandle.storeStoreFence();
+        
+        timestamps[slot] = timestamp;
+        gyroAngles[slot] = gyroAngle;
+        System.arraycopy(distances, 0, this.distances, slot * moduleCount, moduleCount);
+        System.arraycopy(directions, 0, this.directions, slot * moduleCount, moduleCount);
+        
+        // Publishes the sample
+        sequences.setRelease(slot, 2 * sample + 2);
+        written.setRelease(sample + 1);
+    }
+    
+    /**
+     * Creates a new {@link Reader} which will read every sample written after this call.
+     * @return The new {@code Reader}
+     */
+    public Reader newReader () {
+        return new Reader();
+    }
+    
+    /**
+     * A cursor over a {@link SensorSampleBuffer} used by a single consumer. Each call to {@link #next()}
+     * copies the next sample into the reader, where it can be accessed through the getter methods.
+     * A {@code Reader} must only be used by one thread.
+     */
+    public class Reader {
+        
+        // The number of the next sample to read
+        private long cursor;
+        private long dropped;
+        
+        private double timestamp, gyroAngle;
+        private final double[] readDistances = new double[moduleCount], readDirections = new double[moduleCount];
+        
+        private Reader () {
+            cursor = written.get();
+        }
+        
+        /**
+         * Reads the next sample from the buffer, if there is one.
+         * @return {@code true} if a new sample was read, or {@code false} if there are no new samples
+         */
+        public boolean next () {
+            while (true) {
+                final long available = written.getAcquire();
+                if (cursor >= available) return false;
+                
+                // Skips samples which have already been overwritten
+                if (available - cursor > capacity) {
+                    dropped += available - capacity - cursor;
+                    cursor = available - capacity;
+                }
+                
+                final int slot = (int)cursor & mask;
+                final long expectedSequence = 2 * cursor + 2;
+                final boolean complete = sequences.getAcquire(slot) == expectedSequence;
+                
+                if (complete) {
+                    timestamp = timestamps[slot];
+                    gyroAngle = gyroAngles[slot];
+                    System.arraycopy(distances, slot * moduleCount, readDistances, 0, moduleCount);
+                    System.arraycopy(directions, slot * moduleCount, readDirections, 0, moduleCount);
+                    
+                    // Makes sure the data was read before checking that it was not overwritten while reading
+                    VarHandle.acquireFence();
+                }
+                
+                cursor ++;
+                if (complete && sequences.getOpaque(slot) == expectedSequence) return true;
+                
+                // The producer started overwriting this sample before it could be read, so it is dropped
+                dropped ++;
+            }
+        }
+        
+        /**
+         * Skips every sample which has not been read yet.
+         */
+        public void skipToLatest () {
+            cursor = written.get();
+        }
+        
+        /**
+         * @return The time the current sample was taken, in seconds
+         */
+        public double getTimestamp () {
+            return timestamp;
+        }
+        
+        /**
+         * @return The absolute gyro angle of the current sample, in degrees
+         */
+        public double getGyroAngle () {
+            return gyroAngle;
+        }
+        
+        /**
+         * Gets the encoder distance of a module in the current sample.
+         * @param module    The index of the module
+         * @return          The encoder distance, in inches
+         */
+        public double getDistance (int module) {
+            return readDistances[module];
+        }
+        
+        /**
+         * Gets the steering direction of a module in the current sample.
+         * @param module    The index of the module
+         * @return          The steering direction, in degrees
+         */
+        public double getDirection (int module) {
+            return readDirections[module];
+        }
+        
+        /**
+         * Gets the encoder distances of every module in the current sample. The returned array is
+         * reused by the reader and must not be modified.
+         * @return The encoder distances, in inches
+         */
+        public double[] getDistances () {
+            return readDistances;
+        }
+        
+        /**
+         * Gets the steering directions of every module in the current sample. The returned array is
+         * reused by the reader and must not be modified.
+         * @return The steering directions, in degrees
+         */
+        public double[] getDirections () {
+            return readDirections;
+        }
+        
+        /**
+         * @return The number of samples which were overwritten before this reader could read them
+         */
+        public long getDroppedCount () {
+            return dropped;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,92 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+import frc.team1711.swerve.subsystems.AutoSwerveWheel;
+
+/**
+ * Samples the encoder distance and steering direction of every {@link AutoSwerveWheel}, along with the
+ * gyro angle, on its own thread at a fixed rate which can be much faster than the command scheduler's
+ * loop. Each sample is timestamped and written to a {@link SensorSampleBuffer}, which {@link Odometry}
+ * and any other consumers can read from without blocking the main thread on slow sensor reads.
+ * 
+ * <p><b>IMPLEMENTATION NOTE: {@link AutoSwerveWheel#getEncoderDistance()},
+ * {@link AutoSwerveWheel#getDirection()}, and the gyro angle supplier will be called from the sampler's
+ * thread, so they must be safe to call from a thread other than the main robot thread.</b></p>
+ * @author Gabriel Seaver
+ * 
+ * @see frc.team1711.swerve.subsystems.AutoSwerveDrive#startSensorSampler(double)
+ */
+public class SensorSampler implements AutoCloseable {
+    
+    private final AutoSwerveWheel[] wheels;
+    private final DoubleSupplier gyroAngle;
+    private final SensorSampleBuffer buffer;
+    private final Notifier notifier;
+    
+    // Written only by the sampler's thread
+    private final double[] distances, directions;
+    
+    /**
+     * Creates a new {@code SensorSampler}. The sampler does not start sampling until {@link #start(double)} is called.
+     * @param bufferCapacity    The number of samples the {@link SensorSampleBuffer} can hold, which must be a power of two
+     * @param gyroAngle         Supplies the absolute gyro angle, in degrees
+     * @param wheels            The {@code AutoSwerveWheel} for each module
+     */
+    public SensorSampler (int bufferCapacity, DoubleSupplier gyroAngle, AutoSwerveWheel... wheels) {
+        this.wheels = wheels.clone();
+        this.gyroAngle = gyroAngle;
+        buffer = new SensorSampleBuffer(bufferCapacity, wheels.length);
+        distances = new double[wheels.length];
+        directions = new double[wheels.length];
+        
+        notifier = new Notifier(this::sample);
+        notifier.setName("SwerveLib Sensor Sampler");
+    }
+    
+    /**
+     * Starts sampling at a given rate.
+     * @param frequency The number of samples to take per second
+     */
+    public void start (double frequency) {
+        notifier.startPeriodic(1 / frequency);
+    }
+    
+    /**
+     * Stops sampling. Samples already in the buffer can still be read.
+     */
+    public void stop () {
+        notifier.stop();
+    }
+    
+    /**
+     * Gets the {@link SensorSampleBuffer} samples are written to. Use
+     * {@link SensorSampleBuffer#newReader()} to consume samples.
+     * @return The {@code SensorSampleBuffer}
+     */
+    public SensorSampleBuffer getBuffer () {
+        return buffer;
+    }
+    
+    // Called periodically on the notifier's thread
+    private void sample () {
+        final double timestamp = Timer.getFPGATimestamp();
+        for (int i = 0; i < wheels.length; i ++) {
+            distances[i] = wheels[i].getEncoderDistance();
+            directions[i] = wheels[i].getDirection();
+        }
+        buffer.write(timestamp, gyroAngle.getAsDouble(), distances, directions);
+    }
+    
+    @Override
+    public void close () {
+        notifier.close();
+    }
+    
+}
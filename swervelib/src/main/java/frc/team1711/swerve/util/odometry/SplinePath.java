@@ -0,0 +1,222 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * A smooth, field-relative path through a series of waypoints, made of cubic Hermite segments with
+ * Catmull-Rom tangents, so the path passes through every waypoint and its direction changes continuously.
+ * 
+ * <p>The path is parameterized by arc length: when it is created, points and tangent directions are found at
+ * evenly spaced distances along the path and stored in a table. Sampling the path at a distance only finds an
+ * index into the table and interpolates between two entries, so it takes constant time and allocates nothing.
+ * Used by {@link frc.team1711.swerve.commands.PathDrive}.</p>
+ * @author Gabriel Seaver
+ */
+public class SplinePath {
+    
+    /**
+     * The approximate distance between entries in the arc length table, in inches.
+     */
+    public static final double TABLE_SPACING = 0.25;
+    
+    // The number of points per inch of chord length used to measure each segment's arc length
+    private static final double MEASUREMENT_DENSITY = 16;
+    
+    private final int segmentCount;
+    
+    // The coefficients of each segment's cubic polynomials, in the parameter u on [0, 1]
+    private final double[] ax, bx, cx, dx, ay, by, cy, dy;
+    
+    private final double length, spacing;
+    
+    // The arc length table: the point and unit tangent at each multiple of spacing
+    private final double[] tableX, tableY, tableTangentX, tableTangentY;
+    
+    /**
+     * Creates a new {@code SplinePath} through the given waypoints, in order.
+     * @param waypoints The field-relative waypoints, in inches. There must be at least two, and consecutive
+     * waypoints cannot be the same.
+     */
+    public SplinePath (Vector... waypoints) {
+        if (waypoints.length < 2) throw new IllegalArgumentException("a path needs at least two waypoints");
+        for (int i = 1; i < waypoints.length; i ++) {
+            if (waypoints[i].getX() == waypoints[i-1].getX() && waypoints[i].getY() == waypoints[i-1].getY())
+                throw new IllegalArgumentException("consecutive waypoints cannot be the same");
+        }
+        
+        segmentCount = waypoints.length - 1;
+        ax = new double[segmentCount];
+        bx = new double[segmentCount];
+        cx = new double[segmentCount];
+        dx = new double[segmentCount];
+        ay = new double[segmentCount];
+        by = new double[segmentCount];
+        cy = new double[segmentCount];
+        dy = new double[segmentCount];
+        
+        for (int i = 0; i < segmentCount; i ++) {
+            final Vector p0 = waypoints[i], p1 = waypoints[i+1];
+            
+            // Catmull-Rom tangents, which are one-sided at the ends of the path
+            final Vector before = waypoints[Math.max(i - 1, 0)], after = waypoints[Math.min(i + 2, segmentCount)];
+            final double
+                m0x = (p1.getX() - before.getX()) / (i == 0 ? 1 : 2),
+                m0y = (p1.getY() - before.getY()) / (i == 0 ? 1 : 2),
+                m1x = (after.getX() - p0.getX()) / (i == segmentCount - 1 ? 1 : 2),
+                m1y = (after.getY() - p0.getY()) / (i == segmentCount - 1 ? 1 : 2);
+            
+            // Hermite basis written as a + b u + c u^2 + d u^3
+            ax[i] = p0.getX();
+            bx[i] = m0x;
+            cx[i] = 3 * (p1.getX() - p0.getX()) - 2 * m0x - m1x;
+            dx[i] = 2 * (p0.getX() - p1.getX()) + m0x + m1x;
+            ay[i] = p0.getY();
+            by[i] = m0y;
+            cy[i] = 3 * (p1.getY() - p0.getY()) - 2 * m0y - m1y;
+            dy[i] = 2 * (p0.getY() - p1.getY()) + m0y + m1y;
+        }
+        
+        // Measure the path densely, as the global parameter (segment index plus u) and the arc length up to it
+        int measurementCount = 1;
+        final int[] segmentSteps = new int[segmentCount];
+        for (int i = 0; i < segmentCount; i ++) {
+            final double chord = waypoints[i+1].subtract(waypoints[i]).getMagnitude();
+            segmentSteps[i] = Math.max(16, (int)Math.ceil(chord * MEASUREMENT_DENSITY));
+            measurementCount += segmentSteps[i];
+        }
+        
+        final double[] parameters = new double[measurementCount], lengths = new double[measurementCount];
+        int index = 1;
+        double lastX = ax[0], lastY = ay[0], totalLength = 0;
+        for (int i = 0; i < segmentCount; i ++) {
+            for (int step = 1; step <= segmentSteps[i]; step ++) {
+                final double parameter = i + (double)step / segmentSteps[i];
+                final double x = evaluateX(parameter), y = evaluateY(parameter);
+                totalLength += Vector.getMagnitude(x - lastX, y - lastY);
+                parameters[index] = parameter;
+                lengths[index] = totalLength;
+                lastX = x;
+                lastY = y;
+                index ++;
+            }
+        }
+        
+        // Build the table at evenly spaced arc lengths, interpolating the parameter between measurements
+        length = totalLength;
+        final int tableSize = (int)Math.ceil(length / TABLE_SPACING) + 1;
+        spacing = length / (tableSize - 1);
+        tableX = new double[tableSize];
+        tableY = new double[tableSize];
+        tableTangentX = new double[tableSize];
+        tableTangentY = new double[tableSize];
+        
+        int measurement = 0;
+        for (int i = 0; i < tableSize; i ++) {
+            final double distance = Math.min(i * spacing, length);
+            while (measurement < measurementCount - 2 && lengths[measurement + 1] < distance) measurement ++;
+            
+            final double measuredLength = lengths[measurement + 1] - lengths[measurement];
+            final double
+                fraction = measuredLength > 0 ? (distance - lengths[measurement]) / measuredLength : 0,
+                parameter = parameters[measurement] + fraction * (parameters[measurement + 1] - parameters[measurement]);
+            
+            tableX[i] = evaluateX(parameter);
+            tableY[i] = evaluateY(parameter);
+            final double tangentX = evaluateDerivativeX(parameter), tangentY = evaluateDerivativeY(parameter);
+            final double tangentMagnitude = Vector.getMagnitude(tangentX, tangentY);
+            
+            // The path stops for an instant where it doubles back on itself, so keep the last direction there
+            tableTangentX[i] = tangentMagnitude > 0 ? tangentX / tangentMagnitude : tableTangentX[i-1];
+            tableTangentY[i] = tangentMagnitude > 0 ? tangentY / tangentMagnitude : tableTangentY[i-1];
+        }
+    }
+    
+    // Gets the segment containing a global parameter on [0, segmentCount]
+    private int getSegment (double parameter) {
+        return Math.min((int)parameter, segmentCount - 1);
+    }
+    
+    // Evaluates the x coordinate of the path at a global parameter
+    private double evaluateX (double parameter) {
+        final int i = getSegment(parameter);
+        final double u = parameter - i;
+        return ax[i] + u * (bx[i] + u * (cx[i] + u * dx[i]));
+    }
+    
+    // Evaluates the y coordinate of the path at a global parameter
+    private double evaluateY (double parameter) {
+        final int i = getSegment(parameter);
+        final double u = parameter - i;
+        return ay[i] + u * (by[i] + u * (cy[i] + u * dy[i]));
+    }
+    
+    // Evaluates the derivative of the x coordinate with respect to u at a global parameter
+    private double evaluateDerivativeX (double parameter) {
+        final int i = getSegment(parameter);
+        final double u = parameter - i;
+        return bx[i] + u * (2 * cx[i] + u * 3 * dx[i]);
+    }
+    
+    // Evaluates the derivative of the y coordinate with respect to u at a global parameter
+    private double evaluateDerivativeY (double parameter) {
+        final int i = getSegment(parameter);
+        final double u = parameter - i;
+        return by[i] + u * (2 * cy[i] + u * 3 * dy[i]);
+    }
+    
+    // Interpolates a column of the arc length table at a distance along the path
+    private double interpolate (double[] table, double distance) {
+        final double position = Math.max(0, Math.min(distance, length)) / spacing;
+        final int i = Math.min((int)position, table.length - 2);
+        return table[i] + (position - i) * (table[i+1] - table[i]);
+    }
+    
+    /**
+     * @return The length of the path, in inches
+     */
+    public double getLength () {
+        return length;
+    }
+    
+    /**
+     * Gets the x coordinate of the point a given distance along the path.
+     * @param distance  The distance along the path, in inches, which is clamped to [0, {@link #getLength()}]
+     * @return          The x coordinate of the point, in inches
+     */
+    public double getX (double distance) {
+        return interpolate(tableX, distance);
+    }
+    
+    /**
+     * Gets the y coordinate of the point a given distance along the path.
+     * @param distance  The distance along the path, in inches, which is clamped to [0, {@link #getLength()}]
+     * @return          The y coordinate of the point, in inches
+     */
+    public double getY (double distance) {
+        return interpolate(tableY, distance);
+    }
+    
+    /**
+     * Gets the x component of the path's unit tangent (the direction the path is heading) a given distance
+     * along the path.
+     * @param distance  The distance along the path, in inches, which is clamped to [0, {@link #getLength()}]
+     * @return          The x component of the tangent
+     */
+    public double getTangentX (double distance) {
+        return interpolate(tableTangentX, distance);
+    }
+    
+    /**
+     * Gets the y component of the path's unit tangent (the direction the path is heading) a given distance
+     * along the path.
+     * @param distance  The distance along the path, in inches, which is clamped to [0, {@link #getLength()}]
+     * @return          The y component of the tangent
+     */
+    public double getTangentY (double distance) {
+        return interpolate(tableTangentY, distance);
+    }
+    
+}
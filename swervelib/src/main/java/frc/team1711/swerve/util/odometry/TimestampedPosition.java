@@ -0,0 +1,41 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+/**
+ * A {@link Position} of the robot on the field, along with the time at which the robot was at that position.
+ * @author Gabriel Seaver
+ * 
+ * @see frc.team1711.swerve.subsystems.AutoSwerveDrive#getTimestampedPosition()
+ */
+public class TimestampedPosition {
+    
+    private final Position position;
+    private final double timestamp;
+    
+    /**
+     * Creates a new {@code TimestampedPosition}.
+     * @param position  The robot's {@code Position}
+     * @param timestamp The FPGA time at which the robot was at the position, in seconds
+     */
+    public TimestampedPosition (Position position, double timestamp) {
+        this.position = position;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * @return The robot's {@link Position}
+     */
+    public Position getPosition () {
+        return position;
+    }
+    
+    /**
+     * @return The FPGA time at which the robot was at the position, in seconds
+     */
+    public double getTimestamp () {
+        return timestamp;
+    }
+    
+}
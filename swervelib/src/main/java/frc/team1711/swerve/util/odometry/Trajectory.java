@@ -0,0 +1,252 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import edu.wpi.first.wpilibj.Filesystem;
+
+import frc.team1711.swerve.util.Angles;
+
+/**
+ * A precomputed trajectory, stored as timestamped samples of the robot's field-relative position, heading,
+ * and velocity at a fixed period. Trajectories can be generated ahead of time (for example, by a Gradle
+ * task or a test on a development computer) with {@link #generate(SplinePath, MotionProfile.Constraints, double, double, double)}
+ * and {@link #write(Path)}, then deployed with the robot code and loaded at startup with
+ * {@link #loadDeployed(String)}, so they don't have to be generated again on every boot.
+ * 
+ * <p>A trajectory file is a little-endian header (the magic number, the format version, the number of samples,
+ * a reserved int, and the period in seconds) followed by the samples, each of which is seven doubles: the time,
+ * x, y, heading, x velocity, y velocity, and turn velocity. Loaded files are memory-mapped and read in place,
+ * so loading takes no parsing, and sampling a trajectory at a given time only computes an index and interpolates
+ * between two samples without allocating anything. Followed by {@link frc.team1711.swerve.commands.PathDrive}.</p>
+ * @author Gabriel Seaver
+ */
+public class Trajectory {
+    
+    /**
+     * The first four bytes of every trajectory file.
+     */
+    public static final int MAGIC = 0x53575452;
+    
+    /**
+     * The version of the trajectory format written by {@link #write(Path)}.
+     */
+    public static final int VERSION = 1;
+    
+    private static final int HEADER_SIZE = Integer.BYTES * 4 + Double.BYTES;
+    
+    // The columns of each sample, and the size of a sample in bytes
+    private static final int
+        TIME = 0,
+        X = 1,
+        Y = 2,
+        HEADING = 3,
+        VELOCITY_X = 4,
+        VELOCITY_Y = 5,
+        TURN_VELOCITY = 6,
+        COLUMN_COUNT = 7;
+    private static final int SAMPLE_SIZE = Double.BYTES * COLUMN_COUNT;
+    
+    private final ByteBuffer buffer;
+    private final int sampleCount;
+    private final double period;
+    
+    // Creates a trajectory from a buffer which has already been checked
+    private Trajectory (ByteBuffer buffer) {
+        this.buffer = buffer;
+        sampleCount = buffer.getInt(Integer.BYTES * 2);
+        period = buffer.getDouble(Integer.BYTES * 4);
+    }
+    
+    /**
+     * Generates a trajectory which follows a {@link SplinePath} with a {@link MotionProfile}, while turning
+     * from one direction to another in proportion to the distance travelled along the path (in the same way as
+     * {@link frc.team1711.swerve.commands.PathDrive} does for a {@code SplinePath}).
+     * @param path              The path to follow
+     * @param constraints       The {@link MotionProfile.Constraints} on the movement along the path, in inches
+     * @param initialDirection  The field-relative direction of the robot at the start of the path, in degrees
+     * @param finalDirection    The field-relative direction of the robot at the end of the path, in degrees
+     * @param period            The time between samples, in seconds
+     * @return                  The {@code Trajectory}
+     */
+    public static Trajectory generate (
+            SplinePath path,
+            MotionProfile.Constraints constraints,
+            double initialDirection,
+            double finalDirection,
+            double period) {
+        if (!(period > 0)) throw new IllegalArgumentException("period should be positive");
+        
+        final MotionProfile profile = new MotionProfile(path.getLength(), constraints);
+        final int sampleCount = Math.max((int)Math.ceil(profile.getDuration() / period), 1) + 1;
+        final double turn = Angles.wrapDegreesZeroCenter(finalDirection - initialDirection);
+        final double turnPerInch = path.getLength() > 0 ? turn / path.getLength() : 0;
+        
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + SAMPLE_SIZE * sampleCount).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sampleCount).putInt(0).putDouble(period);
+        for (int i = 0; i < sampleCount; i ++) {
+            final double time = i * period;
+            final double distance = profile.getPosition(time), velocity = profile.getVelocity(time);
+            buffer
+                .putDouble(time)
+                .putDouble(path.getX(distance))
+                .putDouble(path.getY(distance))
+                .putDouble(initialDirection + turnPerInch * distance)
+                .putDouble(path.getTangentX(distance) * velocity)
+                .putDouble(path.getTangentY(distance) * velocity)
+                .putDouble(turnPerInch * velocity);
+        }
+        
+        return new Trajectory(buffer);
+    }
+    
+    /**
+     * Loads and memory-maps a trajectory file written by {@link #write(Path)}.
+     * @param file          The trajectory file
+     * @return              The {@code Trajectory}
+     * @throws IOException  If the file cannot be read or is not a valid trajectory
+     */
+    public static Trajectory load (Path file) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("trajectory is too large to load");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("not a trajectory");
+        if (buffer.getInt(Integer.BYTES) != VERSION)
+            throw new IOException("unsupported trajectory version " + buffer.getInt(Integer.BYTES));
+        
+        final int sampleCount = buffer.getInt(Integer.BYTES * 2);
+        if (sampleCount < 2 || buffer.limit() != HEADER_SIZE + (long)SAMPLE_SIZE * sampleCount)
+            throw new IOException("trajectory has the wrong length for its sample count");
+        if (!(buffer.getDouble(Integer.BYTES * 4) > 0))
+            throw new IOException("trajectory has an invalid period");
+        
+        return new Trajectory(buffer);
+    }
+    
+    /**
+     * Loads and memory-maps a trajectory file from the deploy directory, where files in the robot project's
+     * {@code src/main/deploy} directory are put on the robot.
+     * @param name          The path of the file, relative to the deploy directory
+     * @return              The {@code Trajectory}
+     * @throws IOException  If the file cannot be read or is not a valid trajectory
+     */
+    public static Trajectory loadDeployed (String name) throws IOException {
+        return load(Filesystem.getDeployDirectory().toPath().resolve(name));
+    }
+    
+    /**
+     * Writes this trajectory to a file, replacing the file if it already exists.
+     * @param file          The file to write to
+     * @throws IOException  If the file cannot be written
+     */
+    public void write (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            while (contents.hasRemaining()) channel.write(contents);
+        }
+    }
+    
+    // Gets a column of a sample
+    private double get (int sample, int column) {
+        return buffer.getDouble(HEADER_SIZE + sample * SAMPLE_SIZE + column * Double.BYTES);
+    }
+    
+    // Interpolates a column between the two samples around a time
+    private double interpolate (int column, double time) {
+        final double position = Math.max(0, Math.min(time / period, sampleCount - 1));
+        final int i = Math.min((int)position, sampleCount - 2);
+        final double before = get(i, column);
+        return before + (position - i) * (get(i + 1, column) - before);
+    }
+    
+    /**
+     * @return The number of samples in the trajectory
+     */
+    public int getSampleCount () {
+        return sampleCount;
+    }
+    
+    /**
+     * @return The time between samples, in seconds
+     */
+    public double getPeriod () {
+        return period;
+    }
+    
+    /**
+     * @return The time of the last sample, in seconds, after which the robot should be at rest
+     */
+    public double getDuration () {
+        return get(sampleCount - 1, TIME);
+    }
+    
+    /**
+     * Gets the field-relative x coordinate of the robot at a given time.
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The x coordinate, in inches
+     */
+    public double getX (double time) {
+        return interpolate(X, time);
+    }
+    
+    /**
+     * Gets the field-relative y coordinate of the robot at a given time.
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The y coordinate, in inches
+     */
+    public double getY (double time) {
+        return interpolate(Y, time);
+    }
+    
+    /**
+     * Gets the field-relative direction of the robot at a given time. The direction changes continuously
+     * through the trajectory, so it is not wrapped and may be outside of [0, 360).
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The direction, in degrees, clockwise from directly forwards on the field
+     */
+    public double getHeading (double time) {
+        return interpolate(HEADING, time);
+    }
+    
+    /**
+     * Gets the field-relative x velocity of the robot at a given time.
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The x velocity, in inches per second
+     */
+    public double getVelocityX (double time) {
+        return interpolate(VELOCITY_X, time);
+    }
+    
+    /**
+     * Gets the field-relative y velocity of the robot at a given time.
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The y velocity, in inches per second
+     */
+    public double getVelocityY (double time) {
+        return interpolate(VELOCITY_Y, time);
+    }
+    
+    /**
+     * Gets the turn velocity of the robot at a given time.
+     * @param time  The time since the start of the trajectory, in seconds, which is clamped to the trajectory
+     * @return      The turn velocity, in degrees per second, where positive is clockwise
+     */
+    public double getTurnVelocity (double time) {
+        return interpolate(TURN_VELOCITY, time);
+    }
+    
+}
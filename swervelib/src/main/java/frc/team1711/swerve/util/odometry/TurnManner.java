@@ -31,6 +31,20 @@ public class TurnManner extends Manner {
         this.speedSupplier = speedSupplier;
     }
     
+    /**
+     * Constructs a {@link TurnManner} instance where the robot follows a trapezoidal or S-curve
+     * {@link MotionProfile} through a given autonomous {@link RobotTurn}. The profile is generated once when the
+     * turn starts, and the robot's turning speed is found from the time elapsed since then instead of from the
+     * remaining angle, so the robot speeds up and slows down smoothly without crawling near the endpoint.
+     * @param marginOfError         A {@code double} describing how far the robot can be from its endpoint in
+     * order for the turn to be considered finished, in degrees.
+     * @param profileConstraints    The {@link MotionProfile.Constraints} on the profile, in degrees.
+     */
+    public TurnManner (double marginOfError, MotionProfile.Constraints profileConstraints) {
+        super(marginOfError, profileConstraints);
+        this.speedSupplier = profileConstraints::getSpeed;
+    }
+    
     /**
      * Gets the {@link TurnSpeedSupplier} associated with this {@link TurnManner} instance.
      * @return The {@code TurnSpeedSupplier} which describes how quickly the robot
@@ -0,0 +1,211 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * A field-relative route from a starting point through a series of waypoints, which the robot drives through
+ * without stopping at each one. The robot only has to pass within a corner tolerance of each intermediate
+ * waypoint, so it rounds the corner instead of stopping on it, and it carries its velocity through to the next
+ * waypoint. Used by {@link frc.team1711.swerve.commands.WaypointDrive}.
+ * 
+ * <p>When the route is created, the fastest speed the robot can have at each waypoint is found from how sharply
+ * the route turns there: a gentle corner can be rounded at full speed within the tolerance, but a sharp one
+ * can't, and the robot must stop at the final waypoint. Working backwards from the final waypoint, each of these
+ * speeds is also limited by how quickly the robot can slow down for the following waypoints. The robot only
+ * slows down where one of these limits requires it, and speeds up no faster than the maximum acceleration. Both
+ * come from the {@link MotionProfile.Constraints}.</p>
+ * @author Gabriel Seaver
+ */
+public class WaypointPath {
+    
+    // The start of the route followed by the waypoints, so waypoint i is at index i + 1
+    private final double[] xs, ys;
+    private final double cornerTolerance, marginOfError;
+    private final MotionProfile.Constraints constraints;
+    
+    // The fastest speed the robot can have when reaching each waypoint, in inches per second
+    private final double[] arrivalSpeeds;
+    
+    /**
+     * Creates a new {@code WaypointPath}.
+     * @param start             The field-relative location the robot starts from, in inches
+     * @param cornerTolerance   How close the robot must pass to each intermediate waypoint, in inches. A larger
+     * tolerance lets the robot take corners faster.
+     * @param marginOfError     How close the robot must come to the final waypoint, in inches
+     * @param constraints       The {@link MotionProfile.Constraints}, whose maximum velocity and acceleration
+     * limit the robot's speed and how sharply it can round corners
+     * @param waypoints         The field-relative waypoints to drive through, in order, in inches
+     */
+    public WaypointPath (
+            Vector start,
+            double cornerTolerance,
+            double marginOfError,
+            MotionProfile.Constraints constraints,
+            Vector... waypoints) {
+        if (waypoints.length == 0) throw new IllegalArgumentException("at least one waypoint is required");
+        if (!(cornerTolerance >= 0)) throw new IllegalArgumentException("corner tolerance cannot be negative");
+        
+        this.cornerTolerance = cornerTolerance;
+        this.marginOfError = marginOfError;
+        this.constraints = constraints;
+        xs = new double[waypoints.length + 1];
+        ys = new double[waypoints.length + 1];
+        xs[0] = start.getX();
+        ys[0] = start.getY();
+        for (int i = 0; i < waypoints.length; i ++) {
+            xs[i+1] = waypoints[i].getX();
+            ys[i+1] = waypoints[i].getY();
+        }
+        
+        // Work backwards from the final waypoint, where the robot must stop
+        arrivalSpeeds = new double[waypoints.length];
+        final int last = waypoints.length - 1;
+        arrivalSpeeds[last] = 0;
+        for (int i = last - 1; i >= 0; i --) {
+            final double
+                segmentLength = Vector.getMagnitude(getSegmentX(i + 1), getSegmentY(i + 1)),
+                stoppingSpeed = Math.sqrt(arrivalSpeeds[i+1] * arrivalSpeeds[i+1] + 2 * constraints.getMaxAcceleration() * segmentLength);
+            arrivalSpeeds[i] = Math.min(getCornerSpeed(i), Math.min(stoppingSpeed, constraints.getMaxVelocity()));
+        }
+    }
+    
+    /**
+     * Gets the fastest speed the robot can round the corner at an intermediate waypoint, in inches per second.
+     * An arc tangent to both segments which passes cornerTolerance from the waypoint has a radius of
+     * r = cornerTolerance * cos(a / 2) / (1 - cos(a / 2)), where a is the change in direction, and the robot can
+     * follow it at sqrt(maxAcceleration * r).
+     */
+    private double getCornerSpeed (int waypoint) {
+        final double
+            inX = getSegmentX(waypoint), inY = getSegmentY(waypoint),
+            outX = getSegmentX(waypoint + 1), outY = getSegmentY(waypoint + 1);
+        final double inLength = Vector.getMagnitude(inX, inY), outLength = Vector.getMagnitude(outX, outY);
+        if (inLength == 0 || outLength == 0) return constraints.getMaxVelocity();
+        
+        final double
+            cos = (inX * outX + inY * outY) / (inLength * outLength),
+            halfCos = Math.sqrt(Math.max(0, (1 + cos) / 2));
+        if (halfCos >= 1) return constraints.getMaxVelocity();
+        
+        final double radius = cornerTolerance * halfCos / (1 - halfCos);
+        return Math.min(Math.sqrt(constraints.getMaxAcceleration() * radius), constraints.getMaxVelocity());
+    }
+    
+    // Gets the x component of the segment ending at a waypoint, where the first segment starts at the start
+    private double getSegmentX (int waypoint) {
+        return xs[waypoint+1] - xs[waypoint];
+    }
+    
+    // Gets the y component of the segment ending at a waypoint, where the first segment starts at the start
+    private double getSegmentY (int waypoint) {
+        return ys[waypoint+1] - ys[waypoint];
+    }
+    
+    /**
+     * @return The number of waypoints, not including the start
+     */
+    public int getWaypointCount () {
+        return arrivalSpeeds.length;
+    }
+    
+    /**
+     * Gets the fastest speed the robot can have when it reaches a waypoint, which is zero for the final waypoint.
+     * @param waypoint  The index of the waypoint
+     * @return          The speed, in inches per second
+     */
+    public double getArrivalSpeed (int waypoint) {
+        return arrivalSpeeds[waypoint];
+    }
+    
+    /**
+     * Gets whether the robot has rounded the corner at an intermediate waypoint, so it should head for the next
+     * one. This is true once the robot is within the corner tolerance (or the margin of error, if it is larger)
+     * of the waypoint and past the line bisecting the corner there, so it is heading into the next segment.
+     * @param waypoint  The index of the intermediate waypoint
+     * @param x         The robot's field-relative x coordinate, in inches
+     * @param y         The robot's field-relative y coordinate, in inches
+     * @return          Whether the robot has rounded the corner
+     */
+    public boolean hasRoundedCorner (int waypoint, double x, double y) {
+        final double fromX = x - xs[waypoint+1], fromY = y - ys[waypoint+1];
+        final double distance = Vector.getMagnitude(fromX, fromY);
+        if (distance >= Math.max(cornerTolerance, marginOfError)) return false;
+        
+        // The bisector's normal is the sum of the unit directions of the segments before and after the corner
+        final double
+            inX = getSegmentX(waypoint), inY = getSegmentY(waypoint),
+            outX = getSegmentX(waypoint + 1), outY = getSegmentY(waypoint + 1);
+        final double inLength = Vector.getMagnitude(inX, inY), outLength = Vector.getMagnitude(outX, outY);
+        if (inLength == 0 || outLength == 0) return true;
+        final double
+            normalX = inX / inLength + outX / outLength,
+            normalY = inY / inLength + outY / outLength;
+        
+        // If the route doubles back on itself, the robot has to reach the waypoint itself
+        if (Vector.getMagnitude(normalX, normalY) < 1e-9) return distance < marginOfError;
+        return fromX * normalX + fromY * normalY >= 0;
+    }
+    
+    /**
+     * Gets whether the robot is within the margin of error of the final waypoint.
+     * @param x         The robot's field-relative x coordinate, in inches
+     * @param y         The robot's field-relative y coordinate, in inches
+     * @return          Whether the robot has reached the end of the route
+     */
+    public boolean isFinished (double x, double y) {
+        final int last = arrivalSpeeds.length;
+        return Vector.getMagnitude(xs[last] - x, ys[last] - y) < marginOfError;
+    }
+    
+    /**
+     * Gets the speed the robot should drive at towards a waypoint. This is the fastest speed from which the
+     * robot can still slow down to the waypoint's arrival speed, but it can only increase as quickly as the
+     * robot can accelerate.
+     * @param waypoint  The index of the waypoint the robot is driving towards
+     * @param x         The robot's field-relative x coordinate, in inches
+     * @param y         The robot's field-relative y coordinate, in inches
+     * @param lastSpeed The speed returned by the previous call, in inches per second, or the robot's speed
+     * when it starts driving along the route
+     * @param dt        The time since the previous call, in seconds
+     * @return          The speed, in inches per second
+     */
+    public double getSpeed (int waypoint, double x, double y, double lastSpeed, double dt) {
+        final double distance = Vector.getMagnitude(xs[waypoint+1] - x, ys[waypoint+1] - y);
+        return Math.min(
+            Math.min(constraints.getMaxVelocity(), lastSpeed + constraints.getMaxAcceleration() * dt),
+            Math.sqrt(arrivalSpeeds[waypoint] * arrivalSpeeds[waypoint] + 2 * constraints.getMaxAcceleration() * distance));
+    }
+    
+    /**
+     * Gets the field-relative direction the robot should drive in towards a waypoint. This points at the
+     * waypoint, but turns towards the next segment while the robot is inside the corner tolerance.
+     * @param waypoint  The index of the waypoint the robot is driving towards
+     * @param x         The robot's field-relative x coordinate, in inches
+     * @param y         The robot's field-relative y coordinate, in inches
+     * @return          The direction as a unit vector, or {@link Vector#ZERO} if the robot is on the final waypoint
+     */
+    public Vector getDirection (int waypoint, double x, double y) {
+        final double toX = xs[waypoint+1] - x, toY = ys[waypoint+1] - y, distance = Vector.getMagnitude(toX, toY);
+        double directionX = distance > 0 ? toX / distance : 0, directionY = distance > 0 ? toY / distance : 0;
+        
+        final boolean finalWaypoint = waypoint == arrivalSpeeds.length - 1;
+        final double outX = finalWaypoint ? 0 : getSegmentX(waypoint + 1), outY = finalWaypoint ? 0 : getSegmentY(waypoint + 1);
+        final double outLength = Vector.getMagnitude(outX, outY);
+        if (outLength > 0 && distance < cornerTolerance) {
+            final double blend = 1 - distance / cornerTolerance;
+            directionX += blend * (outX / outLength - directionX);
+            directionY += blend * (outY / outLength - directionY);
+            final double directionLength = Vector.getMagnitude(directionX, directionY);
+            if (directionLength > 0) {
+                directionX /= directionLength;
+                directionY /= directionLength;
+            }
+        }
+        
+        return directionX == 0 && directionY == 0 ? Vector.ZERO : new Vector(directionX, directionY);
+    }
+    
+}
@@ -0,0 +1,274 @@
+// SwerveLib - Written and maintained by First Robotics Competition team 1711 The RAPTORS.
+// https://github.com/frc1711/swervelib
+
+package frc.team1711.swerve.util.odometry;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Finds the movement of the robot from the movement of each module, like
+ * {@link SwerveKinematics#toChassisMovement(double[], double[], double[])}, but first rejects modules whose
+ * movement is inconsistent with the rigid-body movement implied by the other modules. This keeps a wheel
+ * which spins out while accelerating, or which is lifted off the ground, from corrupting the robot's position.
+ * 
+ * <p>Every module's movement is compared with the least-squares fit of the other modules. That fit does not have
+ * to be found separately for each module: the difference between a module's movement and the fit of every module
+ * (its residual) is scaled by a 2x2 matrix found from the module geometry, which gives the difference from the fit
+ * of the other modules. If the most inconsistent module's difference is larger than the tolerance, it is rejected
+ * and the remaining modules are fit again. Modules are only rejected while at least three others remain, so a
+ * four-module drive can reject one module per sample. Nothing is allocated, and the cost of checking a sample is
+ * close to the cost of the unchecked fit.</p>
+ * 
+ * <p>The filter is used by {@link Odometry} (see {@link Odometry#setWheelSlipFilter(WheelSlipFilter)}).
+ * Rejection counts can be read from any thread.</p>
+ * @author Gabriel Seaver
+ */
+public class WheelSlipFilter {
+    
+    private final int moduleCount;
+    private final double[] moduleX, moduleY;
+    private final double absoluteTolerance, relativeTolerance;
+    
+    // Scratch arrays for the x and y components of each module's movement, and whether each module is used
+    private final double[] movementX, movementY;
+    private final boolean[] included;
+    
+    // The least-squares fit of the included modules: x movement, y movement, and clockwise rotation in radians
+    private double fitX, fitY, fitRotation;
+    
+    // The inverse of the normal matrix of the last fit, which is symmetric
+    private double i00, i01, i02, i11, i12, i22;
+    
+    private long sampleCount = 0, rejectedSampleCount = 0;
+    private final long[] rejectedCounts;
+    
+    /**
+     * Creates a new {@code WheelSlipFilter}. A module is rejected if its movement differs from the movement
+     * implied by the other modules by more than {@code absoluteTolerance + relativeTolerance * averageDistance},
+     * where {@code averageDistance} is the average distance moved by the modules in the sample.
+     * @param kinematics        The {@link SwerveKinematics} describing the positions of the modules
+     * @param absoluteTolerance The fixed part of the tolerance, in inches, which should be larger than the
+     * encoder noise in a single sample
+     * @param relativeTolerance The part of the tolerance which grows with the distance moved, as a fraction
+     * of the average distance moved by the modules
+     */
+    public WheelSlipFilter (SwerveKinematics kinematics, double absoluteTolerance, double relativeTolerance) {
+        if (absoluteTolerance < 0 || relativeTolerance < 0)
+            throw new IllegalArgumentException("tolerances cannot be negative");
+        
+        this.absoluteTolerance = absoluteTolerance;
+        this.relativeTolerance = relativeTolerance;
+        moduleCount = kinematics.getModuleCount();
+        moduleX = new double[moduleCount];
+        moduleY = new double[moduleCount];
+        for (int i = 0; i < moduleCount; i ++) {
+            final Vector modulePosition = kinematics.getModulePosition(i);
+            moduleX[i] = modulePosition.getX();
+            moduleY[i] = modulePosition.getY();
+        }
+        
+        movementX = new double[moduleCount];
+        movementY = new double[moduleCount];
+        included = new boolean[moduleCount];
+        rejectedCounts = new long[moduleCount];
+    }
+    
+    /**
+     * @return The number of modules on the swerve drive
+     */
+    public int getModuleCount () {
+        return moduleCount;
+    }
+    
+    /**
+     * @return The fixed part of the tolerance, in inches
+     */
+    public double getAbsoluteTolerance () {
+        return absoluteTolerance;
+    }
+    
+    /**
+     * @return The part of the tolerance which grows with the distance moved, as a fraction of the
+     * average distance moved by the modules
+     */
+    public double getRelativeTolerance () {
+        return relativeTolerance;
+    }
+    
+    /**
+     * Calculates the movement of the robot from the movement of each module, rejecting inconsistent modules.
+     * Nothing is allocated by this method.
+     * @param distances     The distance each module has moved, in inches
+     * @param directions    The direction each module moved in, in degrees, relative to the robot. A
+     * direction of zero is directly forwards and an increase in direction is further clockwise.
+     * @param movement      The array to write the robot-relative movement of the robot to, as its x movement,
+     * y movement, and clockwise rotation in degrees
+     * @return              The number of modules rejected
+     */
+    public synchronized int toChassisMovement (double[] distances, double[] directions, double[] movement) {
+        double totalDistance = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            final double radians = Angles.degreesToRadians(directions[i]);
+            movementX[i] = distances[i] * Angles.cos(radians);
+            movementY[i] = distances[i] * Angles.sin(radians);
+            totalDistance += Math.abs(distances[i]);
+        }
+        
+        return filter(totalDistance, movement);
+    }
+    
+    /**
+     * Calculates the movement of the robot from the movement of each module, rejecting inconsistent modules,
+     * with each module's direction given as the components of a unit vector (see
+     * {@link SwerveKinematics#toChassisMovement(double[], double[], double[], double[])}). Nothing is allocated
+     * by this method.
+     * @param distances     The distance each module has moved, in inches
+     * @param directionsX   The x component of a unit vector in the direction each module moved in, relative to the robot
+     * @param directionsY   The y component of a unit vector in the direction each module moved in, relative to the robot
+     * @param movement      The array to write the robot-relative movement of the robot to, as its x movement,
+     * y movement, and clockwise rotation in degrees
+     * @return              The number of modules rejected
+     */
+    public synchronized int toChassisMovement (double[] distances, double[] directionsX, double[] directionsY, double[] movement) {
+        double totalDistance = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            movementX[i] = distances[i] * directionsX[i];
+            movementY[i] = distances[i] * directionsY[i];
+            totalDistance += Math.abs(distances[i]);
+        }
+        
+        return filter(totalDistance, movement);
+    }
+    
+    // Rejects inconsistent modules from the movement in movementX and movementY, and writes the fit of the
+    // remaining modules to movement
+    private int filter (double totalDistance, double[] movement) {
+        for (int i = 0; i < moduleCount; i ++) included[i] = true;
+        
+        final double tolerance = absoluteTolerance + relativeTolerance * totalDistance / moduleCount;
+        final double squaredTolerance = tolerance * tolerance;
+        
+        int includedCount = moduleCount, rejected = 0;
+        fit();
+        
+        // Reject the most inconsistent module while there would still be enough modules left to check each other
+        while (includedCount > 3) {
+            int worst = -1;
+            double worstError = squaredTolerance;
+            for (int i = 0; i < moduleCount; i ++) {
+                if (!included[i]) continue;
+                final double error = getSquaredLeaveOneOutError(i);
+                if (error > worstError) {
+                    worst = i;
+                    worstError = error;
+                }
+            }
+            
+            if (worst < 0) break;
+            
+            included[worst] = false;
+            includedCount --;
+            rejected ++;
+            rejectedCounts[worst] ++;
+            fit();
+        }
+        
+        sampleCount ++;
+        if (rejected > 0) rejectedSampleCount ++;
+        
+        movement[0] = fitX;
+        movement[1] = fitY;
+        movement[2] = Math.toDegrees(fitRotation);
+        return rejected;
+    }
+    
+    // Finds the least-squares fit of the included modules by solving the 3x3 normal equations, where
+    // each module's rows of the design matrix are [1, 0, y] and [0, 1, -x]
+    private void fit () {
+        double n = 0, sumX = 0, sumY = 0, sumSquares = 0;
+        double bX = 0, bY = 0, bRotation = 0;
+        for (int i = 0; i < moduleCount; i ++) {
+            if (!included[i]) continue;
+            final double x = moduleX[i], y = moduleY[i];
+            n ++;
+            sumX += x;
+            sumY += y;
+            sumSquares += x * x + y * y;
+            bX += movementX[i];
+            bY += movementY[i];
+            bRotation += y * movementX[i] - x * movementY[i];
+        }
+        
+        // The normal matrix is [[n, 0, sumY], [0, n, -sumX], [sumY, -sumX, sumSquares]], inverted by cofactors
+        final double det = n * (n * sumSquares - sumX * sumX - sumY * sumY);
+        i00 = (n * sumSquares - sumX * sumX) / det;
+        i01 = -sumX * sumY / det;
+        i02 = -n * sumY / det;
+        i11 = (n * sumSquares - sumY * sumY) / det;
+        i12 = n * sumX / det;
+        i22 = n * n / det;
+        
+        fitX = i00 * bX + i01 * bY + i02 * bRotation;
+        fitY = i01 * bX + i11 * bY + i12 * bRotation;
+        fitRotation = i02 * bX + i12 * bY + i22 * bRotation;
+    }
+    
+    // Gets the squared distance between an included module's movement and the movement implied by the fit of
+    // the other included modules. This is the module's residual r multiplied by (I - H)^-1, where H is the
+    // module's 2x2 block of the hat matrix, so the fit doesn't have to be found again without the module
+    private double getSquaredLeaveOneOutError (int module) {
+        final double x = moduleX[module], y = moduleY[module];
+        final double
+            residualX = movementX[module] - (fitX + fitRotation * y),
+            residualY = movementY[module] - (fitY - fitRotation * x);
+        
+        final double
+            g00 = 1 - (i00 + 2 * y * i02 + y * y * i22),
+            g01 = -(i01 - x * i02 + y * i12 - x * y * i22),
+            g11 = 1 - (i11 - 2 * x * i12 + x * x * i22);
+        final double det = g00 * g11 - g01 * g01;
+        
+        // The other modules don't determine the movement, so they can't be used to check this module
+        if (Math.abs(det) < 1e-9) return 0;
+        
+        final double
+            errorX = (g11 * residualX - g01 * residualY) / det,
+            errorY = (g00 * residualY - g01 * residualX) / det;
+        return errorX * errorX + errorY * errorY;
+    }
+    
+    /**
+     * @return The number of samples which have been checked
+     */
+    public synchronized long getSampleCount () {
+        return sampleCount;
+    }
+    
+    /**
+     * @return The number of samples in which at least one module was rejected
+     */
+    public synchronized long getRejectedSampleCount () {
+        return rejectedSampleCount;
+    }
+    
+    /**
+     * Gets the number of samples in which a module was rejected.
+     * @param module    The index of the module
+     * @return          The number of samples in which the module was rejected
+     */
+    public synchronized long getRejectedCount (int module) {
+        return rejectedCounts[module];
+    }
+    
+    /**
+     * Resets every sample and rejection count to zero.
+     */
+    public synchronized void resetCounts () {
+        sampleCount = 0;
+        rejectedSampleCount = 0;
+        for (int i = 0; i < moduleCount; i ++) rejectedCounts[i] = 0;
+    }
+    
+}
@@ -0,0 +1,93 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Rotation;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Checks the constant-time angle wrapping in {@link Angles} and the {@link Rotation} value type.
+ */
+public class AnglesTest {
+    
+    @Test
+    public void wrappingMatchesRepeatedSubtraction () {
+        final Random random = new Random(1711);
+        for (int i = 0; i < 1000000; i ++) {
+            final double degrees = (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(5));
+            
+            // Subtracting 360 is exact at these magnitudes, so the results should be identical
+            assertEquals(wrapByLoop(degrees, 0), Angles.wrapDegrees(degrees), 0);
+            assertEquals(wrapByLoop(degrees, -180), Angles.wrapDegreesZeroCenter(degrees), 0);
+            
+            final double radians = Math.toRadians(degrees);
+            assertEquals(Math.sin(radians), Math.sin(Angles.wrapRadians(radians)), 1e-9);
+            assertEquals(Math.sin(radians), Math.sin(Angles.wrapRadiansZeroCenter(radians)), 1e-9);
+        }
+    }
+    
+    @Test
+    public void wrappingStaysInRange () {
+        final double[] angles = { 0, -0.0, 360, -360, 180, -180, 1e-300, -1e-300, -1e-20, 1e9 + 0.5, -1e12, 3.6e15 };
+        for (double angle : angles) {
+            final double wrapped = Angles.wrapDegrees(angle), centered = Angles.wrapDegreesZeroCenter(angle);
+            assertTrue(wrapped >= 0 && wrapped < 360);
+            assertTrue(centered >= -180 && centered < 180);
+            
+            final double radians = Angles.wrapRadians(angle), centeredRadians = Angles.wrapRadiansZeroCenter(angle);
+            assertTrue(radians >= 0 && radians < Angles.TAU);
+            assertTrue(centeredRadians >= -Angles.PI && centeredRadians < Angles.PI);
+        }
+        
+        assertEquals(0.5, Angles.wrapDegrees(360.0 * 2777777 + 0.5), 0);
+        assertTrue(Double.isNaN(Angles.wrapDegrees(Double.POSITIVE_INFINITY)));
+        assertTrue(Double.isNaN(Angles.wrapDegreesZeroCenter(Double.NaN)));
+    }
+    
+    @Test
+    public void rotationsMatchTrigonometry () {
+        final Random random = new Random(1711);
+        for (int i = 0; i < 100000; i ++) {
+            final double a = random.nextDouble() * 1440 - 720, b = random.nextDouble() * 1440 - 720;
+            final Rotation rotationA = Rotation.fromDegrees(a), rotationB = Rotation.fromDegrees(b);
+            
+            assertRotation(a + b, rotationA.plus(rotationB));
+            assertRotation(a - b, rotationA.minus(rotationB));
+            assertRotation(-a, rotationA.inverse());
+            
+            final Vector vector = new Vector(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            final Vector rotated = rotationA.rotate(vector), expected = vector.toRotationDegrees(vector.getRotationDegrees() + a);
+            assertEquals(expected.getX(), rotated.getX(), 1e-9);
+            assertEquals(expected.getY(), rotated.getY(), 1e-9);
+            
+            final Vector unrotated = rotationA.unrotate(rotated);
+            assertEquals(vector.getX(), unrotated.getX(), 1e-9);
+            assertEquals(vector.getY(), unrotated.getY(), 1e-9);
+            
+            assertRotation(vector.getRotationDegrees(), Rotation.fromDirection(vector.getX(), vector.getY()));
+        }
+        
+        assertEquals(Rotation.ZERO, Rotation.fromDirection(0, 0));
+    }
+    
+    // Checks that a rotation has the given angle, and the cosine and sine of that angle
+    private static void assertRotation (double degrees, Rotation rotation) {
+        assertEquals(0, Angles.wrapDegreesZeroCenter(Angles.wrapDegrees(degrees) - rotation.getDegrees()), 1e-9);
+        assertEquals(Math.cos(Math.toRadians(degrees)), rotation.getCos(), 1e-9);
+        assertEquals(Math.sin(Math.toRadians(degrees)), rotation.getSin(), 1e-9);
+    }
+    
+    // The loop which wrapping used before it took constant time
+    private static double wrapByLoop (double degrees, double start) {
+        while (degrees >= start + 360) degrees -= 360;
+        while (degrees < start) degrees += 360;
+        return degrees;
+    }
+    
+}
@@ -0,0 +1,151 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.subsystems.SwerveWheel;
+
+/**
+ * Checks that {@link SwerveWheel} command deduplication only suppresses set-points within its tolerances, sends
+ * them again after the refresh interval and after the wheel stops, and counts exactly the commands it sent.
+ */
+public class CommandDeduplicationTest {
+    
+    @Test
+    public void suppressesOnlyCommandsWithinTolerances () {
+        final RecordingWheel wheel = new RecordingWheel();
+        wheel.enableCommandDeduplication(2, 0.05, 0.5);
+        
+        // The first set-points are always sent
+        wheel.drive(0, 10, 0.5);
+        wheel.assertSent("direction 10.0", "speed 0.5");
+        
+        // Both are within the tolerances of the last set-points sent
+        wheel.drive(0.1, 11, 0.53);
+        wheel.assertSent();
+        
+        // Tolerances are measured from what was last sent, not last requested, so small steps add up
+        wheel.drive(0.2, 13, 0.54);
+        wheel.assertSent("direction 13.0");
+        wheel.drive(0.3, 13, 0.56);
+        wheel.assertSent("speed 0.56");
+        
+        // Directions are compared across 0 and 360 degrees
+        wheel.drive(0.35, 359, 0.56);
+        wheel.assertSent("direction 359.0");
+        wheel.drive(0.4, 1, 0.56);
+        wheel.assertSent();
+        
+        assertEquals(5, wheel.getSentCommandCount());
+        assertEquals(7, wheel.getSuppressedCommandCount());
+    }
+    
+    @Test
+    public void refreshesUnchangedCommands () {
+        final RecordingWheel wheel = new RecordingWheel();
+        wheel.enableCommandDeduplication(2, 0.05, 0.5);
+        wheel.drive(0, 10, 0.5);
+        wheel.drive(0.2, 10, 0.6);
+        wheel.assertSent("direction 10.0", "speed 0.5", "speed 0.6");
+        
+        // Each set-point is refreshed once the interval has passed since it was last sent
+        wheel.drive(0.49, 10, 0.6);
+        wheel.assertSent();
+        wheel.drive(0.5, 10, 0.6);
+        wheel.assertSent("direction 10.0");
+        wheel.drive(0.75, 10, 0.6);
+        wheel.assertSent("speed 0.6");
+        
+        assertEquals(5, wheel.getSentCommandCount());
+        assertEquals(5, wheel.getSuppressedCommandCount());
+    }
+    
+    @Test
+    public void sendsDirectionAfterStopping () {
+        final RecordingWheel wheel = new RecordingWheel();
+        wheel.enableCommandDeduplication(2, 0.05, 0.5);
+        wheel.drive(0, 10, 0.5);
+        
+        // Stopping is always sent, and the wheel is no longer steering, so the same direction is sent again.
+        // The speed is now zero, so a speed close to zero isn't
+        wheel.stop();
+        wheel.assertSent("direction 10.0", "speed 0.5", "speed 0.0", "stop steering");
+        wheel.drive(0.1, 10, 0.02);
+        wheel.assertSent("direction 10.0");
+        wheel.drive(0.2, 10, 0.3);
+        wheel.assertSent("speed 0.3");
+        
+        assertEquals(6, wheel.getSentCommandCount());
+        assertEquals(2, wheel.getSuppressedCommandCount());
+        
+        wheel.resetCommandCounts();
+        assertEquals(0, wheel.getSentCommandCount());
+        assertEquals(0, wheel.getSuppressedCommandCount());
+    }
+    
+    @Test
+    public void sendsEveryCommandWhenDisabled () {
+        final RecordingWheel wheel = new RecordingWheel();
+        wheel.enableCommandDeduplication(2, 0.05, 0.5);
+        wheel.drive(0, 10, 0.5);
+        wheel.disableCommandDeduplication();
+        wheel.drive(0.1, 10, 0.5);
+        wheel.assertSent("direction 10.0", "speed 0.5", "direction 10.0", "speed 0.5");
+        
+        assertEquals(4, wheel.getSentCommandCount());
+        assertEquals(0, wheel.getSuppressedCommandCount());
+    }
+    
+    // A wheel facing forwards which records every command it is sent, with a clock set by each call to drive
+    private static class RecordingWheel extends SwerveWheel {
+        
+        private final List<String> commands = new ArrayList<>();
+        private int checkedCommands = 0;
+        private double time = 0;
+        
+        // Steers and drives at a given time. Every direction used is within 90 degrees of forwards, so the wheel
+        // never reverses
+        void drive (double time, double direction, double speed) {
+            this.time = time;
+            steerAndDrive(direction, speed);
+        }
+        
+        // Checks the commands sent since the last check, and that the sent count matches every command recorded
+        void assertSent (String... expected) {
+            assertEquals(List.of(expected), commands.subList(checkedCommands, commands.size()));
+            checkedCommands = commands.size();
+            assertEquals(commands.size(), getSentCommandCount());
+        }
+        
+        @Override
+        protected void setDriveSpeed (double speed) {
+            commands.add("speed " + speed);
+        }
+        
+        @Override
+        protected void stopSteering () {
+            commands.add("stop steering");
+        }
+        
+        @Override
+        protected void setDirection (double targetDirection) {
+            commands.add("direction " + targetDirection);
+        }
+        
+        @Override
+        public double getDirection () {
+            return 0;
+        }
+        
+        @Override
+        protected double getCommandTimestamp () {
+            return time;
+        }
+        
+    }
+    
+}
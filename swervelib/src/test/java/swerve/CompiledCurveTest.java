@@ -0,0 +1,115 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.CompiledCurve;
+import frc.team1711.swerve.util.InputHandler;
+import frc.team1711.swerve.util.SplineCurve;
+
+/**
+ * Checks that {@link CompiledCurve} matches the source curve at its table entries and stays within its error
+ * between them, and that {@link SplineCurve} passes through its control points without overshooting them.
+ */
+public class CompiledCurveTest {
+    
+    @Test
+    public void compiledCurvesAreWithinError () {
+        final InputHandler.Curve[] sources = {
+            x -> Math.pow(x, 1.5),
+            x -> x * x * x,
+            x -> Math.sin(x * Math.PI / 2),
+            x -> (Math.exp(4 * x) - 1) / (Math.exp(4) - 1),
+        };
+        
+        final Random random = new Random(1711);
+        for (InputHandler.Curve source : sources) {
+            for (double maxError : new double[] { 1e-3, 1e-5, 1e-7 }) {
+                final CompiledCurve compiled = CompiledCurve.compile(source, maxError);
+                assertEquals(source.getOutput(0), compiled.getOutput(0), 0);
+                assertEquals(source.getOutput(1), compiled.getOutput(1), 0);
+                for (int i = 0; i < 100000; i ++) {
+                    final double input = random.nextDouble();
+                    assertEquals(source.getOutput(input), compiled.getOutput(input), maxError);
+                }
+            }
+        }
+        
+        final InputHandler.Curve threeHalves = InputHandler.Curve.threeHalvesPowerCurve;
+        for (int i = 0; i <= 100000; i ++) {
+            final double input = i / 100000.0;
+            assertEquals(Math.pow(input, 1.5), threeHalves.getOutput(input), 1e-6);
+        }
+    }
+    
+    @Test
+    public void compiledCurvesAreExactAtTableEntriesAndWithinErrorBetween () {
+        final InputHandler.Curve[] sources = {
+            x -> Math.pow(x, 1.5),
+            x -> Math.sin(x * Math.PI / 2),
+            new SplineCurve(new double[] { 0, 0.1, 0.15, 0.5, 0.9, 1 }, new double[] { 0, 0, 0.05, 0.2, 0.7, 1 }),
+        };
+        
+        for (InputHandler.Curve source : sources) {
+            for (double maxError : new double[] { 1e-3, 1e-5 }) {
+                final CompiledCurve compiled = CompiledCurve.compile(source, maxError);
+                final int intervals = compiled.getTableSize() - 1;
+                
+                // Find the largest error at many points between every pair of table entries, not just where
+                // the compiled curve was checked when it was created
+                double largestError = 0;
+                for (int i = 0; i < intervals; i ++) {
+                    final double entry = (double)i / intervals;
+                    assertEquals(source.getOutput(entry), compiled.getOutput(entry), 0);
+                    for (int j = 1; j < 64; j ++) {
+                        final double input = (i + j / 64.0) / intervals;
+                        largestError = Math.max(largestError, Math.abs(source.getOutput(input) - compiled.getOutput(input)));
+                    }
+                }
+                
+                assertTrue(largestError <= maxError);
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void discontinuousCurvesCannotBeCompiled () {
+        CompiledCurve.compile(x -> x < 1 / Math.PI ? 0 : 1, 1e-3);
+    }
+    
+    @Test
+    public void splinesPassThroughControlPointsMonotonically () {
+        final double[] xs = { 0, 0.1, 0.15, 0.5, 0.9, 1 }, ys = { 0, 0, 0.05, 0.2, 0.7, 1 };
+        final SplineCurve spline = new SplineCurve(xs, ys);
+        for (int i = 0; i < xs.length; i ++) assertEquals(ys[i], spline.getOutput(xs[i]), 1e-12);
+        
+        // The curve should never fall, and should stay flat where the control points are flat
+        double previous = 0;
+        for (int i = 0; i <= 100000; i ++) {
+            final double input = i / 100000.0, output = spline.getOutput(input);
+            assertTrue(output >= previous - 1e-15);
+            if (input <= 0.1) assertEquals(0, output, 1e-15);
+            previous = output;
+        }
+        
+        // The compiled spline never falls either
+        final CompiledCurve compiled = CompiledCurve.fromControlPoints(xs, ys, 1e-5);
+        previous = 0;
+        for (int i = 0; i <= 100000; i ++) {
+            final double input = i / 100000.0, output = compiled.getOutput(input);
+            assertEquals(spline.getOutput(input), output, 1e-5);
+            assertTrue(output >= previous);
+            previous = output;
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void splineControlPointsMustIncrease () {
+        new SplineCurve(new double[] { 0, 0.5, 0.5, 1 }, new double[] { 0, 0.2, 0.3, 1 });
+    }
+    
+}
@@ -0,0 +1,129 @@
+package swerve;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.FastMath;
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Compares the speed of {@link FastMath} with {@link Math}, both for single functions and for the
+ * {@link Vector} and {@link SwerveKinematics} operations built on them. Ignored by default because
+ * timing results depend on the machine; remove {@code @Ignore} to run it.
+ */
+@Ignore
+public class FastMathBenchmark {
+    
+    private static final int SIZE = 4096;
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 500;
+    
+    // Consumes results so the JIT cannot remove the measured work
+    private static double sink;
+    
+    private interface Operation {
+        double run (double[] a, double[] b);
+    }
+    
+    @Test
+    public void benchmarkTrigonometry () {
+        final double[] angles = new double[SIZE], xs = new double[SIZE], ys = new double[SIZE];
+        for (int i = 0; i < SIZE; i ++) {
+            angles[i] = (i * 0.618033988749895 % 1) * 4 * Math.PI - 2 * Math.PI;
+            xs[i] = Math.cos(angles[i]) * (1 + i % 7);
+            ys[i] = Math.sin(angles[i]) * (1 + i % 7);
+        }
+        
+        compare("sin", (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += Math.sin(a[i]);
+            return sum;
+        }, (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += FastMath.sin(a[i]);
+            return sum;
+        }, angles, null);
+        
+        compare("cos", (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += Math.cos(a[i]);
+            return sum;
+        }, (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += FastMath.cos(a[i]);
+            return sum;
+        }, angles, null);
+        
+        compare("atan2", (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += Math.atan2(a[i], b[i]);
+            return sum;
+        }, (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += FastMath.atan2(a[i], b[i]);
+            return sum;
+        }, ys, xs);
+        
+        final Operation rotation = (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += Vector.getRotationDegrees(a[i], b[i]);
+            return sum;
+        };
+        compareModes("Vector.getRotationDegrees", rotation, xs, ys);
+        
+        final Operation rotate = (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i ++) sum += new Vector(a[i], b[i]).rotateDegrees(37).getX();
+            return sum;
+        };
+        compareModes("Vector.rotateDegrees", rotate, xs, ys);
+        
+        final SwerveKinematics kinematics = SwerveKinematics.rectangular(1.2);
+        final double[] distances = new double[4], directions = new double[4], movement = new double[3];
+        final Operation chassisMovement = (a, b) -> {
+            double sum = 0;
+            for (int i = 0; i < SIZE; i += 4) {
+                for (int m = 0; m < 4; m ++) {
+                    distances[m] = b[i + m];
+                    directions[m] = a[i + m] * 57.3;
+                }
+                kinematics.toChassisMovement(distances, directions, movement);
+                sum += movement[0];
+            }
+            return sum;
+        };
+        compareModes("SwerveKinematics.toChassisMovement", chassisMovement, angles, xs);
+    }
+    
+    // Measures an exact and a fast version of the same operation
+    private static void compare (String name, Operation exact, Operation fast, double[] a, double[] b) {
+        report(name, measure(exact, a, b), measure(fast, a, b));
+    }
+    
+    // Measures an operation with fast math turned off and then on
+    private static void compareModes (String name, Operation operation, double[] a, double[] b) {
+        Angles.setFastMath(false);
+        final double exact = measure(operation, a, b);
+        Angles.setFastMath(true);
+        final double fast = measure(operation, a, b);
+        Angles.setFastMath(false);
+        report(name, exact, fast);
+    }
+    
+    private static double measure (Operation operation, double[] a, double[] b) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i ++) sink += operation.run(a, b);
+        
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i ++) sink += operation.run(a, b);
+        final long elapsed = System.nanoTime() - start;
+        
+        return (double)elapsed / ITERATIONS / SIZE;
+    }
+    
+    private static void report (String name, double exactNanos, double fastNanos) {
+        System.out.printf("%s: %.2f ns exact, %.2f ns fast (%.1fx)%n", name, exactNanos, fastNanos, exactNanos / fastNanos);
+    }
+    
+}
@@ -0,0 +1,97 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.FastMath;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Checks the approximations in {@link FastMath} against {@link Math}, using the error bounds documented
+ * in {@code FastMath}.
+ */
+public class FastMathTest {
+    
+    private static final double SIN_COS_BOUND = 2e-9, ATAN2_BOUND = 5e-10;
+    
+    @After
+    public void turnOffFastMath () {
+        Angles.setFastMath(false);
+    }
+    
+    @Test
+    public void sinAndCosAreWithinBounds () {
+        // A dense sweep over a few revolutions, which covers every quadrant and the edges of the reduced range
+        for (int i = -400000; i <= 400000; i ++) {
+            final double radians = i * 1e-4;
+            assertEquals(Math.sin(radians), FastMath.sin(radians), SIN_COS_BOUND);
+            assertEquals(Math.cos(radians), FastMath.cos(radians), SIN_COS_BOUND);
+        }
+        
+        // Random angles up to and beyond the largest reduced angle
+        final Random random = new Random(1711);
+        for (int i = 0; i < 1000000; i ++) {
+            final double radians = (random.nextDouble() * 2 - 1) * Math.pow(10, random.nextInt(8));
+            assertEquals(Math.sin(radians), FastMath.sin(radians), SIN_COS_BOUND);
+            assertEquals(Math.cos(radians), FastMath.cos(radians), SIN_COS_BOUND);
+        }
+        
+        assertTrue(Double.isNaN(FastMath.sin(Double.NaN)));
+        assertTrue(Double.isNaN(FastMath.cos(Double.POSITIVE_INFINITY)));
+    }
+    
+    @Test
+    public void atan2IsWithinBounds () {
+        final Random random = new Random(1711);
+        for (int i = 0; i < 1000000; i ++) {
+            final double scale = Math.pow(10, random.nextInt(13) - 6);
+            final double y = (random.nextDouble() * 2 - 1) * scale, x = (random.nextDouble() * 2 - 1) * scale;
+            assertEquals(Math.atan2(y, x), FastMath.atan2(y, x), ATAN2_BOUND);
+        }
+        
+        // The axes, the diagonals, and the octant boundaries
+        for (int i = 0; i < 16; i ++) {
+            final double radians = i * Math.PI / 8;
+            final double y = Math.sin(radians), x = Math.cos(radians);
+            assertEquals(Math.atan2(y, x), FastMath.atan2(y, x), ATAN2_BOUND);
+        }
+        
+        assertEquals(Math.atan2(0.0, -1.0), FastMath.atan2(0.0, -1.0), 0);
+        assertEquals(Math.atan2(-0.0, -1.0), FastMath.atan2(-0.0, -1.0), 0);
+        assertEquals(0, FastMath.atan2(0, 0), 0);
+        assertTrue(Double.isNaN(FastMath.atan2(Double.NaN, 1)));
+    }
+    
+    @Test
+    public void fastVectorsMatchExactVectors () {
+        final Random random = new Random(1711);
+        for (int i = 0; i < 100000; i ++) {
+            final Vector vector = new Vector(random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100);
+            final double degrees = random.nextDouble() * 720 - 360;
+            
+            Angles.setFastMath(false);
+            final double exactRotation = vector.getRotationRadians();
+            final Vector exactRotated = vector.rotateDegrees(degrees);
+            final Vector exactPolar = Vector.fromPolarDegrees(degrees, 10);
+            
+            Angles.setFastMath(true);
+            final double fastRotation = vector.getRotationRadians();
+            final Vector fastRotated = vector.rotateDegrees(degrees);
+            final Vector fastPolar = Vector.fromPolarDegrees(degrees, 10);
+            
+            // Rotations on either side of zero are equivalent
+            assertEquals(0, Angles.wrapRadiansZeroCenter(fastRotation - exactRotation), 1e-9);
+            assertEquals(exactRotated.getX(), fastRotated.getX(), 1e-6);
+            assertEquals(exactRotated.getY(), fastRotated.getY(), 1e-6);
+            assertEquals(exactPolar.getX(), fastPolar.getX(), 1e-7);
+            assertEquals(exactPolar.getY(), fastPolar.getY(), 1e-7);
+        }
+    }
+    
+}
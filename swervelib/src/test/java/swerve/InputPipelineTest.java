@@ -0,0 +1,95 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.InputHandler;
+import frc.team1711.swerve.util.InputPipeline;
+import frc.team1711.swerve.util.Vector;
+
+/**
+ * Checks each stage of {@link InputPipeline}, and that a pipeline with no optional stages gives exactly
+ * the same outputs as applying an {@link InputHandler} and scaling by the speeds.
+ */
+public class InputPipelineTest {
+    
+    @Test
+    public void defaultPipelineMatchesInputHandler () {
+        final InputHandler inputHandler = new InputHandler(0.1, InputHandler.Curve.squareCurve);
+        final InputPipeline pipeline = new InputPipeline(inputHandler, 0.8, 0.6);
+        
+        final Random random = new Random(1711);
+        for (int i = 0; i < 100000; i ++) {
+            final double x = random.nextDouble() * 2 - 1, y = random.nextDouble() * 2 - 1, s = random.nextDouble() * 2 - 1;
+            pipeline.process(x, y, s, i * 0.02);
+            
+            final double strafeScale = inputHandler.getVectorScale(x, y);
+            assertEquals(x * strafeScale * 0.8, pipeline.getStrafeX(), 0);
+            assertEquals(y * strafeScale * 0.8, pipeline.getStrafeY(), 0);
+            assertEquals(inputHandler.apply(s) * 0.6, pipeline.getSteering(), 0);
+        }
+    }
+    
+    @Test
+    public void slewRateLimitsChange () {
+        final InputPipeline pipeline = new InputPipeline(new InputHandler(0, InputHandler.Curve.linearCurve), 1, 1);
+        pipeline.setSlewRateLimits(2, 4);
+        
+        // The first call holds the outputs at zero, then they ramp at the slew rates
+        pipeline.process(0.6, 0.8, -1, 0);
+        assertEquals(0, pipeline.getStrafeY(), 0);
+        for (int i = 1; i <= 10; i ++) {
+            pipeline.process(0.6, 0.8, -1, i * 0.02);
+            assertEquals(Math.min(0.04 * i, 1), Vector.getMagnitude(pipeline.getStrafeX(), pipeline.getStrafeY()), 1e-12);
+            assertEquals(0.8 / 0.6, pipeline.getStrafeY() / pipeline.getStrafeX(), 1e-12);
+            assertEquals(-Math.min(0.08 * i, 1), pipeline.getSteering(), 1e-12);
+        }
+        
+        // The strafe input reaches full speed after half a second
+        for (int i = 11; i <= 30; i ++) pipeline.process(0.6, 0.8, -1, i * 0.02);
+        assertEquals(0.6, pipeline.getStrafeX(), 1e-12);
+        assertEquals(0.8, pipeline.getStrafeY(), 1e-12);
+        
+        pipeline.reset();
+        pipeline.process(0.6, 0.8, -1, 1);
+        assertEquals(0, pipeline.getStrafeX(), 0);
+        assertEquals(0, pipeline.getSteering(), 0);
+    }
+    
+    @Test
+    public void filterFollowsTimeConstant () {
+        final InputPipeline pipeline = new InputPipeline(new InputHandler(0, InputHandler.Curve.linearCurve), 1, 1);
+        pipeline.setFilterTimeConstant(0.1);
+        
+        pipeline.process(0, 1, 1, 0);
+        double previous = 0;
+        for (int i = 1; i <= 500; i ++) {
+            pipeline.process(0, 1, 1, i * 0.001);
+            assertTrue(pipeline.getStrafeY() > previous);
+            previous = pipeline.getStrafeY();
+            if (i == 100) assertEquals(1 - Math.exp(-1), pipeline.getStrafeY(), 2e-3);
+        }
+        assertEquals(1, pipeline.getStrafeY(), 1e-2);
+        assertEquals(pipeline.getStrafeY(), pipeline.getSteering(), 1e-15);
+    }
+    
+    @Test
+    public void rotationPriorityKeepsSteering () {
+        final InputPipeline pipeline = new InputPipeline(new InputHandler(0, InputHandler.Curve.linearCurve), 1, 0.5);
+        pipeline.setRotationPriority(true);
+        
+        pipeline.process(0.6, 0.8, 1, 0);
+        assertEquals(0.5, pipeline.getSteering(), 0);
+        assertEquals(0.3, pipeline.getStrafeX(), 1e-12);
+        assertEquals(0.4, pipeline.getStrafeY(), 1e-12);
+        
+        // Strafe vectors which already leave room for steering are not changed
+        pipeline.process(0.3, 0, 1, 0);
+        assertEquals(0.3, pipeline.getStrafeX(), 0);
+    }
+    
+}
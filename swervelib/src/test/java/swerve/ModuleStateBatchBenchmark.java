@@ -0,0 +1,70 @@
+package swerve;
+
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.kinematics.ModuleStateBatch;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Measures the throughput of {@link ModuleStateBatch} on a single core. Ignored by default
+ * because timing results depend on the machine; remove {@code @Ignore} to run it. The outputs
+ * are checked against {@link SwerveKinematics} in {@code ModuleStateBatchTest}.
+ */
+@Ignore
+public class ModuleStateBatchBenchmark {
+    
+    private static final int BATCH_SIZE = 16384;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 200;
+    
+    @Test
+    public void benchmarkBatchThroughput () {
+        final SwerveKinematics kinematics = SwerveKinematics.rectangular(1.2);
+        final int moduleCount = kinematics.getModuleCount();
+        final ModuleStateBatch batch = new ModuleStateBatch(kinematics, BATCH_SIZE);
+        
+        final double[]
+            strafeX = new double[BATCH_SIZE],
+            strafeY = new double[BATCH_SIZE],
+            steering = new double[BATCH_SIZE];
+        final double[][]
+            speeds = new double[moduleCount][BATCH_SIZE],
+            directions = new double[moduleCount][BATCH_SIZE];
+        
+        final Random random = new Random(1711);
+        for (int i = 0; i < BATCH_SIZE; i ++) {
+            strafeX[i] = random.nextDouble() * 2 - 1;
+            strafeY[i] = random.nextDouble() * 2 - 1;
+            steering[i] = random.nextDouble() * 2 - 1;
+        }
+        
+        report("speeds only", measure(batch, strafeX, strafeY, steering, speeds, null));
+        report("speeds and directions", measure(batch, strafeX, strafeY, steering, speeds, directions));
+    }
+    
+    private static double measure (
+            ModuleStateBatch batch,
+            double[] strafeX,
+            double[] strafeY,
+            double[] steering,
+            double[][] speeds,
+            double[][] directions) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i ++)
+            batch.toModuleStates(strafeX, strafeY, steering, BATCH_SIZE, speeds, directions);
+        
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i ++)
+            batch.toModuleStates(strafeX, strafeY, steering, BATCH_SIZE, speeds, directions);
+        final long elapsed = System.nanoTime() - start;
+        
+        return (double)BATCH_SIZE * ITERATIONS / (elapsed / 1e9);
+    }
+    
+    private static void report (String name, double commandsPerSecond) {
+        System.out.printf("ModuleStateBatch (%s): %.2f million commands per second per core%n", name, commandsPerSecond / 1e6);
+    }
+    
+}
@@ -0,0 +1,77 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.ModuleStateBatch;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Checks that {@link ModuleStateBatch} gives exactly the same module states as converting commands one
+ * at a time with {@link SwerveKinematics}.
+ */
+public class ModuleStateBatchTest {
+    
+    private static final int BATCH_SIZE = 4096;
+    
+    @Test
+    public void rectangularBatchMatchesSingleCommands () {
+        checkBatch(SwerveKinematics.rectangular(1.2));
+    }
+    
+    @Test
+    public void irregularBatchMatchesSingleCommands () {
+        checkBatch(new SwerveKinematics(
+            new Vector(-10, 14),
+            new Vector(12, 9),
+            new Vector(0, -15)));
+    }
+    
+    private static void checkBatch (SwerveKinematics kinematics) {
+        final int moduleCount = kinematics.getModuleCount();
+        final ModuleStateBatch batch = new ModuleStateBatch(kinematics, BATCH_SIZE);
+        
+        final double[]
+            strafeX = new double[BATCH_SIZE],
+            strafeY = new double[BATCH_SIZE],
+            steering = new double[BATCH_SIZE];
+        final double[][]
+            speeds = new double[moduleCount][BATCH_SIZE],
+            directions = new double[moduleCount][BATCH_SIZE],
+            speedsOnly = new double[moduleCount][BATCH_SIZE];
+        
+        // Commands go past full speed so desaturation is covered as well
+        final Random random = new Random(1711);
+        for (int i = 0; i < BATCH_SIZE; i ++) {
+            strafeX[i] = random.nextDouble() * 3 - 1.5;
+            strafeY[i] = random.nextDouble() * 3 - 1.5;
+            steering[i] = random.nextDouble() * 3 - 1.5;
+        }
+        
+        batch.toModuleStates(strafeX, strafeY, steering, BATCH_SIZE, speeds, directions);
+        batch.toModuleStates(strafeX, strafeY, steering, BATCH_SIZE, speedsOnly, null);
+        
+        final double[] singleSpeeds = new double[moduleCount], singleDirections = new double[moduleCount];
+        for (int i = 0; i < BATCH_SIZE; i ++) {
+            kinematics.toModuleStates(strafeX[i], strafeY[i], steering[i], singleSpeeds, singleDirections);
+            for (int m = 0; m < moduleCount; m ++) {
+                assertEquals(singleSpeeds[m], speeds[m][i], 0);
+                assertEquals(singleSpeeds[m], speedsOnly[m][i], 0);
+                assertEquals(singleDirections[m], directions[m][i], 0);
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBatchesOverCapacity () {
+        final SwerveKinematics kinematics = SwerveKinematics.rectangular(1);
+        final ModuleStateBatch batch = new ModuleStateBatch(kinematics, 2);
+        final double[] inputs = new double[3];
+        batch.toModuleStates(inputs, inputs, inputs, 3, new double[4][3], null);
+    }
+    
+}
@@ -0,0 +1,148 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.odometry.MotionProfile;
+
+/**
+ * Checks that trapezoidal and S-curve {@link MotionProfile}s reach their distance, stay within their
+ * constraints, and take the time expected from their closed forms.
+ */
+public class MotionProfileTest {
+
+    private static final double DT = 1e-4;
+
+    @Test
+    public void trapezoidalDurations () {
+        // Reaches the maximum velocity: 1 s to speed up and slow down, covering 100 in, then 1 s cruising 100 in
+        final MotionProfile cruising = new MotionProfile(200, MotionProfile.Constraints.trapezoidal(150, 100, 100));
+        assertEquals(3, cruising.getDuration(), 1e-12);
+        assertEquals(100, cruising.getVelocity(1.5), 1e-12);
+
+        // Triangular: never reaches the maximum velocity
+        final MotionProfile triangular = new MotionProfile(25, MotionProfile.Constraints.trapezoidal(150, 100, 100));
+        assertEquals(1, triangular.getDuration(), 1e-12);
+        assertEquals(50, triangular.getVelocity(0.5), 1e-12);
+    }
+
+    @Test
+    public void sCurveDurations () {
+        // Full S-curve: 0.5 s of jerk at each end of each acceleration phase
+        final MotionProfile full = new MotionProfile(500, MotionProfile.Constraints.sCurve(150, 100, 100, 200));
+        assertEquals(100 / 100.0 + 100 / 200.0 + 500 / 100.0, full.getDuration(), 1e-12);
+
+        // Short distances lower the peak velocity, and then the peak acceleration
+        for (double distance : new double[] { 100, 30, 5, 0.01 }) {
+            final MotionProfile profile = new MotionProfile(distance, MotionProfile.Constraints.sCurve(150, 100, 100, 200));
+            assertEquals(distance, profile.getPosition(profile.getDuration() - 1e-12), 1e-9);
+        }
+    }
+
+    @Test
+    public void profilesStayWithinConstraints () {
+        final MotionProfile.Constraints[] constraints = {
+            MotionProfile.Constraints.trapezoidal(150, 120, 200),
+            MotionProfile.Constraints.sCurve(150, 120, 200, 800),
+            MotionProfile.Constraints.sCurve(150, 120, 200, 50),
+        };
+
+        for (MotionProfile.Constraints constraint : constraints) {
+            for (double distance : new double[] { 0, 0.5, 12, 60, 300 }) {
+                final MotionProfile profile = new MotionProfile(distance, constraint);
+                double previousPosition = 0, previousVelocity = 0, previousAcceleration = 0;
+                for (double time = DT; time < profile.getDuration() + 0.1; time += DT) {
+                    final double
+                        position = profile.getPosition(time),
+                        velocity = profile.getVelocity(time),
+                        acceleration = profile.getAcceleration(time);
+
+                    assertTrue(position >= previousPosition && position <= distance);
+                    assertTrue(velocity <= constraint.getMaxVelocity() + 1e-9);
+                    assertTrue(Math.abs(acceleration) <= constraint.getMaxAcceleration() + 1e-9);
+
+                    // Position and velocity are continuous, and so is acceleration for S-curves
+                    assertEquals(previousPosition, position, constraint.getMaxVelocity() * DT + 1e-9);
+                    assertEquals(previousVelocity, velocity, constraint.getMaxAcceleration() * DT + 1e-9);
+                    if (constraint.getMaxJerk() != Double.POSITIVE_INFINITY)
+                        assertEquals(previousAcceleration, acceleration, constraint.getMaxJerk() * DT + 1e-9);
+
+                    previousPosition = position;
+                    previousVelocity = velocity;
+                    previousAcceleration = acceleration;
+                }
+
+                assertEquals(distance, previousPosition, 0);
+                assertEquals(0, previousVelocity, 0);
+            }
+        }
+    }
+
+    @Test
+    public void slowedDownProfiles () {
+        final MotionProfile.Constraints constraint = MotionProfile.Constraints.sCurve(150, 120, 200, 800);
+        final MotionProfile profile = new MotionProfile(60, constraint);
+        final double ratio = 1.75;
+        final MotionProfile slowed = profile.withDuration(profile.getDuration() * ratio);
+
+        // Stretched evenly in time, so every derivative is divided by another factor of the ratio
+        assertEquals(profile.getDuration() * ratio, slowed.getDuration(), 1e-12);
+        assertEquals(profile.getPeakVelocity() / ratio, slowed.getPeakVelocity(), 1e-12);
+        for (double time = 0; time < profile.getDuration(); time += 0.01) {
+            assertEquals(profile.getPosition(time), slowed.getPosition(time * ratio), 1e-9);
+            assertEquals(profile.getVelocity(time) / ratio, slowed.getVelocity(time * ratio), 1e-9);
+            assertEquals(profile.getAcceleration(time) / (ratio * ratio), slowed.getAcceleration(time * ratio), 1e-9);
+        }
+        assertEquals(60, slowed.getPosition(slowed.getDuration()), 0);
+        assertEquals(0, slowed.getVelocity(slowed.getDuration()), 0);
+
+        // An empty profile can be stretched and stays at rest
+        final MotionProfile empty = new MotionProfile(0, constraint).withDuration(2);
+        assertEquals(0, empty.getPosition(1), 0);
+        assertEquals(0, empty.getVelocity(1), 0);
+    }
+
+    @Test
+    public void settleSpeedFinishesProfilesWhichEndShort () {
+        final MotionProfile.Constraints constraints = MotionProfile.Constraints.trapezoidal(150, 120, 200);
+        assertEquals(7.5, constraints.getSettleVelocity(0.1), 1e-12);
+        assertEquals(-7.5, constraints.getSettleVelocity(-0.1), 1e-12);
+        assertEquals(20, constraints.getSettleVelocity(20), 0);
+        assertEquals(0, constraints.getSettleVelocity(0), 0);
+
+        // Without a settle speed, the correction alone is too slow to overcome friction before the robot is
+        // within its margin of error, so the robot stalls
+        assertTrue(getSettledError(constraints) < 1);
+        assertTrue(getSettledError(constraints.withSettleSpeed(0)) > 1);
+    }
+
+    // Follows a 60 inch profile in the same way as AutonDrive, with a robot which only reaches 80% of the commanded
+    // velocity and doesn't move at all below 3% of full output, and gets the distance left once the robot stops
+    // moving or comes within a 1 inch margin of error
+    private static double getSettledError (MotionProfile.Constraints constraints) {
+        final MotionProfile profile = new MotionProfile(60, constraints);
+        final double period = 0.02, gain = 4;
+        double position = 0;
+        for (double time = 0; time < profile.getDuration() + 10; time += period) {
+            final double error = profile.getPosition(time) - position;
+            if (time >= profile.getDuration() && Math.abs(60 - position) < 1) break;
+
+            final double correction = time >= profile.getDuration()
+                ? constraints.getSettleVelocity(error * gain)
+                : error * gain;
+            final double speed = (profile.getVelocity(time) + correction) / constraints.getFullSpeedVelocity();
+            if (Math.abs(speed) >= 0.03) position += 0.8 * speed * constraints.getFullSpeedVelocity() * period;
+        }
+
+        return Math.abs(60 - position);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotSpeedUpProfiles () {
+        final MotionProfile profile = new MotionProfile(60, MotionProfile.Constraints.trapezoidal(150, 120, 200));
+        profile.withDuration(profile.getDuration() / 2);
+    }
+
+}
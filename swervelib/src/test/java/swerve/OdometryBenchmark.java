@@ -0,0 +1,85 @@
+package swerve;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.IntegrationMode;
+import frc.team1711.swerve.util.odometry.Odometry;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+
+/**
+ * Measures the time and memory allocated for each sample integrated by {@link Odometry}. Ignored by
+ * default because timing results depend on the machine; remove {@code @Ignore} to run it.
+ */
+@Ignore
+public class OdometryBenchmark {
+    
+    private static final int SAMPLES = 4096;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 200;
+    
+    @Test
+    public void benchmarkUpdateCost () {
+        for (IntegrationMode mode : IntegrationMode.values()) {
+            measure(mode, false);
+            measure(mode, true);
+        }
+    }
+    
+    // Measures the cost of integrating samples, where the modules either hold their directions or steer
+    // slightly between every sample
+    private static void measure (IntegrationMode mode, boolean steering) {
+        final Odometry odometry = new Odometry(new SwerveKinematics(
+            new Vector(-11, 12),
+            new Vector(11, 12),
+            new Vector(-11, -12),
+            new Vector(11, -12)));
+        odometry.setIntegrationMode(mode);
+        
+        // Every module drives forwards while the robot turns slowly, so the heading changes every sample
+        final double[][] distances = new double[SAMPLES][4], directions = new double[SAMPLES][4];
+        final double[] gyroAngles = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i ++) {
+            for (int m = 0; m < 4; m ++) {
+                distances[i][m] = (i + 1) * 0.5;
+                directions[i][m] = steering ? 2 + m + i * 0.001 : 2 + m;
+            }
+            gyroAngles[i] = i * 0.01;
+        }
+        
+        for (int i = 0; i < WARMUP_ITERATIONS; i ++) run(odometry, distances, directions, gyroAngles, i);
+        
+        final long allocatedBefore = getAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i ++) run(odometry, distances, directions, gyroAngles, WARMUP_ITERATIONS + i);
+        final long elapsed = System.nanoTime() - start;
+        final long allocated = getAllocatedBytes() - allocatedBefore;
+        
+        System.out.printf(
+            "Odometry (%s, %s): %.1f ns and %.1f bytes allocated per sample%n",
+            mode,
+            steering ? "steering" : "holding direction",
+            (double)elapsed / SAMPLES / ITERATIONS,
+            (double)allocated / SAMPLES / ITERATIONS);
+    }
+    
+    // Integrates every sample once, continuing from the distances of the previous iteration
+    private static void run (Odometry odometry, double[][] distances, double[][] directions, double[] gyroAngles, int iteration) {
+        final double offset = iteration * SAMPLES * 0.5;
+        final double[] shifted = new double[4];
+        for (int i = 0; i < SAMPLES; i ++) {
+            for (int m = 0; m < 4; m ++) shifted[m] = distances[i][m] + offset;
+            odometry.addSample(iteration * SAMPLES + i, gyroAngles[i], shifted, directions[i]);
+        }
+    }
+    
+    // Gets the number of bytes allocated by this thread so far
+    private static long getAllocatedBytes () {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+}
@@ -0,0 +1,151 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+import frc.team1711.swerve.util.odometry.IntegrationMode;
+import frc.team1711.swerve.util.odometry.Odometry;
+import frc.team1711.swerve.util.odometry.Position;
+
+/**
+ * Checks that {@link Odometry} integrates samples into the expected position without allocating, that arc
+ * integration follows a constant-curvature path exactly, and that the robot's direction is only measured by
+ * the wheels when the module positions are measured.
+ */
+public class OdometryTest {
+    
+    // A 22 by 24 inch drive, so the wheels can measure the robot's rotation
+    private static final SwerveKinematics MEASURED = new SwerveKinematics(
+        new Vector(-11, 12),
+        new Vector(11, 12),
+        new Vector(-11, -12),
+        new Vector(11, -12));
+    
+    @Test
+    public void integratesMovementIntoPosition () {
+        final Odometry odometry = new Odometry(MEASURED);
+        
+        // Drive 10 inches forwards, then 10 inches to the left while the gyro reports a 90 degree turn,
+        // which is forwards on the field
+        odometry.addSample(1, 0, new double[] { 10, 10, 10, 10 }, new double[] { 0, 0, 0, 0 });
+        odometry.addSample(2, 90, new double[] { 20, 20, 20, 20 }, new double[] { 270, 270, 270, 270 });
+        
+        final Position position = odometry.getPosition();
+        assertEquals(0, position.getLocation().getX(), 1e-12);
+        assertEquals(20, position.getLocation().getY(), 1e-12);
+        assertEquals(90, position.getDirection(), 0);
+        assertEquals(2, odometry.getTimestampedPosition().getTimestamp(), 0);
+        
+        // The recorded history gives the same position
+        final Position recorded = odometry.getPositionAt(2);
+        assertEquals(position.getLocation().getX(), recorded.getLocation().getX(), 0);
+        assertEquals(position.getLocation().getY(), recorded.getLocation().getY(), 0);
+        assertEquals(position.getDirection(), recorded.getDirection(), 0);
+    }
+    
+    @Test
+    public void integratingSamplesAllocatesNothing () {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return;
+        
+        for (IntegrationMode mode : IntegrationMode.values()) {
+            final Odometry odometry = new Odometry(MEASURED);
+            odometry.setIntegrationMode(mode);
+            final double[] distances = new double[4], directions = new double[4];
+            
+            // The JVM may allocate a little while it compiles the odometry, so that is done first. After that,
+            // anything allocated per sample would add up to at least one byte per sample
+            addSamples(odometry, distances, directions, 0, 20000);
+            final long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            addSamples(odometry, distances, directions, 20000, 20000);
+            final long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            
+            assertTrue(allocated < 20000);
+        }
+    }
+    
+    // Adds samples of the robot driving while turning and steering
+    private static void addSamples (Odometry odometry, double[] distances, double[] directions, int start, int count) {
+        for (int i = start + 1; i <= start + count; i ++) {
+            for (int m = 0; m < 4; m ++) {
+                distances[m] = i * 0.5;
+                directions[m] = i % 7 + m;
+            }
+            odometry.addSample(i * 0.005, i * 0.01, distances, directions);
+        }
+    }
+    
+    @Test
+    public void arcIntegrationFollowsConstantCurvature () {
+        // 100 inches forwards while turning 90 degrees clockwise, in four coarse samples, ends on a circle of
+        // radius 200 / pi about (200 / pi, 0)
+        final double length = 100, radius = length / (Math.PI / 2);
+        final Position
+            arc = driveArc(IntegrationMode.ARC, length, 90, 4),
+            chord = driveArc(IntegrationMode.CHORD, length, 90, 4);
+        
+        assertEquals(radius, arc.getLocation().getX(), 1e-9);
+        assertEquals(radius, arc.getLocation().getY(), 1e-9);
+        assertEquals(90, arc.getDirection(), 1e-9);
+        assertTrue(Vector.getMagnitude(chord.getLocation().getX() - radius, chord.getLocation().getY() - radius) > 1);
+        
+        // Just below and just above the half turn where the series replaces sin(x) / x, the endpoint is the same
+        // as the exact circle's, where 1 - cos(turn) is found as 2 sin(turn / 2)^2 to keep its precision
+        for (double halfTurn : new double[] { 0.999e-6, 1.001e-6 }) {
+            final double turn = 2 * halfTurn, turnRadius = length / turn;
+            final Position position = driveArc(IntegrationMode.ARC, length, Math.toDegrees(turn), 1);
+            assertEquals(2 * turnRadius * Math.sin(halfTurn) * Math.sin(halfTurn), position.getLocation().getX(), 1e-12);
+            assertEquals(turnRadius * Math.sin(turn), position.getLocation().getY(), 1e-9);
+        }
+    }
+    
+    // Drives forwards while the gyro turns steadily clockwise, in equal samples, and gives the final position
+    private static Position driveArc (IntegrationMode mode, double length, double turn, int samples) {
+        final Odometry odometry = new Odometry(MEASURED);
+        odometry.setIntegrationMode(mode);
+        final double[] distances = new double[4], directions = new double[4];
+        for (int i = 1; i <= samples; i ++) {
+            for (int m = 0; m < 4; m ++) distances[m] = length * i / samples;
+            odometry.addSample(i, turn * i / samples, distances, directions);
+        }
+        return odometry.getPosition();
+    }
+    
+    @Test
+    public void measuresDirectionWithWheelsWhenGyroIsOff () {
+        final Odometry odometry = new Odometry(MEASURED);
+        odometry.setGyroEnabled(false);
+        
+        // Every module moves a quarter of the way around the circle through all four modules, so the
+        // robot turns 90 degrees clockwise in place, while the gyro reports nonsense
+        final double radius = Vector.getMagnitude(11, 12);
+        final double distance = radius * Math.PI / 2;
+        final double[] directions = new double[4];
+        for (int m = 0; m < 4; m ++) {
+            final Vector module = MEASURED.getModulePosition(m);
+            directions[m] = new Vector(module.getY(), -module.getX()).getRotationDegrees();
+        }
+        odometry.addSample(1, 1234, new double[] { distance, distance, distance, distance }, directions);
+        
+        assertEquals(90, odometry.getWheelDirection(), 1e-9);
+        assertEquals(90, odometry.getPosition().getDirection(), 1e-9);
+        assertEquals(0, odometry.getPosition().getLocation().getMagnitude(), 1e-9);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void rectangularKinematicsCannotTurnGyroOff () {
+        new Odometry(SwerveKinematics.rectangular(1.2)).setGyroEnabled(false);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void rectangularKinematicsCannotMeasureDirection () {
+        new Odometry(SwerveKinematics.rectangular(1.2)).getWheelDirection();
+    }
+    
+}
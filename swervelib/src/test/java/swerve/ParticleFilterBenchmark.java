@@ -0,0 +1,59 @@
+package swerve;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.ParticleFilter;
+import frc.team1711.swerve.util.odometry.Position;
+
+/**
+ * Measures the update time of {@link ParticleFilter} against the number of particles and threads.
+ * Ignored by default because timing results depend on the machine; remove {@code @Ignore} to run it.
+ */
+@Ignore
+public class ParticleFilterBenchmark {
+    
+    private static final int[] PARTICLE_COUNTS = {500, 1000, 2000, 4000, 8000};
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 500;
+    
+    // Observations are made once every few movements, as with a camera running slower than odometry
+    private static final int MOVEMENTS_PER_OBSERVATION = 5;
+    
+    @Test
+    public void benchmarkUpdateTime () {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            for (int particleCount : PARTICLE_COUNTS) {
+                try (ParticleFilter filter = new ParticleFilter(particleCount, threads, 0.05, 0.05)) {
+                    filter.reset(0, new Position(Vector.ZERO, 0), 2, 2);
+                    run(filter, WARMUP_ITERATIONS);
+                    
+                    final long start = System.nanoTime();
+                    run(filter, ITERATIONS);
+                    final long elapsed = System.nanoTime() - start;
+                    
+                    System.out.printf(
+                        "ParticleFilter (%d particles, %d threads): %.1f us per movement, spread %.2f in%n",
+                        particleCount,
+                        threads,
+                        elapsed / 1e3 / ITERATIONS,
+                        filter.getSpread());
+                }
+            }
+        }
+    }
+    
+    // Moves the robot forwards while turning, observing its position every few movements
+    private static void run (ParticleFilter filter, int iterations) {
+        for (int i = 0; i < iterations; i ++) {
+            filter.predict(i * 0.005, 0.2, 1, 0.5);
+            if (i % MOVEMENTS_PER_OBSERVATION == 0) {
+                final Position estimate = filter.getEstimatedPosition();
+                filter.observePosition(estimate, 3, 2);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,67 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+import frc.team1711.swerve.util.odometry.IntegrationMode;
+import frc.team1711.swerve.util.odometry.Odometry;
+import frc.team1711.swerve.util.odometry.ParticleFilter;
+import frc.team1711.swerve.util.odometry.Position;
+
+/**
+ * Checks that {@link ParticleFilter} follows {@link Odometry} when there is no noise, and recovers when the
+ * robot is moved without its wheels measuring the movement.
+ */
+public class ParticleFilterTest {
+    
+    @Test
+    public void followsOdometryWithoutNoise () {
+        for (IntegrationMode mode : IntegrationMode.values()) {
+            final Odometry odometry = new Odometry(new SwerveKinematics(
+                new Vector(-11, 12),
+                new Vector(11, 12),
+                new Vector(-11, -12),
+                new Vector(11, -12)));
+            odometry.setIntegrationMode(mode);
+            
+            try (ParticleFilter filter = new ParticleFilter(16, 1, 0, 0)) {
+                odometry.setParticleFilter(filter);
+                
+                // Drive forwards and to the right while turning quickly, so the chord and arc models differ
+                final double[] distances = new double[4], directions = { 30, 30, 30, 30 };
+                for (int i = 1; i <= 200; i ++) {
+                    for (int m = 0; m < 4; m ++) distances[m] = i * 2;
+                    odometry.addSample(i * 0.02, i * 4, distances, directions);
+                }
+                
+                final Position expected = odometry.getPosition(), actual = filter.getEstimatedPosition();
+                assertEquals(expected.getLocation().getX(), actual.getLocation().getX(), 1e-9);
+                assertEquals(expected.getLocation().getY(), actual.getLocation().getY(), 1e-9);
+                assertEquals(expected.getDirection(), actual.getDirection(), 1e-9);
+            }
+        }
+    }
+    
+    @Test
+    public void recoversFromBump () {
+        try (ParticleFilter filter = new ParticleFilter(2000, 2, 0.1, 0.1)) {
+            filter.reset(0, new Position(Vector.ZERO, 0), 1, 1);
+            
+            // The robot is bumped 20 inches to the right without its wheels measuring the movement,
+            // which the particles redrawn around each observation recover from
+            for (int i = 1; i <= 200; i ++) {
+                filter.predict(i * 0.02, 0, 1, 0);
+                if (i % 5 == 0) filter.observePosition(new Position(new Vector(i > 50 ? 20 : 0, i), 0), 6, 5);
+            }
+            
+            final Position estimate = filter.getEstimatedPosition();
+            assertTrue(Math.abs(estimate.getLocation().getX() - 20) < 3);
+            assertTrue(Math.abs(estimate.getLocation().getY() - 200) < 3);
+        }
+    }
+    
+}
@@ -0,0 +1,73 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.PoseEstimator;
+import frc.team1711.swerve.util.odometry.Position;
+
+/**
+ * Checks that {@link PoseEstimator} gives the same estimate no matter what order late measurements arrive in.
+ */
+public class PoseEstimatorTest {
+    
+    private static final Position
+        EARLY_MEASUREMENT = new Position(new Vector(14, 30), 50),
+        LATE_MEASUREMENT = new Position(new Vector(30, 52), 75);
+    private static final double EARLY_TIME = 0.3, LATE_TIME = 0.6;
+    
+    @Test
+    public void outOfOrderMeasurementsMatchInOrder () {
+        final PoseEstimator inOrder = createDrivenEstimator(), outOfOrder = createDrivenEstimator();
+        assertTrue(inOrder.addMeasurement(EARLY_MEASUREMENT, EARLY_TIME));
+        assertTrue(inOrder.addMeasurement(LATE_MEASUREMENT, LATE_TIME));
+        assertTrue(outOfOrder.addMeasurement(LATE_MEASUREMENT, LATE_TIME));
+        assertTrue(outOfOrder.addMeasurement(EARLY_MEASUREMENT, EARLY_TIME));
+        assertSamePosition(inOrder.getEstimatedPosition(), outOfOrder.getEstimatedPosition(), 1e-9);
+        
+        // The later measurement still has an effect after the earlier one arrives
+        final PoseEstimator earlyOnly = createDrivenEstimator();
+        earlyOnly.addMeasurement(EARLY_MEASUREMENT, EARLY_TIME);
+        assertTrue(outOfOrder.getEstimatedPosition().distanceFrom(earlyOnly.getEstimatedPosition()) > 1);
+    }
+    
+    @Test
+    public void measurementsAtTheSameUpdateAreFused () {
+        final PoseEstimator first = createDrivenEstimator(), second = createDrivenEstimator();
+        first.addMeasurement(EARLY_MEASUREMENT, EARLY_TIME, 3, 4, 5);
+        first.addMeasurement(LATE_MEASUREMENT, EARLY_TIME, 6, 2, 3);
+        second.addMeasurement(LATE_MEASUREMENT, EARLY_TIME, 6, 2, 3);
+        second.addMeasurement(EARLY_MEASUREMENT, EARLY_TIME, 3, 4, 5);
+        assertSamePosition(first.getEstimatedPosition(), second.getEstimatedPosition(), 1e-9);
+    }
+    
+    @Test
+    public void rejectsMeasurementsOlderThanHistory () {
+        final PoseEstimator estimator = createDrivenEstimator();
+        assertTrue(!estimator.addMeasurement(EARLY_MEASUREMENT, -1));
+        assertEquals(1, estimator.getRejectedMeasurementCount());
+        assertEquals(0, estimator.getAcceptedMeasurementCount());
+    }
+    
+    // Creates an estimator with a second of odometry updates of the robot driving forwards and to the right
+    // while turning, which the measurements are all a little away from
+    private static PoseEstimator createDrivenEstimator () {
+        final PoseEstimator estimator = new PoseEstimator(4, 3, 2, 2);
+        estimator.reset(0, new Position(Vector.ZERO, 0));
+        for (int i = 1; i <= 50; i ++) {
+            final double time = i * 0.02;
+            estimator.addOdometry(time, 20 * time, 40 * time, 90 * time);
+        }
+        return estimator;
+    }
+    
+    private static void assertSamePosition (Position expected, Position actual, double tolerance) {
+        assertEquals(expected.getLocation().getX(), actual.getLocation().getX(), tolerance);
+        assertEquals(expected.getLocation().getY(), actual.getLocation().getY(), tolerance);
+        assertEquals(expected.getDirection(), actual.getDirection(), tolerance);
+    }
+    
+}
@@ -0,0 +1,86 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.PositionHistory;
+
+/**
+ * Checks that {@link PositionHistory} interpolates between recorded positions, turns the short way between
+ * directions, holds the oldest and newest positions outside the recorded times, and keeps working once the
+ * oldest positions have been overwritten.
+ */
+public class PositionHistoryTest {
+    
+    @Test
+    public void interpolatesBetweenPositions () {
+        final PositionHistory history = new PositionHistory(8);
+        assertNull(history.getPositionAt(1));
+        
+        history.add(1, 0, 0, 10);
+        history.add(2, 10, -20, 50);
+        history.add(3, 30, -20, 50);
+        
+        assertPosition(history.getPositionAt(1.25), 2.5, -5, 20);
+        assertPosition(history.getPositionAt(2.5), 20, -20, 50);
+        assertPosition(history.getPositionAt(2), 10, -20, 50);
+    }
+    
+    @Test
+    public void interpolatesDirectionTheShortWay () {
+        final PositionHistory history = new PositionHistory(8);
+        history.add(0, 0, 0, 350);
+        history.add(1, 0, 0, 10);
+        history.add(2, 0, 0, 340);
+        
+        // Turning from 350 to 10 degrees passes through 0 rather than 180, in either direction
+        assertEquals(355, history.getPositionAt(0.25).getDirection(), 1e-9);
+        assertEquals(0, history.getPositionAt(0.5).getDirection(), 1e-9);
+        assertEquals(5, history.getPositionAt(0.75).getDirection(), 1e-9);
+        assertEquals(355, history.getPositionAt(1.5).getDirection(), 1e-9);
+    }
+    
+    @Test
+    public void holdsOldestAndNewestOutsideRecordedTimes () {
+        final PositionHistory history = new PositionHistory(8);
+        history.add(1, 1, 2, 30);
+        history.add(2, 3, 4, 60);
+        
+        assertPosition(history.getPositionAt(-100), 1, 2, 30);
+        assertPosition(history.getPositionAt(0.999), 1, 2, 30);
+        assertPosition(history.getPositionAt(2.001), 3, 4, 60);
+        assertPosition(history.getPositionAt(100), 3, 4, 60);
+    }
+    
+    @Test
+    public void looksUpPositionsAfterWrapping () {
+        final PositionHistory history = new PositionHistory(4);
+        
+        // Ten positions through four slots, where position i is at (i, 2i) at time i
+        for (int i = 0; i < 10; i ++) history.add(i, i, 2 * i, i * 10);
+        assertEquals(4, history.size());
+        
+        // Only times 6 to 9 are left, and everything older is held at time 6
+        assertPosition(history.getPositionAt(3), 6, 12, 60);
+        assertPosition(history.getPositionAt(6), 6, 12, 60);
+        for (double time = 6; time <= 9; time += 0.25)
+            assertPosition(history.getPositionAt(time), time, 2 * time, time * 10);
+        assertPosition(history.getPositionAt(12), 9, 18, 90);
+        
+        // Older positions and repeated timestamps don't disturb the order
+        history.add(5, 100, 100, 0);
+        history.add(9, 9, 18, 100);
+        assertEquals(4, history.size());
+        assertPosition(history.getPositionAt(8.5), 8.5, 17, 90);
+    }
+    
+    private static void assertPosition (Position position, double x, double y, double direction) {
+        assertEquals(x, position.getLocation().getX(), 1e-9);
+        assertEquals(y, position.getLocation().getY(), 1e-9);
+        assertEquals(direction, position.getDirection(), 1e-9);
+    }
+    
+}
@@ -0,0 +1,106 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Angles;
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
+import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.ProfileFollower;
+
+/**
+ * Checks that the speeds given by a {@link ProfileFollower}, alone or combined with a reactive speed for a movement
+ * or turn without a profile, never ask the swerve drive for more than full output, even when the robot lags behind
+ * its profiles and the corrections are large.
+ */
+public class ProfileFollowerTest {
+    
+    private static final MotionProfile.Constraints
+        MOVEMENT = MotionProfile.Constraints.trapezoidal(150, 120, 150),
+        TURN = MotionProfile.Constraints.trapezoidal(360, 720, 360);
+    
+    private static final double PERIOD = 0.02;
+    
+    private static final Position
+        START = new Position(Vector.ZERO, 0),
+        END = new Position(new Vector(60, 120), 150);
+    
+    @Test
+    public void synchronizedProfilesLeaveHeadroomForCorrection () {
+        final ProfileFollower follower = new ProfileFollower(START, END, MOVEMENT, TURN);
+        final MotionProfile movementProfile = follower.getMovementProfile(), turnProfile = follower.getTurnProfile();
+        assertEquals(movementProfile.getDuration(), turnProfile.getDuration(), 1e-9);
+        
+        final double peakSpeeds =
+            movementProfile.getPeakVelocity() / MOVEMENT.getFullSpeedVelocity() +
+            turnProfile.getPeakVelocity() / TURN.getFullSpeedVelocity();
+        assertTrue(peakSpeeds <= ProfileFollower.FEEDFORWARD_BUDGET + 1e-9);
+    }
+    
+    @Test
+    public void speedsStayWithinFullOutputWhileTracking () {
+        assertWithinFullOutput(new ProfileFollower(START, END, MOVEMENT, TURN));
+    }
+    
+    @Test
+    public void reactiveSpeedsAreLimitedTogetherWithProfiledSpeeds () {
+        assertWithinFullOutput(new ProfileFollower(START, END, MOVEMENT, null));
+        assertWithinFullOutput(new ProfileFollower(START, END, null, TURN));
+    }
+    
+    // Drives a robot which responds slowly to the speeds it is given and can only reach half of full speed, so it
+    // falls behind the profiles, checking every speed given until it reaches the final position. As in
+    // AutonDrive, a movement or turn without a profile is driven reactively, at a speed depending on how far is
+    // left, and then limited together with the profiled speed
+    private static void assertWithinFullOutput (ProfileFollower follower) {
+        final boolean moving = follower.getMovementProfile() != null, turning = follower.getTurnProfile() != null;
+        final double[] speeds = new double[3];
+        double x = 0, y = 0, direction = 0, velocityX = 0, velocityY = 0, turnVelocity = 0;
+        double largestProfiledTotal = 0, largestCombinedTotal = 0;
+        
+        for (double time = 0; time < 10; time += PERIOD) {
+            follower.getSpeeds(new Position(new Vector(x, y), direction), time, speeds);
+            largestProfiledTotal = Math.max(largestProfiledTotal, getTotal(speeds));
+            
+            if (!moving) {
+                final double remainingX = 60 - x, remainingY = 120 - y, remaining = Vector.getMagnitude(remainingX, remainingY);
+                final double speed = remaining < 0.5 ? 0 : Math.min(0.9, remaining / 20) / remaining;
+                speeds[0] = remainingX * speed;
+                speeds[1] = remainingY * speed;
+            }
+            if (!turning) {
+                final double remaining = Angles.wrapDegreesZeroCenter(150 - direction);
+                speeds[2] = Math.abs(remaining) < 0.5 ? 0 : Math.copySign(Math.min(0.9, Math.abs(remaining) / 30), remaining);
+            }
+            largestCombinedTotal = Math.max(largestCombinedTotal, getTotal(speeds));
+            
+            ProfileFollower.limitToFullOutput(speeds);
+            for (double speed : speeds) assertTrue(Math.abs(speed) <= 1);
+            assertTrue(getTotal(speeds) <= 1 + 1e-12);
+            
+            // The robot's velocity moves a fifth of the way to the commanded velocity each step
+            velocityX += (speeds[0] * 0.5 * MOVEMENT.getFullSpeedVelocity() - velocityX) * 0.2;
+            velocityY += (speeds[1] * 0.5 * MOVEMENT.getFullSpeedVelocity() - velocityY) * 0.2;
+            turnVelocity += (speeds[2] * 0.5 * TURN.getFullSpeedVelocity() - turnVelocity) * 0.2;
+            x += velocityX * PERIOD;
+            y += velocityY * PERIOD;
+            direction += turnVelocity * PERIOD;
+        }
+        
+        // The robot fell far enough behind that the speeds had to be limited, and with a reactive speed the
+        // combined speeds went over full output until they were limited together, but it still got there
+        assertEquals(1, largestProfiledTotal, 1e-9);
+        if (!moving || !turning) assertTrue(largestCombinedTotal > 1);
+        assertTrue(Vector.getMagnitude(x - 60, y - 120) < 1);
+        assertTrue(Math.abs(Angles.wrapDegreesZeroCenter(direction - 150)) < 1);
+    }
+    
+    // Gets the magnitude of the movement plus the magnitude of the turn
+    private static double getTotal (double[] speeds) {
+        return Vector.getMagnitude(speeds[0], speeds[1]) + Math.abs(speeds[2]);
+    }
+    
+}
@@ -0,0 +1,185 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+import frc.team1711.swerve.util.odometry.IntegrationMode;
+import frc.team1711.swerve.util.odometry.Odometry;
+import frc.team1711.swerve.util.odometry.PoseEstimator;
+import frc.team1711.swerve.util.odometry.Position;
+import frc.team1711.swerve.util.odometry.SensorLogReplay;
+import frc.team1711.swerve.util.odometry.SensorLogWriter;
+import frc.team1711.swerve.util.odometry.WheelSlipFilter;
+
+/**
+ * Checks that replaying a {@link SensorLogWriter} log with a {@link SensorLogReplay} gives exactly the same
+ * odometry and pose estimates as the session it was recorded from, and that the log is written as it is recorded.
+ */
+public class SensorLogTest {
+    
+    private static final SwerveKinematics MEASURED = new SwerveKinematics(
+        new Vector(-11, 12),
+        new Vector(11, 12),
+        new Vector(-11, -12),
+        new Vector(11, -12));
+    
+    private static final int SAMPLES = 1200;
+    private static final double PERIOD = 0.005;
+    
+    private Path file;
+    
+    @After
+    public void deleteLog () throws IOException {
+        if (file != null) Files.deleteIfExists(file);
+    }
+    
+    @Test
+    public void replayMatchesRecordedSession () throws IOException {
+        file = Files.createTempFile("sensor-log", ".bin");
+        
+        final Odometry live = new Odometry(MEASURED);
+        final PoseEstimator liveEstimator = createEstimator();
+        live.setPoseEstimator(liveEstimator);
+        
+        final double[] xs = new double[SAMPLES + 1], ys = new double[SAMPLES + 1], directions = new double[SAMPLES + 1];
+        try (SensorLogWriter writer = new SensorLogWriter(file, MEASURED)) {
+            live.setSensorLog(writer);
+            
+            // Drive while turning and steering, changing every setting that is logged along the way
+            final Random random = new Random(1711);
+            final double[] moduleDistances = new double[4], moduleDirections = new double[4];
+            for (int i = 1; i <= SAMPLES; i ++) {
+                if (i == 200) live.setIntegrationMode(IntegrationMode.CHORD);
+                if (i == 400) live.setWheelSlipFilter(new WheelSlipFilter(MEASURED, 0.05, 0.1));
+                if (i == 600) live.resetPosition(new Position(new Vector(40, -20), 90));
+                if (i == 800) live.setGyroEnabled(false);
+                if (i == 1000) live.setGyroEnabled(true);
+                
+                for (int m = 0; m < 4; m ++) {
+                    moduleDistances[m] += 0.3 + random.nextGaussian() * 0.02 + (m == 2 && i % 50 == 0 ? 0.5 : 0);
+                    moduleDirections[m] = 30 + 20 * Math.sin(i * 0.01) + m * 3 + random.nextGaussian();
+                }
+                live.addSample(i * PERIOD, i * 0.08 + random.nextGaussian() * 0.1, moduleDistances, moduleDirections);
+                
+                final Position position = live.getPosition();
+                xs[i] = position.getLocation().getX();
+                ys[i] = position.getLocation().getY();
+                directions[i] = position.getDirection();
+            }
+            
+            assertEquals(SAMPLES, writer.getSampleCount());
+            assertTrue(!writer.hasFailed());
+        }
+        
+        final SensorLogReplay replay = new SensorLogReplay(file);
+        final Odometry replayed = new Odometry(replay.getKinematics());
+        final PoseEstimator replayedEstimator = createEstimator();
+        replayed.setPoseEstimator(replayedEstimator);
+        assertEquals(SAMPLES, replay.replay(replayed));
+        
+        // Every position still in the history, the final wheel direction, and the final estimate match bit for bit
+        for (int i = SAMPLES - 200; i <= SAMPLES; i ++) {
+            final Position position = replayed.getPositionAt(i * PERIOD);
+            assertEquals(xs[i], position.getLocation().getX(), 0);
+            assertEquals(ys[i], position.getLocation().getY(), 0);
+            assertEquals(directions[i], position.getDirection(), 0);
+        }
+        assertEquals(live.getWheelDirection(), replayed.getWheelDirection(), 0);
+        assertSamePosition(live.getPosition(), replayed.getPosition());
+        assertSamePosition(liveEstimator.getEstimatedPosition(), replayedEstimator.getEstimatedPosition());
+        assertTrue(live.getWheelSlipFilter().getRejectedSampleCount() > 0);
+        assertEquals(
+            live.getWheelSlipFilter().getRejectedSampleCount(),
+            replayed.getWheelSlipFilter().getRejectedSampleCount());
+    }
+    
+    @Test
+    public void samplesAreWrittenBeforeTheBufferFills () throws IOException {
+        file = Files.createTempFile("sensor-log", ".bin");
+        
+        try (SensorLogWriter writer = new SensorLogWriter(file, MEASURED)) {
+            final Odometry odometry = new Odometry(MEASURED);
+            odometry.setSensorLog(writer);
+            
+            // One second of samples is much less than the buffer holds
+            final double[] moduleDistances = new double[4], moduleDirections = new double[4];
+            for (int i = 1; i <= 200; i ++) odometry.addSample(i * PERIOD, 0, moduleDistances, moduleDirections);
+            
+            // Only the last half second of samples can still be buffered, and each sample is a type and ten doubles
+            assertTrue(Files.size(file) >= 100 * (Integer.BYTES + Double.BYTES * 10));
+        }
+    }
+    
+    @Test
+    public void replaysLogsWithoutSlipFilterTolerances () throws IOException {
+        file = Files.createTempFile("sensor-log", ".bin");
+        
+        // A version 1 state record has no slip filter tolerances, so it holds seven doubles before the wheel distances
+        final ByteBuffer log = createHeader(1);
+        log.putInt(0).putInt(0).putInt(1).putInt(0).putInt(IntegrationMode.ARC.ordinal());
+        log.putDouble(0).putDouble(0).putDouble(0).putDouble(5).putDouble(6).putDouble(0).putDouble(0);
+        for (int i = 0; i < 4; i ++) log.putDouble(0);
+        
+        // A sample of every module moving an inch forwards
+        log.putInt(1).putDouble(PERIOD).putDouble(0);
+        for (int i = 0; i < 4; i ++) log.putDouble(1);
+        for (int i = 0; i < 4; i ++) log.putDouble(0);
+        write(log);
+        
+        final SensorLogReplay replay = new SensorLogReplay(file);
+        assertEquals(1, replay.getVersion());
+        final Odometry replayed = replay.replay();
+        assertNull(replayed.getWheelSlipFilter());
+        assertEquals(5, replayed.getPosition().getLocation().getX(), 1e-12);
+        assertEquals(7, replayed.getPosition().getLocation().getY(), 1e-12);
+    }
+    
+    @Test(expected = IOException.class)
+    public void rejectsNewerVersions () throws IOException {
+        file = Files.createTempFile("sensor-log", ".bin");
+        write(createHeader(1000));
+        new SensorLogReplay(file);
+    }
+    
+    // Creates a buffer holding the header of a log of the MEASURED drive in a given version of the format
+    private static ByteBuffer createHeader (int version) {
+        final ByteBuffer log = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        log.putInt(0x53574C47).putInt(version).putInt(4);
+        for (int i = 0; i < 4; i ++) {
+            final Vector modulePosition = MEASURED.getModulePosition(i);
+            log.putDouble(modulePosition.getX()).putDouble(modulePosition.getY());
+        }
+        return log;
+    }
+    
+    private void write (ByteBuffer log) throws IOException {
+        final byte[] bytes = new byte[log.position()];
+        log.flip().get(bytes);
+        Files.write(file, bytes);
+    }
+    
+    // Creates the pose estimator attached to both the live and replayed odometry
+    private static PoseEstimator createEstimator () {
+        return new PoseEstimator(2, 1, 3, 2);
+    }
+    
+    private static void assertSamePosition (Position expected, Position actual) {
+        assertEquals(expected.getLocation().getX(), actual.getLocation().getX(), 0);
+        assertEquals(expected.getLocation().getY(), actual.getLocation().getY(), 0);
+        assertEquals(expected.getDirection(), actual.getDirection(), 0);
+    }
+    
+}
@@ -0,0 +1,153 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.odometry.SensorSampleBuffer;
+
+/**
+ * Checks that a {@link SensorSampleBuffer} wraps around, that a {@link SensorSampleBuffer.Reader} which falls behind
+ * skips ahead to the oldest sample and counts what it dropped, and that readers on other threads only ever see
+ * complete samples while the producer is writing.
+ */
+public class SensorSampleBufferTest {
+    
+    private static final int MODULES = 3;
+    
+    @Test
+    public void wrapsAround () {
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(4, MODULES);
+        final SensorSampleBuffer.Reader reader = buffer.newReader();
+        
+        // Three rounds of three samples pass through every slot more than once
+        for (int round = 0; round < 3; round ++) {
+            for (int i = 0; i < 3; i ++) write(buffer, round * 3 + i);
+            for (int i = 0; i < 3; i ++) {
+                assertTrue(reader.next());
+                assertSample(reader, round * 3 + i);
+            }
+            assertTrue(!reader.next());
+        }
+        
+        assertEquals(9, buffer.getWrittenCount());
+        assertEquals(0, reader.getDroppedCount());
+    }
+    
+    @Test
+    public void skipsAheadToOldestSample () {
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(4, MODULES);
+        final SensorSampleBuffer.Reader reader = buffer.newReader();
+        for (int i = 0; i < 10; i ++) write(buffer, i);
+        
+        // Only the last four samples are still in the buffer
+        for (int i = 6; i < 10; i ++) {
+            assertTrue(reader.next());
+            assertSample(reader, i);
+            assertEquals(6, reader.getDroppedCount());
+        }
+        assertTrue(!reader.next());
+        
+        // A reader which keeps up doesn't drop anything more
+        write(buffer, 10);
+        assertTrue(reader.next());
+        assertSample(reader, 10);
+        assertEquals(6, reader.getDroppedCount());
+    }
+    
+    @Test
+    public void readsOnlySamplesWrittenAfterCreation () {
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(8, MODULES);
+        for (int i = 0; i < 5; i ++) write(buffer, i);
+        
+        final SensorSampleBuffer.Reader reader = buffer.newReader();
+        assertTrue(!reader.next());
+        write(buffer, 5);
+        write(buffer, 6);
+        
+        reader.skipToLatest();
+        assertTrue(!reader.next());
+        write(buffer, 7);
+        assertTrue(reader.next());
+        assertSample(reader, 7);
+        assertEquals(0, reader.getDroppedCount());
+    }
+    
+    @Test
+    public void readersOnOtherThreadsSeeOnlyCompleteSamples () throws InterruptedException {
+        final int samples = 200_000, readerCount = 4;
+        final SensorSampleBuffer buffer = new SensorSampleBuffer(64, MODULES);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final long[] readCounts = new long[readerCount], droppedCounts = new long[readerCount];
+        
+        final Thread[] readers = new Thread[readerCount];
+        for (int r = 0; r < readerCount; r ++) {
+            final int index = r;
+            final SensorSampleBuffer.Reader reader = buffer.newReader();
+            readers[r] = new Thread(() -> {
+                try {
+                    long read = 0, last = -1;
+                    while (last < samples - 1) {
+                        if (!reader.next()) {
+                            Thread.yield();
+                            continue;
+                        }
+                        
+                        // Every field of the sample holds its number, which is one more than the last sample
+                        // read, plus however many were dropped in between
+                        final long sample = (long)reader.getTimestamp();
+                        assertSample(reader, sample);
+                        assertTrue(sample > last);
+                        read ++;
+                        assertEquals(read + reader.getDroppedCount() - 1, sample);
+                        last = sample;
+                    }
+                    readCounts[index] = read;
+                    droppedCounts[index] = reader.getDroppedCount();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        
+        // The writer yields after writing a little more than the buffer holds, so that even with one processor
+        // the readers both read samples and fall behind and drop them
+        for (int i = 0; i < samples && failure.get() == null; i ++) {
+            write(buffer, i);
+            if (i % 96 == 0) Thread.yield();
+        }
+        for (Thread reader : readers) {
+            reader.join(60_000);
+            assertTrue(!reader.isAlive());
+        }
+        
+        if (failure.get() != null) throw new AssertionError(failure.get());
+        
+        // Every sample was either read or counted as dropped
+        for (int r = 0; r < readerCount; r ++) {
+            assertEquals(samples, readCounts[r] + droppedCounts[r]);
+            assertTrue(readCounts[r] > 1);
+        }
+    }
+    
+    // Writes a sample whose timestamp, gyro angle, distances and directions all hold the sample's number
+    private static void write (SensorSampleBuffer buffer, double sample) {
+        final double[] values = new double[MODULES];
+        for (int m = 0; m < MODULES; m ++) values[m] = sample;
+        buffer.write(sample, sample, values, values);
+    }
+    
+    private static void assertSample (SensorSampleBuffer.Reader reader, double sample) {
+        assertEquals(sample, reader.getTimestamp(), 0);
+        assertEquals(sample, reader.getGyroAngle(), 0);
+        for (int m = 0; m < MODULES; m ++) {
+            assertEquals(sample, reader.getDistance(m), 0);
+            assertEquals(sample, reader.getDirection(m), 0);
+        }
+    }
+    
+}
@@ -0,0 +1,73 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.SplinePath;
+
+/**
+ * Checks that {@link SplinePath} passes through its waypoints, that its table is evenly spaced by arc
+ * length, and that its tangents point along the path.
+ */
+public class SplinePathTest {
+    
+    private static final Vector[] WAYPOINTS = {
+        new Vector(0, 0),
+        new Vector(40, 60),
+        new Vector(100, 70),
+        new Vector(140, 20),
+        new Vector(100, -10),
+    };
+    
+    @Test
+    public void passesThroughWaypoints () {
+        final SplinePath path = new SplinePath(WAYPOINTS);
+        assertEquals(0, path.getX(0), 0);
+        assertEquals(0, path.getY(0), 0);
+        assertEquals(100, path.getX(path.getLength()), 1e-9);
+        assertEquals(-10, path.getY(path.getLength()), 1e-9);
+        
+        // Every waypoint is within the table's interpolation error of some point on the path
+        for (Vector waypoint : WAYPOINTS) {
+            double closest = Double.POSITIVE_INFINITY;
+            for (double distance = 0; distance <= path.getLength(); distance += 0.001) {
+                closest = Math.min(closest, Vector.getMagnitude(
+                    path.getX(distance) - waypoint.getX(),
+                    path.getY(distance) - waypoint.getY()));
+            }
+            assertTrue(closest < 1e-3);
+        }
+    }
+    
+    @Test
+    public void tableIsParameterizedByArcLength () {
+        final SplinePath path = new SplinePath(WAYPOINTS);
+        final double step = 1;
+        for (double distance = 0; distance + step <= path.getLength(); distance += step) {
+            final double
+                chordX = path.getX(distance + step) - path.getX(distance),
+                chordY = path.getY(distance + step) - path.getY(distance);
+            
+            // A chord of the path is slightly shorter than the arc it spans
+            final double chord = Vector.getMagnitude(chordX, chordY);
+            assertTrue(chord <= step + 1e-6);
+            assertEquals(step, chord, 2e-3);
+            
+            // The tangent at the middle of the chord points along it
+            final double
+                tangentX = path.getTangentX(distance + step / 2),
+                tangentY = path.getTangentY(distance + step / 2);
+            assertEquals(1, Vector.getMagnitude(tangentX, tangentY), 1e-3);
+            assertEquals(1, (tangentX * chordX + tangentY * chordY) / chord, 1e-3);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRepeatedWaypoints () {
+        new SplinePath(new Vector(0, 0), new Vector(10, 10), new Vector(10, 10));
+    }
+    
+}
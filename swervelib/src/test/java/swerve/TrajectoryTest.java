@@ -0,0 +1,86 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
+import frc.team1711.swerve.util.odometry.SplinePath;
+import frc.team1711.swerve.util.odometry.Trajectory;
+
+/**
+ * Checks that a generated {@link Trajectory} follows its path and profile, and that writing and loading
+ * it gives back exactly the same samples.
+ */
+public class TrajectoryTest {
+    
+    private static final SplinePath PATH = new SplinePath(
+        new Vector(0, 0),
+        new Vector(40, 60),
+        new Vector(100, 70),
+        new Vector(140, 20));
+    
+    private static final MotionProfile.Constraints CONSTRAINTS = MotionProfile.Constraints.sCurve(150, 110, 150, 1500);
+    
+    private Path file;
+    
+    @After
+    public void deleteFile () throws IOException {
+        if (file != null) Files.deleteIfExists(file);
+    }
+    
+    @Test
+    public void generatedTrajectoryFollowsProfile () {
+        final Trajectory trajectory = Trajectory.generate(PATH, CONSTRAINTS, 350, 80, 0.01);
+        final MotionProfile profile = new MotionProfile(PATH.getLength(), CONSTRAINTS);
+        
+        assertEquals(Math.ceil(profile.getDuration() / 0.01) + 1, trajectory.getSampleCount(), 0);
+        for (int i = 0; i < trajectory.getSampleCount(); i ++) {
+            final double time = i * 0.01, distance = profile.getPosition(time);
+            assertEquals(PATH.getX(distance), trajectory.getX(time), 1e-9);
+            assertEquals(PATH.getY(distance), trajectory.getY(time), 1e-9);
+            assertEquals(profile.getVelocity(time), Vector.getMagnitude(trajectory.getVelocityX(time), trajectory.getVelocityY(time)), 1e-2);
+            
+            // The shortest turn from 350 to 80 degrees is 90 degrees clockwise
+            assertEquals(350 + 90 * distance / PATH.getLength(), trajectory.getHeading(time), 1e-9);
+        }
+        
+        assertEquals(140, trajectory.getX(trajectory.getDuration() + 1), 1e-9);
+        assertEquals(20, trajectory.getY(trajectory.getDuration() + 1), 1e-9);
+        assertEquals(0, trajectory.getVelocityX(trajectory.getDuration()), 0);
+    }
+    
+    @Test
+    public void loadedTrajectoryMatchesWritten () throws IOException {
+        final Trajectory written = Trajectory.generate(PATH, CONSTRAINTS, 0, 90, 0.02);
+        file = Files.createTempFile("trajectory", ".traj");
+        written.write(file);
+        
+        final Trajectory loaded = Trajectory.load(file);
+        assertEquals(written.getSampleCount(), loaded.getSampleCount());
+        assertEquals(written.getPeriod(), loaded.getPeriod(), 0);
+        assertEquals(written.getDuration(), loaded.getDuration(), 0);
+        for (double time = 0; time < written.getDuration(); time += 0.007) {
+            assertEquals(written.getX(time), loaded.getX(time), 0);
+            assertEquals(written.getY(time), loaded.getY(time), 0);
+            assertEquals(written.getHeading(time), loaded.getHeading(time), 0);
+            assertEquals(written.getVelocityX(time), loaded.getVelocityX(time), 0);
+            assertEquals(written.getVelocityY(time), loaded.getVelocityY(time), 0);
+            assertEquals(written.getTurnVelocity(time), loaded.getTurnVelocity(time), 0);
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles () throws IOException {
+        file = Files.createTempFile("trajectory", ".traj");
+        Files.write(file, new byte[64]);
+        Trajectory.load(file);
+    }
+    
+}
@@ -0,0 +1,94 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.odometry.MotionProfile;
+import frc.team1711.swerve.util.odometry.WaypointPath;
+
+/**
+ * Checks that a robot following a {@link WaypointPath} carries its velocity through gentle corners, slows down
+ * for sharp ones, and stops at the final waypoint.
+ */
+public class WaypointPathTest {
+    
+    private static final MotionProfile.Constraints CONSTRAINTS = MotionProfile.Constraints.trapezoidal(150, 120, 200);
+    private static final double PERIOD = 0.02, MARGIN_OF_ERROR = 1;
+    
+    // Two gentle corners and then a right angle
+    private static final Vector[] WAYPOINTS = {
+        new Vector(0, 60),
+        new Vector(20, 120),
+        new Vector(0, 180),
+        new Vector(60, 200),
+    };
+    
+    @Test
+    public void arrivalSpeedsDependOnCorners () {
+        final WaypointPath path = new WaypointPath(Vector.ZERO, 4, MARGIN_OF_ERROR, CONSTRAINTS, WAYPOINTS);
+        assertEquals(CONSTRAINTS.getMaxVelocity(), path.getArrivalSpeed(0), 0);
+        assertEquals(CONSTRAINTS.getMaxVelocity(), path.getArrivalSpeed(1), 0);
+        
+        // A right angle can be rounded within 4 inches on an arc of radius 4 / (sqrt(2) - 1)
+        assertEquals(Math.sqrt(200 * 4 / (Math.sqrt(2) - 1)), path.getArrivalSpeed(2), 1e-9);
+        assertEquals(0, path.getArrivalSpeed(3), 0);
+        
+        // Without a corner tolerance, the robot has to stop at every corner
+        final WaypointPath stopping = new WaypointPath(Vector.ZERO, 0, MARGIN_OF_ERROR, CONSTRAINTS, WAYPOINTS);
+        for (int i = 0; i < WAYPOINTS.length; i ++) assertEquals(0, stopping.getArrivalSpeed(i), 0);
+    }
+    
+    @Test
+    public void carriesVelocityThroughWaypointsAndStopsAtTheLast () {
+        final WaypointPath path = new WaypointPath(Vector.ZERO, 4, MARGIN_OF_ERROR, CONSTRAINTS, WAYPOINTS);
+        final double[] roundingSpeeds = new double[WAYPOINTS.length], deceleration = new double[1];
+        final double time = drive(path, roundingSpeeds, deceleration);
+        
+        // The robot rounds each intermediate corner at close to the fastest speed it can have there
+        for (int i = 0; i < WAYPOINTS.length - 1; i ++) assertTrue(roundingSpeeds[i] > 0.9 * path.getArrivalSpeed(i));
+        
+        // It reaches the final waypoint at the speed it would have if it were slowing down to stop exactly on the
+        // waypoint, after moving at most one more step from the margin of error, and never slows down faster than
+        // it can. Stopping there is then left to WaypointDrive
+        final double finalSpeed = roundingSpeeds[WAYPOINTS.length - 1], maxAcceleration = CONSTRAINTS.getMaxAcceleration();
+        assertTrue(finalSpeed * finalSpeed <= 2 * maxAcceleration * (MARGIN_OF_ERROR + finalSpeed * PERIOD));
+        assertTrue(deceleration[0] <= maxAcceleration * 1.1);
+        
+        // Carrying velocity through the corners is faster than stopping at every one
+        final double stoppingTime = drive(
+            new WaypointPath(Vector.ZERO, 0, MARGIN_OF_ERROR, CONSTRAINTS, WAYPOINTS),
+            new double[WAYPOINTS.length],
+            new double[1]);
+        assertTrue(time < stoppingTime - 1);
+    }
+    
+    // Drives a robot which exactly follows the path's speed and direction from the start until it reaches the final
+    // waypoint, in the same way as WaypointDrive. The speed when each waypoint is rounded or reached and the largest
+    // deceleration are recorded, and the time taken is returned
+    private static double drive (WaypointPath path, double[] roundingSpeeds, double[] deceleration) {
+        final int last = path.getWaypointCount() - 1;
+        double x = 0, y = 0, speed = 0, time = 0;
+        int target = 0;
+        while (time < 20) {
+            while (target < last && path.hasRoundedCorner(target, x, y)) roundingSpeeds[target ++] = speed;
+            if (target == last && path.isFinished(x, y)) {
+                roundingSpeeds[last] = speed;
+                return time;
+            }
+            
+            final double lastSpeed = speed;
+            speed = path.getSpeed(target, x, y, speed, PERIOD);
+            deceleration[0] = Math.max(deceleration[0], (lastSpeed - speed) / PERIOD);
+            final Vector direction = path.getDirection(target, x, y);
+            x += direction.getX() * speed * PERIOD;
+            y += direction.getY() * speed * PERIOD;
+            time += PERIOD;
+        }
+        
+        throw new AssertionError("the robot never reached the final waypoint");
+    }
+    
+}
@@ -0,0 +1,50 @@
+package swerve;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import frc.team1711.swerve.util.Vector;
+import frc.team1711.swerve.util.kinematics.SwerveKinematics;
+import frc.team1711.swerve.util.odometry.WheelSlipFilter;
+
+/**
+ * Checks that {@link WheelSlipFilter} leaves out a slipping module and keeps the movement of the others.
+ */
+public class WheelSlipFilterTest {
+    
+    private static final SwerveKinematics MEASURED = new SwerveKinematics(
+        new Vector(-11, 12),
+        new Vector(11, 12),
+        new Vector(-11, -12),
+        new Vector(11, -12));
+    
+    private static final double[] DIRECTIONS = { 30, 30, 30, 30 };
+    
+    @Test
+    public void rejectsOnlyTheSlippingModule () {
+        final WheelSlipFilter filter = new WheelSlipFilter(MEASURED, 0.05, 0.1);
+        final double[] movement = new double[3], expected = new double[3];
+        
+        // Module 2 spins three times as far as the robot moves
+        assertEquals(1, filter.toChassisMovement(new double[] { 1, 1, 3, 1 }, DIRECTIONS, movement));
+        for (int i = 0; i < 4; i ++) assertEquals(i == 2 ? 1 : 0, filter.getRejectedCount(i));
+        
+        // The movement is found from the three clean modules alone
+        MEASURED.toChassisMovement(new double[] { 1, 1, 1, 1 }, DIRECTIONS, expected);
+        for (int i = 0; i < 3; i ++) assertEquals(expected[i], movement[i], 1e-9);
+    }
+    
+    @Test
+    public void keepsConsistentModules () {
+        final WheelSlipFilter filter = new WheelSlipFilter(MEASURED, 0.05, 0.1);
+        final double[] distances = { 1.01, 0.99, 1, 1.02 }, movement = new double[3], expected = new double[3];
+        
+        assertEquals(0, filter.toChassisMovement(distances, DIRECTIONS, movement));
+        assertEquals(0, filter.getRejectedSampleCount());
+        
+        MEASURED.toChassisMovement(distances, DIRECTIONS, expected);
+        for (int i = 0; i < 3; i ++) assertEquals(expected[i], movement[i], 1e-9);
+    }
+    
+}